@@ -0,0 +1,97 @@
+package boomerang.accessgraph;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import soot.Local;
+import soot.RefType;
+import soot.jimple.Jimple;
+
+/**
+ * Measures the operations on {@link AccessGraph} the flow functions apply at
+ * field reads and writes, including the cost of interning the derived graphs.
+ * 
+ * @author spaeth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessGraphBenchmark {
+
+	@Param({ FieldGraphShapes.SHORT, FieldGraphShapes.LONG, FieldGraphShapes.LOOP })
+	public String shape;
+
+	private Local base;
+	private AccessGraph graph;
+	private AccessGraph canonicalCopy;
+	private AccessGraph uninternedCopy;
+	private WrappedSootField[] toAppend;
+	private WrappedSootField fresh;
+
+	@Setup
+	public void setup() {
+		base = Jimple.v().newLocal("base", RefType.v("java.lang.Object"));
+		WrappedSootField[] fields = FieldGraphShapes.fields(shape);
+		graph = AccessGraph.create(base).appendFields(fields);
+		canonicalCopy = AccessGraph.create(base).appendFields(fields.clone());
+		uninternedCopy = new AccessGraph(base, graph.getFieldGraph(), null, false);
+		toAppend = new WrappedSootField[] { FieldGraphShapes.field(3), FieldGraphShapes.field(4) };
+		fresh = FieldGraphShapes.freshField();
+	}
+
+	@Benchmark
+	public AccessGraph appendFields() {
+		return graph.appendFields(toAppend);
+	}
+
+	@Benchmark
+	public AccessGraph prependField() {
+		return graph.prependField(fresh);
+	}
+
+	@Benchmark
+	public Set<AccessGraph> popFirstField() {
+		return graph.popFirstField();
+	}
+
+	@Benchmark
+	public Set<AccessGraph> popLastField() {
+		return graph.popLastField();
+	}
+
+	@Benchmark
+	public AccessGraph create() {
+		return AccessGraph.create(base, FieldGraphShapes.fields(shape));
+	}
+
+	@Benchmark
+	public boolean equalsCanonical() {
+		return graph.equals(canonicalCopy);
+	}
+
+	@Benchmark
+	public boolean equalsStructural() {
+		return graph.equals(uninternedCopy);
+	}
+
+	@Benchmark
+	public int hashCodeOf() {
+		return graph.hashCode();
+	}
+}
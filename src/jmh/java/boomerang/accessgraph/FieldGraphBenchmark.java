@@ -0,0 +1,124 @@
+package boomerang.accessgraph;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the operations of {@link FieldGraph} and {@link SetBasedFieldGraph}
+ * independent of the access graphs they are part of.
+ * 
+ * @author spaeth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldGraphBenchmark {
+
+	@Param({ FieldGraphShapes.SHORT, FieldGraphShapes.LONG, FieldGraphShapes.LOOP })
+	public String shape;
+
+	private FieldGraph graph;
+	private FieldGraph equalGraph;
+	private FieldGraph suffix;
+	private SetBasedFieldGraph setGraph;
+	private SetBasedFieldGraph equalSetGraph;
+	private WrappedSootField[] toAppend;
+	private WrappedSootField fresh;
+
+	@Setup
+	public void setup() {
+		WrappedSootField[] fields = FieldGraphShapes.fields(shape);
+		graph = new FieldGraph(fields);
+		equalGraph = new FieldGraph(fields.clone());
+		toAppend = new WrappedSootField[] { FieldGraphShapes.field(3), FieldGraphShapes.field(4) };
+		suffix = new FieldGraph(toAppend);
+		Set<WrappedSootField> fieldSet = new HashSet<>();
+		for (WrappedSootField f : fields)
+			fieldSet.add(f);
+		setGraph = new SetBasedFieldGraph(fieldSet);
+		equalSetGraph = new SetBasedFieldGraph(new HashSet<>(fieldSet));
+		fresh = FieldGraphShapes.freshField();
+	}
+
+	@Benchmark
+	public IFieldGraph append() {
+		return graph.append(suffix);
+	}
+
+	@Benchmark
+	public IFieldGraph appendFields() {
+		return graph.appendFields(toAppend);
+	}
+
+	@Benchmark
+	public IFieldGraph prependField() {
+		return graph.prependField(fresh);
+	}
+
+	@Benchmark
+	public Set<IFieldGraph> popFirstField() {
+		return graph.popFirstField();
+	}
+
+	@Benchmark
+	public Set<IFieldGraph> popLastField() {
+		return graph.popLastField();
+	}
+
+	@Benchmark
+	public boolean shouldOverApproximate() {
+		return graph.shouldOverApproximate();
+	}
+
+	@Benchmark
+	public IFieldGraph overapproximation() {
+		return graph.overapproximation();
+	}
+
+	@Benchmark
+	public boolean equalsStructural() {
+		return graph.equals(equalGraph);
+	}
+
+	@Benchmark
+	public int hashCodeOf() {
+		return graph.hashCode();
+	}
+
+	@Benchmark
+	public IFieldGraph setBasedAppend() {
+		return setGraph.append(suffix);
+	}
+
+	@Benchmark
+	public IFieldGraph setBasedPrependField() {
+		return setGraph.prependField(fresh);
+	}
+
+	@Benchmark
+	public Set<IFieldGraph> setBasedPopFirstField() {
+		return setGraph.popFirstField();
+	}
+
+	@Benchmark
+	public boolean setBasedEquals() {
+		return setGraph.equals(equalSetGraph);
+	}
+}
@@ -0,0 +1,55 @@
+package boomerang.accessgraph;
+
+import soot.RefType;
+import soot.SootField;
+
+/**
+ * Field sequences of the shapes the analysis typically produces, shared by the
+ * access graph benchmarks.
+ * 
+ * @author spaeth
+ *
+ */
+class FieldGraphShapes {
+	static final String SHORT = "short";
+	static final String LONG = "long";
+	static final String LOOP = "loop";
+
+	private static final int FIELD_COUNT = 8;
+	private static final WrappedSootField[] FIELDS = new WrappedSootField[FIELD_COUNT];
+
+	static {
+		for (int i = 0; i < FIELD_COUNT; i++)
+			FIELDS[i] = new WrappedSootField(new SootField("f" + i, RefType.v("java.lang.Object")), null);
+	}
+
+	/**
+	 * @return A field accessed in none of the shapes.
+	 */
+	static WrappedSootField freshField() {
+		return new WrappedSootField(new SootField("fresh", RefType.v("java.lang.Object")), null);
+	}
+
+	static WrappedSootField field(int i) {
+		return FIELDS[i];
+	}
+
+	/**
+	 * @param shape
+	 *            One of {@link #SHORT} (two fields), {@link #LONG} (eight
+	 *            distinct fields) or {@link #LOOP} (a repeated field, which is
+	 *            over-approximated).
+	 */
+	static WrappedSootField[] fields(String shape) {
+		switch (shape) {
+		case SHORT:
+			return new WrappedSootField[] { FIELDS[0], FIELDS[1] };
+		case LONG:
+			return FIELDS.clone();
+		case LOOP:
+			return new WrappedSootField[] { FIELDS[0], FIELDS[1], FIELDS[2], FIELDS[1] };
+		default:
+			throw new IllegalArgumentException("Unknown shape " + shape);
+		}
+	}
+}
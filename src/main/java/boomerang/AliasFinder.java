@@ -1,28 +1,37 @@
 package boomerang;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Set;
-
-import com.beust.jcommander.internal.Sets;
-import com.google.common.base.Stopwatch;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 
+import boomerang.BoomerangMetrics.Phase;
 import boomerang.accessgraph.AccessGraph;
-import boomerang.accessgraph.SetBasedFieldGraph;
 import boomerang.accessgraph.WrappedSootField;
 import boomerang.backward.BackwardSolver;
 import boomerang.context.IContextRequester;
 import boomerang.context.NoContextRequester;
 import boomerang.forward.ForwardSolver;
+import boomerang.ifdssolver.DefaultIFDSTabulationProblem.Direction;
+import boomerang.ifdssolver.IFDSSolver;
+import boomerang.jfr.FlightRecorderEvents;
 import heros.solver.Pair;
 import soot.Local;
 import soot.RefType;
-import soot.Scene;
 import soot.SootField;
-import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.ThrowStmt;
 
-public class AliasFinder {
+public class AliasFinder implements AutoCloseable {
 
 	public static boolean HANDLE_EXCEPTION_FLOW = true;
 	public final static SootField ARRAY_FIELD = new SootField("array", RefType.v("java.lang.Object")) {
@@ -39,31 +48,81 @@ public class AliasFinder {
 	public BoomerangContext context;
 
 	/**
-	 * Methods to be ignored by the analysis.
+	 * Whether the queries share the solver state, see {@link #startSession()}.
+	 */
+	private boolean session;
+
+	/**
+	 * The context requester of the queries answered from the current solver
+	 * state of the session.
 	 */
-	public static Set<SootMethod> IGNORED_METHODS = new HashSet<SootMethod>();
+	private IContextRequester sessionRequester;
 
 	/**
-	 * Holds the System.arraycopy method and is used within the flow functions
-	 * to describe aliases flow upon calling this method.
+	 * The cached results of earlier queries, <code>null</code> if caching is
+	 * disabled.
 	 */
-	private static SootMethod ARRAY_COPY;
-	public static Set<SootMethod> VISITED_METHODS = Sets.newHashSet();
+	private final QueryCache queryCache;
 
-	public static SootMethod arrayCopy(){
-		if(ARRAY_COPY == null)
-		    try {
-		      ARRAY_COPY =
-		          Scene.v().getMethod(
-		              "<java.lang.System: void arraycopy(java.lang.Object,int,java.lang.Object,int,int)>");
-		    } catch (RuntimeException e) {
+	/**
+	 * Held while a query runs, such that the queries of this finder never
+	 * overlap. A synchronous query fails if it cannot acquire the lock, an
+	 * asynchronous query waits for it.
+	 */
+	private final ReentrantLock queryLock = new ReentrantLock();
 
-		    }
-		return ARRAY_COPY;
-	} 
+	/**
+	 * The asynchronous queries which are neither executed nor submitted to
+	 * their executor yet, in the order they were triggered. Guarded by itself.
+	 */
+	private final Queue<AsyncQuery> asyncQueries = new ArrayDeque<>();
+
+	/**
+	 * Whether an asynchronous query is submitted to its executor and has not
+	 * finished yet. Guarded by {@link #asyncQueries}.
+	 */
+	private boolean asyncQueryRunning;
 
 	public AliasFinder(BoomerangOptions options) {
 		this.context = new BoomerangContext(options);
+		this.queryCache = context.getQueryCache();
+	}
+
+	/**
+	 * @return The cache of query results, <code>null</code> if
+	 *         {@link BoomerangOptions#getQueryCacheSize()} disables it. The
+	 *         cache is kept across sessions, see {@link QueryCache} for when
+	 *         it must be invalidated.
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Starts a session. All queries until {@link #endSession()} share the
+	 * exploded super graph computed so far: path edges, summaries and
+	 * incomings of earlier queries are kept, such that a query only propagates
+	 * the path edges it lacks. Calling {@link #startQuery()} is not required
+	 * within a session, each query receives the full time budget.
+	 * 
+	 * The solver state is discarded when a query times out or when a query
+	 * uses a context requester not equal to the one of the previous query. The
+	 * results of a query may reflect calling contexts which earlier queries of
+	 * the session explored.
+	 */
+	public void startSession() {
+		session = true;
+		sessionRequester = null;
+		context.resetSolvers();
+	}
+
+	/**
+	 * Ends the session and discards the shared solver state.
+	 */
+	public void endSession() {
+		session = false;
+		sessionRequester = null;
+		context.resetSolvers();
 	}
 
 	/**
@@ -118,9 +177,9 @@ public class AliasFinder {
 			IContextRequester req) {
 		AccessGraph ap;
 		if (field == null) {
-			ap = new AccessGraph(local);
+			ap = AccessGraph.create(local);
 		} else {
-			ap = new AccessGraph(local, field);
+			ap = AccessGraph.create(local, field);
 		}
 		return findAliasAtStmt(ap, stmt, req);
 	}
@@ -163,7 +222,7 @@ public class AliasFinder {
 	 *         associated values are sets of access graph pointing to the
 	 *         particular allocation site.
 	 */
-	private AliasResults internalFindAliasAtStmt(Query q, IContextRequester req) {
+	private AliasResults internalFindAliasAtStmt(Query q, IContextRequester req, AliasResultListener listener) {
 		if (context.startTime == null)
 			throw new RuntimeException("Call startQuery() before triggering a Query!");
 		Unit stmt = q.getStmt();
@@ -175,57 +234,428 @@ public class AliasFinder {
 			return new AliasResults();
 
 		context.debugger.startQuery(q);
-		AliasResults res = fixpointIteration(stmt,ap);
+		AliasResults res = fixpointIteration(stmt, ap, listener);
 		context.debugger.finishedQuery(q, res);
 		return res;
 	}
 
 	public AliasResults findAliasAtStmt(AccessGraph ap, Unit stmt, IContextRequester req) {
+		return findAliasAtStmt(ap, stmt, req, null);
+	}
 
+	/**
+	 * This method triggers a query for the provided access graph at the given
+	 * statement and reports its results to the listener while the query is
+	 * running. The listener can stop the query once it has seen the results it
+	 * needs, the returned results are then incomplete and marked as timed out.
+	 * Without a listener the results are taken from and stored into the
+	 * {@link QueryCache}, if enabled.
+	 * 
+	 * Queries of one finder must not run concurrently, an
+	 * {@link IllegalStateException} is thrown if another query of this finder
+	 * is running, e.g. an asynchronous one.
+	 * 
+	 * @param ap
+	 *            An access graph for which aliases should be searched
+	 * @param stmt
+	 *            The statement at which the query for aliases should be
+	 *            triggered.
+	 * @param req
+	 *            A IContextRequestor specifying under which call stack to be
+	 *            looking for aliases.
+	 * @param listener
+	 *            Receives the results during the query, may be
+	 *            <code>null</code>.
+	 * @return A multimap where the keys represent the allocation site and the
+	 *         associated values are sets of access graph pointing to the
+	 *         particular allocation site.
+	 */
+	public AliasResults findAliasAtStmt(AccessGraph ap, Unit stmt, IContextRequester req,
+			AliasResultListener listener) {
+		lockQuery();
+		try {
+			return findAliasAtStmtLocked(ap, stmt, req, listener);
+		} finally {
+			queryLock.unlock();
+		}
+	}
+
+	private AliasResults findAliasAtStmtLocked(AccessGraph ap, Unit stmt, IContextRequester req,
+			AliasResultListener listener) {
 		AliasResults res = null;
 		Query q = new Query(ap, stmt, context.icfg.getMethodOf(stmt));
+		boolean cached = (queryCache != null && listener == null);
+		if (cached) {
+			res = queryCache.get(q, req);
+			if (res != null) {
+				context.debugger.onLoadingQueryFromCache(q, res);
+				return res;
+			}
+		}
+		if (session)
+			prepareSessionQuery(req);
+		Object event = FlightRecorderEvents.beginQuery();
+		long propagationsAtStart = context.getPropagationCount();
+		boolean stopped;
 		try {
-			res = internalFindAliasAtStmt(q, req);
+			res = internalFindAliasAtStmt(q, req, listener);
 		} catch (BoomerangTimeoutException e) {
 			throw new BoomerangTimeoutException();
 		} finally {
+			stopped = context.clearStop();
 			context.debugger.onAliasQueryFinished(q, res);
+			FlightRecorderEvents.endQuery(event, q, res, context.getPropagationCount() - propagationsAtStart,
+					context.getPathEdgeCount());
+		}
+		if ((session || stopped) && res.queryTimedout()) {
+			// The fixpoint was left incomplete, edges marked as processed may
+			// not have been propagated. Outside of a session the solvers are
+			// kept after an exhausted budget, as before, but a query stopped by
+			// its listener must not leave pending tasks to the next query.
+			context.resetSolvers();
+			sessionRequester = null;
 		}
+		if (cached)
+			queryCache.put(q, req, res);
 		return res;
 	}
 
-	private AliasResults fixpointIteration(Unit stmt, AccessGraph accessGraph) {
-		BackwardSolver backwardSolver = context.getBackwardSolver();
-		ForwardSolver forwardSolver = context.getForwardSolver();
+	/**
+	 * Triggers the query on the executor of
+	 * {@link BoomerangOptions#getQueryExecutor()}, see
+	 * {@link #findAliasAtStmtAsync(AccessGraph, Unit, IContextRequester, Executor)}.
+	 */
+	public CompletableFuture<AliasResults> findAliasAtStmtAsync(AccessGraph ap, Unit stmt, IContextRequester req) {
+		return findAliasAtStmtAsync(ap, stmt, req, context.getOptions().getQueryExecutor());
+	}
+
+	/**
+	 * Triggers the query for the access graph at the given statement on the
+	 * executor and returns immediately. The budget of the query starts when
+	 * it is executed, calling {@link #startQuery()} is not required.
+	 * Asynchronous queries of this finder are executed one after the other in
+	 * the order they are triggered: a query is submitted to its executor once
+	 * the previous one has finished, no thread of the executor waits for it.
+	 * An asynchronous query waits for a running synchronous query of this
+	 * finder, a synchronous query triggered while an asynchronous one runs
+	 * fails.
+	 * 
+	 * Cancelling the future stops the solvers before their next propagation.
+	 * The solver state of the cancelled query is discarded, such that the
+	 * finder can be used for further queries. A query cancelled before it
+	 * started is not executed at all.
+	 * 
+	 * @param ap
+	 *            An access graph for which aliases should be searched
+	 * @param stmt
+	 *            The statement at which the query for aliases should be
+	 *            triggered.
+	 * @param req
+	 *            A IContextRequestor specifying under which call stack to be
+	 *            looking for aliases.
+	 * @param executor
+	 *            The executor to run the query on.
+	 * @return The future results of the query.
+	 */
+	public CompletableFuture<AliasResults> findAliasAtStmtAsync(AccessGraph ap, Unit stmt, IContextRequester req,
+			Executor executor) {
+		AsyncQuery query = new AsyncQuery(ap, stmt, req, executor);
+		synchronized (asyncQueries) {
+			asyncQueries.add(query);
+			if (asyncQueryRunning)
+				return query.future;
+			asyncQueryRunning = true;
+		}
+		submitNextAsyncQuery();
+		return query.future;
+	}
+
+	/**
+	 * Submits the next waiting asynchronous query to its executor. A query
+	 * whose executor rejects it fails and the one after it is submitted.
+	 */
+	private void submitNextAsyncQuery() {
+		while (true) {
+			final AsyncQuery query;
+			synchronized (asyncQueries) {
+				query = asyncQueries.poll();
+				if (query == null) {
+					asyncQueryRunning = false;
+					return;
+				}
+			}
+			try {
+				query.executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							runAsync(query);
+						} finally {
+							submitNextAsyncQuery();
+						}
+					}
+				});
+				return;
+			} catch (RejectedExecutionException e) {
+				query.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void runAsync(AsyncQuery query) {
+		CompletableFuture<AliasResults> future = query.future;
+		if (future.isDone())
+			return;
+		queryLock.lock();
+		context.setCancellableQuery(future);
+		try {
+			if (!session)
+				startQuery();
+			AliasResults res = findAliasAtStmt(query.ap, query.stmt, query.req);
+			if (future.isCancelled()) {
+				// The fixpoint was left incomplete.
+				context.resetSolvers();
+				sessionRequester = null;
+			} else {
+				future.complete(res);
+			}
+		} catch (Throwable e) {
+			future.completeExceptionally(e);
+		} finally {
+			context.setCancellableQuery(null);
+			queryLock.unlock();
+		}
+	}
+
+	/**
+	 * Acquires {@link #queryLock} for a synchronous query.
+	 * 
+	 * @throws IllegalStateException
+	 *             If another query of this finder is running.
+	 */
+	private void lockQuery() {
+		if (!queryLock.tryLock())
+			throw new IllegalStateException("Another query of this finder is running");
+	}
+
+	/**
+	 * An asynchronous query waiting to be executed.
+	 */
+	private static class AsyncQuery {
+		final CompletableFuture<AliasResults> future = new CompletableFuture<>();
+		final AccessGraph ap;
+		final Unit stmt;
+		final IContextRequester req;
+		final Executor executor;
+
+		AsyncQuery(AccessGraph ap, Unit stmt, IContextRequester req, Executor executor) {
+			this.ap = ap;
+			this.stmt = stmt;
+			this.req = req;
+			this.executor = executor;
+		}
+	}
+
+	/**
+	 * Answers a batch of queries within one combined fixpoint iteration. The
+	 * backward propagations of all queries are seeded at once, such that the
+	 * queries share the path edges they have in common. The context to be
+	 * searched for is the NoContextRequester.
+	 * 
+	 * @param queries
+	 *            The queries to answer.
+	 * @return The results of each query, in iteration order of the queries.
+	 */
+	public Map<Query, AliasResults> findAliases(Collection<Query> queries) {
+		return findAliases(queries, new NoContextRequester());
+	}
+
+	/**
+	 * Answers a batch of queries within one combined fixpoint iteration. The
+	 * backward propagations of all queries are seeded at once, such that the
+	 * queries share the path edges they have in common. If the budget is
+	 * exceeded, the results of all queries are marked as timed out. Queries
+	 * whose results are in the {@link QueryCache} are not solved again. Fails
+	 * like {@link #findAliasAtStmt(AccessGraph, Unit, IContextRequester, AliasResultListener)}
+	 * if another query of this finder is running.
+	 * 
+	 * @param queries
+	 *            The queries to answer.
+	 * @param req
+	 *            A IContextRequestor specifying under which call stack to be
+	 *            looking for aliases.
+	 * @return The results of each query, in iteration order of the queries.
+	 */
+	public Map<Query, AliasResults> findAliases(Collection<Query> queries, IContextRequester req) {
+		lockQuery();
+		try {
+			return findAliasesLocked(queries, req);
+		} finally {
+			queryLock.unlock();
+		}
+	}
+
+	private Map<Query, AliasResults> findAliasesLocked(Collection<Query> queries, IContextRequester req) {
+		if (queryCache == null)
+			return solveAll(queries, req);
+		Map<Query, AliasResults> cached = new HashMap<>();
+		List<Query> pending = new ArrayList<>();
+		for (Query q : queries) {
+			AliasResults res = queryCache.get(q, req);
+			if (res == null) {
+				pending.add(q);
+			} else {
+				context.debugger.onLoadingQueryFromCache(q, res);
+				cached.put(q, res);
+			}
+		}
+		Map<Query, AliasResults> solved = (pending.isEmpty() ? new HashMap<Query, AliasResults>()
+				: solveAll(pending, req));
+		Map<Query, AliasResults> results = new LinkedHashMap<>();
+		for (Query q : queries) {
+			AliasResults res = cached.get(q);
+			if (res == null) {
+				res = solved.get(q);
+				queryCache.put(q, req, res);
+			}
+			results.put(q, res);
+		}
+		return results;
+	}
+
+	private Map<Query, AliasResults> solveAll(Collection<Query> queries, IContextRequester req) {
+		// An invalid query must not leave the others half seeded.
+		for (Query q : queries)
+			context.validateInput(q.getAp(), q.getStmt());
+		if (session)
+			prepareSessionQuery(req);
+		if (context.startTime == null)
+			throw new RuntimeException("Call startQuery() before triggering a Query!");
+		context.setContextRequester(req);
+		Map<Query, AliasResults> results = new LinkedHashMap<>();
+		Object event = FlightRecorderEvents.beginQueryBatch();
+		long propagationsAtStart = context.getPropagationCount();
 		boolean timedout = false;
-		context.addAsVisitedBackwardMethod(context.icfg.getMethodOf(stmt));
-		context.addVisitableMethod(context.icfg.getMethodOf(stmt));
-		try{
-			backwardSolver.startPropagation(accessGraph, stmt);
-			backwardSolver.awaitExecution();
-			while(!backwardSolver.isDone() || !forwardSolver.isDone()){
-				forwardSolver.awaitExecution();
-				backwardSolver.awaitExecution();
+		boolean stopped;
+		try {
+			for (Query q : queries) {
+				if (q.getStmt() instanceof ThrowStmt) {
+					results.put(q, new AliasResults());
+					continue;
+				}
+				context.debugger.startQuery(q);
+				startPropagation(q.getStmt(), q.getAp());
 			}
+			awaitFixpoint();
+		} catch (BoomerangTimeoutException e) {
+			timedout = true;
+		} finally {
+			stopped = context.clearStop();
+		}
+		for (Query q : queries) {
+			if (results.containsKey(q))
+				continue;
+			AliasResults res = collectResults(q.getStmt(), q.getAp());
+			if (timedout)
+				res.setTimedout();
+			context.debugger.finishedQuery(q, res);
+			context.debugger.onAliasQueryFinished(q, res);
+			results.put(q, res);
+		}
+		FlightRecorderEvents.endQueryBatch(event, results.values(), timedout,
+				context.getPropagationCount() - propagationsAtStart, context.getPathEdgeCount());
+		if ((session || stopped) && timedout) {
+			context.resetSolvers();
+			sessionRequester = null;
+		}
+		return results;
+	}
+
+	private AliasResults fixpointIteration(Unit stmt, AccessGraph accessGraph, AliasResultListener listener) {
+		boolean timedout = false;
+		if (listener != null)
+			context.getForwardPathEdges().addResultListener(stmt, accessGraph, listener);
+		try{
+			startPropagation(stmt, accessGraph);
+			awaitFixpoint();
 		} catch(BoomerangTimeoutException e){
 			timedout = true;
+		} finally {
+			if (listener != null)
+				context.getForwardPathEdges().removeResultListener(stmt, accessGraph, listener);
 		}
-		AliasResults res = new AliasResults();
-		res.putAll(context.getForwardPathEdges().getResultAtStmtContainingValue(stmt, accessGraph, new HashSet<Pair<Unit,AccessGraph>>()));
+		AliasResults res = collectResults(stmt, accessGraph);
 
 		if(timedout)
 			res.setTimedout();
 		return res;
 	}
 
+	private void startPropagation(Unit stmt, AccessGraph accessGraph) {
+		long start = System.nanoTime();
+		context.addAsVisitedBackwardMethod(context.icfg.getMethodOf(stmt));
+		context.addQueryMethod(context.icfg.getMethodOf(stmt));
+		context.addVisitableMethod(context.icfg.getMethodOf(stmt));
+		context.getBackwardSolver().startPropagation(accessGraph, stmt);
+		context.getMetrics().phaseFinished(Phase.Seeding, System.nanoTime() - start);
+	}
+
+	private void awaitFixpoint() {
+		long start = System.nanoTime();
+		try {
+			BackwardSolver backwardSolver = context.getBackwardSolver();
+			ForwardSolver forwardSolver = context.getForwardSolver();
+			awaitExecution(backwardSolver, Direction.BACKWARD);
+			while(!backwardSolver.isDone() || !forwardSolver.isDone()){
+				awaitExecution(forwardSolver, Direction.FORWARD);
+				awaitExecution(backwardSolver, Direction.BACKWARD);
+			}
+		} finally {
+			context.getMetrics().phaseFinished(Phase.Fixpoint, System.nanoTime() - start);
+		}
+	}
 
+	/**
+	 * Processes the pending tasks of the scheduler shared by both solvers,
+	 * recorded as solver phase event of the given direction.
+	 */
+	private void awaitExecution(IFDSSolver<?, ?, ?, ?> solver, Direction direction) {
+		Object event = FlightRecorderEvents.beginSolverPhase();
+		long propagationsAtStart = solver.getPropagationCount();
+		try {
+			solver.awaitExecution();
+		} finally {
+			FlightRecorderEvents.endSolverPhase(event, direction, solver.getPropagationCount() - propagationsAtStart);
+		}
+	}
 
+	private AliasResults collectResults(Unit stmt, AccessGraph accessGraph) {
+		long start = System.nanoTime();
+		AliasResults res = new AliasResults();
+		res.putAll(context.getForwardPathEdges().getResultAtStmtContainingValue(stmt, accessGraph, new HashSet<Pair<Unit,AccessGraph>>()));
+		context.getMetrics().phaseFinished(Phase.Results, System.nanoTime() - start);
+		return res;
+	}
 
+	private void prepareSessionQuery(IContextRequester req) {
+		if (sessionRequester != null && !sessionRequester.equals(req))
+			context.resetSolvers();
+		sessionRequester = req;
+		startQuery();
+	}
 
 	public void startQuery() {
-		ARRAY_COPY = null;
-		context.startTime = Stopwatch.createStarted();
-		if (SetBasedFieldGraph.allFields != null)
-			SetBasedFieldGraph.allFields.clear();
+		context.startBudget();
+	}
+
+	/**
+	 * Discards the solver state and shuts down the threads of the scheduler,
+	 * see {@link ContextScheduler#shutdown()}. The finder must not be used
+	 * afterwards.
+	 */
+	@Override
+	public void close() {
+		context.resetSolvers();
+		context.scheduler.shutdown();
 	}
 }
@@ -0,0 +1,44 @@
+package boomerang;
+
+import boomerang.accessgraph.AccessGraph;
+import heros.solver.Pair;
+import soot.Unit;
+
+/**
+ * Receives the results of a query while the solvers are still running, see
+ * {@link AliasFinder#findAliasAtStmt(AccessGraph, Unit, boomerang.context.IContextRequester, AliasResultListener)}.
+ * The allocation sites and aliases are reported as soon as a forward path edge
+ * reaches the statement of the query. Only results whose allocation site is
+ * within the method of the query or its callees are reported early, results
+ * which require the calling contexts of the method are only part of the final
+ * {@link AliasResults}.
+ * 
+ * If the scheduler executes tasks concurrently, the listener is called
+ * concurrently as well.
+ * 
+ * @author spaeth
+ *
+ */
+public interface AliasResultListener {
+	/**
+	 * Called once per allocation site of the queried access graph, before any
+	 * alias of the allocation site is reported.
+	 * 
+	 * @param allocationSite
+	 *            The allocation site as a key of {@link AliasResults}.
+	 * @return <code>false</code> to stop the query.
+	 */
+	boolean onAllocationSite(Pair<Unit, AccessGraph> allocationSite);
+
+	/**
+	 * Called once per alias of the queried access graph at the statement of
+	 * the query. The queried access graph itself is reported as well.
+	 * 
+	 * @param allocationSite
+	 *            The allocation site the alias points to.
+	 * @param alias
+	 *            The alias.
+	 * @return <code>false</code> to stop the query.
+	 */
+	boolean onAlias(Pair<Unit, AccessGraph> allocationSite, AccessGraph alias);
+}
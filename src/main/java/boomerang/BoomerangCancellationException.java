@@ -0,0 +1,15 @@
+package boomerang;
+
+/**
+ * Thrown within the solvers when the caller cancelled the running query, see
+ * {@link AliasFinder#findAliasAtStmtAsync(boomerang.accessgraph.AccessGraph, soot.Unit, boomerang.context.IContextRequester)}.
+ * It leaves the fixpoint iteration the same way an exhausted budget does.
+ */
+public class BoomerangCancellationException extends BoomerangTimeoutException {
+
+	private static final long serialVersionUID = 1L;
+
+	public BoomerangCancellationException() {
+		super("Query cancelled");
+	}
+}
@@ -3,11 +3,13 @@ package boomerang;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import javax.lang.model.type.PrimitiveType;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Sets;
 
 import boomerang.accessgraph.AccessGraph;
 import boomerang.accessgraph.WrappedSootField;
@@ -36,6 +38,8 @@ import boomerang.pointsofindirection.PointOfIndirection;
 import heros.FlowFunction;
 import heros.solver.Pair;
 import soot.Local;
+import soot.Scene;
+import soot.SootField;
 import soot.SootMethod;
 import soot.Unit;
 import soot.Value;
@@ -72,23 +76,67 @@ public class BoomerangContext {
 	public MockedDataFlow backwardMockHandler = new DefaultBackwardDataFlowMocker(this);
 
 	Stopwatch startTime;
+	private long propagationsAtStart;
 
-	private Set<SootMethod> backwardVisitedMethods = new HashSet<>();
-	private Set<SootMethod> visitableMethods = new HashSet<>();
+	/**
+	 * The future of the running asynchronous query, <code>null</code> if the
+	 * running query cannot be cancelled.
+	 */
+	private volatile Future<?> cancellableQuery;
+
+	/**
+	 * Set when a listener of the running query requested to stop it.
+	 */
+	private volatile boolean stopped;
+
+	private Set<SootMethod> backwardVisitedMethods = Sets.newConcurrentHashSet();
+	private Set<SootMethod> visitableMethods = Sets.newConcurrentHashSet();
+	private Set<SootMethod> visitedMethods = Sets.newConcurrentHashSet();
+
+	/**
+	 * The methods of the queries started since the last call to
+	 * {@link #startBudget()}.
+	 */
+	private Set<SootMethod> queryMethods = Sets.newConcurrentHashSet();
+
+	/**
+	 * Methods whose effects are ignored at call sites.
+	 */
+	private Set<SootMethod> ignoredMethods = Sets.newConcurrentHashSet();
+
+	/**
+	 * Holds the System.arraycopy method and is used within the flow functions
+	 * to describe aliases flow upon calling this method. Resolved lazily.
+	 */
+	private volatile SootMethod arrayCopy;
+	private volatile boolean arrayCopyResolved;
+
+	private final boolean trackStatementsInFields;
 
 	public ContextScheduler scheduler;
 
+	private final BoomerangMetrics metrics;
+
+	/**
+	 * The cached results of earlier queries, <code>null</code> if caching is
+	 * disabled.
+	 */
+	private final QueryCache queryCache;
+
 	private BoomerangOptions options;
 
 	public BoomerangContext(BoomerangOptions options) {
 		this.options = options;
 		this.icfg = options.icfg();
 		this.bwicfg = new BackwardsInfoflowCFG(icfg);
+		this.metrics = new BoomerangMetrics(icfg.getNumbering(), options.measureTaskTimes());
+		int cacheSize = options.getQueryCacheSize();
+		this.queryCache = (cacheSize > 0 ? new QueryCache(cacheSize) : null);
 		this.debugger = options.getDebugger();
 		if (debugger instanceof JSONOutputDebugger)
 			System.err.println("WARNING: Using JSON output slows down performance");
 		this.debugger.setContext(this);
-		WrappedSootField.TRACK_STMT = options.getTrackStatementsInFields();
+		this.trackStatementsInFields = options.getTrackStatementsInFields();
 		this.scheduler = options.getScheduler();
 		this.scheduler.setContext(this);
 		this.propagationController = options.propagationController();
@@ -162,10 +210,100 @@ public class BoomerangContext {
 
 	public IPropagationController<Unit, AccessGraph> propagationController;
 
+	/**
+	 * Starts the budget of a new query: the time and the propagations are
+	 * measured from now on.
+	 */
+	void startBudget() {
+		startTime = Stopwatch.createStarted();
+		propagationsAtStart = getPropagationCount();
+		stopped = false;
+		queryMethods.clear();
+	}
+
+	void setCancellableQuery(Future<?> query) {
+		this.cancellableQuery = query;
+	}
+
+	/**
+	 * Stops the running query before the next propagation, see
+	 * {@link AliasResultListener}.
+	 */
+	public void stopQuery() {
+		stopped = true;
+	}
+
+	/**
+	 * Withdraws a stop requested by {@link #stopQuery()}, such that it does not
+	 * affect later queries. Called when a query ends.
+	 * 
+	 * @return <code>true</code> if the query was stopped.
+	 */
+	boolean clearStop() {
+		boolean wasStopped = stopped;
+		stopped = false;
+		return wasStopped;
+	}
+
+	/**
+	 * @return <code>true</code> if the caller cancelled or stopped the running
+	 *         query.
+	 */
+	public boolean isCancelled() {
+		if (stopped)
+			return true;
+		Future<?> query = cancellableQuery;
+		return query != null && query.isCancelled();
+	}
+
 	public boolean isOutOfBudget() {
+		return exhaustedBudget() != null;
+	}
+
+	/**
+	 * @return A description of the exhausted budget, <code>null</code> if the
+	 *         query is within all budgets.
+	 */
+	public String exhaustedBudget() {
 		if (startTime.elapsed(TimeUnit.MILLISECONDS) > options.getTimeBudget())
-			return true;
-		return false;
+			return "Time budget of " + options.getTimeBudget() + "ms exceeded";
+		if (getPropagationCount() - propagationsAtStart > options.getPropagationBudget())
+			return "Propagation budget of " + options.getPropagationBudget() + " exceeded";
+		if (getPathEdgeCount() > options.getPathEdgeBudget())
+			return "Path edge budget of " + options.getPathEdgeBudget() + " exceeded";
+		if (options.getMemoryBudget() != Long.MAX_VALUE) {
+			Runtime runtime = Runtime.getRuntime();
+			if (runtime.totalMemory() - runtime.freeMemory() > options.getMemoryBudget())
+				return "Memory budget of " + options.getMemoryBudget() + " bytes exceeded";
+		}
+		return null;
+	}
+
+	/**
+	 * @return The number of path edges the forward and backward solver
+	 *         scheduled for processing.
+	 */
+	public long getPropagationCount() {
+		long count = 0;
+		if (forwardSolver != null)
+			count += forwardSolver.getPropagationCount();
+		if (backwardSolver != null)
+			count += backwardSolver.getPropagationCount();
+		return count;
+	}
+
+	/**
+	 * @return The number of path edges stored by the forward and backward
+	 *         solver. As path edges are only discarded when the solvers are
+	 *         reset, this is also the peak number of stored path edges.
+	 */
+	public long getPathEdgeCount() {
+		long count = 0;
+		if (forwardSolver != null)
+			count += ((PathEdgeStore) forwardSolver.getPathEdges()).getPathEdgeCount();
+		if (backwardSolver != null)
+			count += ((PathEdgeStore) backwardSolver.getPathEdges()).getPathEdgeCount();
+		return count;
 	}
 
 	public void validateInput(AccessGraph ap, Unit stmt) {
@@ -182,6 +320,64 @@ public class BoomerangContext {
 		}
 	}
 
+	/**
+	 * Wraps the field accessed at the statement. The statement is only kept if
+	 * {@link BoomerangOptions#getTrackStatementsInFields()} is enabled.
+	 */
+	public WrappedSootField wrapField(SootField field, Unit stmt) {
+		return new WrappedSootField(field, trackStatementsInFields ? stmt : null);
+	}
+
+	public SootMethod arrayCopy() {
+		if (!arrayCopyResolved) {
+			try {
+				arrayCopy = Scene.v()
+						.getMethod("<java.lang.System: void arraycopy(java.lang.Object,int,java.lang.Object,int,int)>");
+			} catch (RuntimeException e) {
+
+			}
+			arrayCopyResolved = true;
+		}
+		return arrayCopy;
+	}
+
+	public void addVisitedMethod(SootMethod m) {
+		visitedMethods.add(m);
+	}
+
+	/**
+	 * @return The methods in which any path edge of the forward or backward
+	 *         solver has been registered.
+	 */
+	public Set<SootMethod> getVisitedMethods() {
+		return visitedMethods;
+	}
+
+	public void addQueryMethod(SootMethod m) {
+		queryMethods.add(m);
+	}
+
+	/**
+	 * @return <code>true</code> if a running query was triggered at a
+	 *         statement of the method.
+	 */
+	public boolean isQueryMethod(SootMethod m) {
+		return queryMethods.contains(m);
+	}
+
+	/**
+	 * Ignores the effects of the method at call sites. As this changes the
+	 * results of queries, the {@link QueryCache} is invalidated.
+	 */
+	public void addIgnoredMethod(SootMethod m) {
+		if (ignoredMethods.add(m) && queryCache != null)
+			queryCache.invalidateAll();
+	}
+
+	public boolean isIgnoredMethod(SootMethod m) {
+		return ignoredMethods.contains(m);
+	}
+
 	public boolean trackStaticFields() {
 		return options.getTrackStaticFields();
 	}
@@ -210,6 +406,23 @@ public class BoomerangContext {
 		return backwardSolver;
 	}
 
+	/**
+	 * Discards the forward and backward solver together with all path edges,
+	 * summaries and incomings computed so far. The solvers are recreated on
+	 * their next use.
+	 */
+	public void resetSolvers() {
+		if (forwardSolver != null)
+			forwardSolver.cleanup();
+		if (backwardSolver != null)
+			backwardSolver.cleanup();
+		forwardSolver = null;
+		backwardSolver = null;
+		backwardVisitedMethods.clear();
+		visitableMethods.clear();
+		scheduler.clear();
+	}
+
 	public PathEdgeStore getForwardPathEdges() {
 		return (PathEdgeStore) getForwardSolver().getPathEdges();
 	}
@@ -243,6 +456,21 @@ public class BoomerangContext {
 		return factsInCallee;
 	}
 	
+	/**
+	 * @return The counters of the analysis.
+	 */
+	public BoomerangMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return The cache of query results, <code>null</code> if
+	 *         {@link BoomerangOptions#getQueryCacheSize()} disables it.
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+
 	public BoomerangOptions getOptions() {
 		return options;
 	}
@@ -0,0 +1,147 @@
+package boomerang;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import boomerang.cfg.UnitNumbering;
+import boomerang.ifdssolver.DefaultIFDSTabulationProblem.Direction;
+import boomerang.ifdssolver.SolverMetrics;
+import soot.SootMethod;
+
+/**
+ * Counters of the analysis, accessible via {@link BoomerangContext#getMetrics()}.
+ * The counters of the forward and backward solver are kept separately, see
+ * {@link #of(Direction)}. All counters are cumulative over the lifetime of the
+ * context (also across {@link BoomerangContext#resetSolvers()}) until
+ * {@link #reset()} is called. They are cheap enough to be always enabled,
+ * except for the processing time of the tasks, see
+ * {@link BoomerangOptions#measureTaskTimes()}.
+ * 
+ * @author spaeth
+ *
+ */
+public class BoomerangMetrics {
+
+	/**
+	 * The phases of a query.
+	 */
+	public enum Phase {
+		/**
+		 * Seeding the backward solver with the queried access graph.
+		 */
+		Seeding,
+		/**
+		 * Iterating the forward and backward solver to their fixpoint.
+		 */
+		Fixpoint,
+		/**
+		 * Collecting the results from the forward path edges.
+		 */
+		Results
+	}
+
+	private final SolverMetrics<SootMethod> forward;
+	private final SolverMetrics<SootMethod> backward;
+	private final AtomicLong worklistHighWaterMark = new AtomicLong();
+	private final LongAdder poiRegistrations = new LongAdder();
+	private final LongAdder callbackInvocations = new LongAdder();
+	private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+
+	/**
+	 * @param numbering
+	 *            The numbering of the methods the propagations per method are
+	 *            counted by.
+	 * @param timeTasks
+	 *            Whether the processing time of the tasks is measured.
+	 */
+	public BoomerangMetrics(final UnitNumbering numbering, boolean timeTasks) {
+		IntFunction<SootMethod> methodOfNumber = new IntFunction<SootMethod>() {
+			@Override
+			public SootMethod apply(int methodNumber) {
+				return numbering.methodOf(methodNumber);
+			}
+		};
+		forward = new SolverMetrics<>(methodOfNumber, timeTasks);
+		backward = new SolverMetrics<>(methodOfNumber, timeTasks);
+		for (int i = 0; i < phaseNanos.length; i++)
+			phaseNanos[i] = new LongAdder();
+	}
+
+	public SolverMetrics<SootMethod> of(Direction direction) {
+		return (direction == Direction.FORWARD ? forward : backward);
+	}
+
+	/**
+	 * Records the number of pending tasks of the scheduler, which is shared by
+	 * both directions.
+	 */
+	public void worklistSize(long size) {
+		long max = worklistHighWaterMark.get();
+		while (size > max && !worklistHighWaterMark.compareAndSet(max, size))
+			max = worklistHighWaterMark.get();
+	}
+
+	public void poiRegistered() {
+		poiRegistrations.increment();
+	}
+
+	/**
+	 * Records a call of
+	 * {@link boomerang.pointsofindirection.AliasCallback#newAliasEncountered}.
+	 */
+	public void callbackInvoked() {
+		callbackInvocations.increment();
+	}
+
+	public void phaseFinished(Phase phase, long nanos) {
+		phaseNanos[phase.ordinal()].add(nanos);
+	}
+
+	/**
+	 * @return The maximal number of tasks pending at once.
+	 */
+	public long getWorklistHighWaterMark() {
+		return worklistHighWaterMark.get();
+	}
+
+	public long getPoiRegistrations() {
+		return poiRegistrations.sum();
+	}
+
+	public long getCallbackInvocations() {
+		return callbackInvocations.sum();
+	}
+
+	/**
+	 * @return The time spent in the phase by all queries in nanoseconds.
+	 */
+	public long getPhaseNanos(Phase phase) {
+		return phaseNanos[phase.ordinal()].sum();
+	}
+
+	public void reset() {
+		forward.reset();
+		backward.reset();
+		worklistHighWaterMark.set(0);
+		poiRegistrations.reset();
+		callbackInvocations.reset();
+		for (LongAdder a : phaseNanos)
+			a.reset();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("====== Boomerang Metrics ======");
+		sb.append("\nworklist high-water mark: ").append(getWorklistHighWaterMark());
+		sb.append("\npoints of indirection: ").append(getPoiRegistrations());
+		sb.append("\ncallback invocations: ").append(getCallbackInvocations());
+		sb.append("\nphases:");
+		for (Phase phase : Phase.values())
+			sb.append(' ').append(phase).append('=').append(getPhaseNanos(phase) / 1000000).append("ms");
+		sb.append("\n--- forward ---\n").append(forward);
+		sb.append("\n--- backward ---\n").append(backward);
+		sb.append("\n====================");
+		return sb.toString();
+	}
+}
@@ -1,5 +1,7 @@
 package boomerang;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Optional;
@@ -33,6 +35,34 @@ public abstract class BoomerangOptions {
 		return TimeUnit.SECONDS.toMillis(100);
 	}
 
+	/**
+	 * The maximal number of path edges the forward and backward solver
+	 * propagate for a single query. The number is deterministic in contrast
+	 * to {@link #getTimeBudget()}. Unlimited by default.
+	 */
+	public long getPropagationBudget() {
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * The maximal number of path edges stored by the forward and backward
+	 * solver together. In session mode the edges of previous queries count as
+	 * well. Unlimited by default.
+	 */
+	public long getPathEdgeBudget() {
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * The maximal used heap of the JVM in bytes. The used heap is measured
+	 * via {@link Runtime} and includes garbage not yet collected as well as
+	 * memory used outside of the analysis, hence the budget is approximate.
+	 * Unlimited by default.
+	 */
+	public long getMemoryBudget() {
+		return Long.MAX_VALUE;
+	}
+
 	public boolean getTrackStaticFields() {
 		return true;
 	}
@@ -54,15 +84,44 @@ public abstract class BoomerangOptions {
 		String str = "====== Boomerang Options ======";
 		str += "\nDebugger:\t\t" + getDebugger();
 		str += "\nAnalysisBudget(ms):\t" + getTimeBudget();
+		str += "\nPropagationBudget:\t" + getPropagationBudget();
+		str += "\nPathEdgeBudget:\t\t" + getPathEdgeBudget();
+		str += "\nMemoryBudget(bytes):\t" + getMemoryBudget();
 		str += "\nAllocationSiteHandler:\t" + allocationSiteHandlers();
 		str += "\n====================";
 		return str;
 	}
 
+	/**
+	 * The scheduler executing the path edge processing tasks of the forward and
+	 * backward solver. The default scheduler executes all tasks sequentially on
+	 * the calling thread in FIFO order, a {@link PriorityScheduler} processes
+	 * them sequentially in the order of its {@link PriorityScheduler.Ordering}s
+	 * and a {@link WorkStealingScheduler} processes them in parallel.
+	 */
 	public ContextScheduler getScheduler() {
 		return new ContextScheduler();
 	}
 
+	/**
+	 * The executor on which asynchronous queries run, see
+	 * {@link AliasFinder#findAliasAtStmtAsync(AccessGraph, Unit, boomerang.context.IContextRequester)}.
+	 * The common {@link ForkJoinPool} by default.
+	 */
+	public Executor getQueryExecutor() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * The maximal number of query results the {@link AliasFinder} caches, see
+	 * {@link QueryCache}. Returns <code>0</code> by default, which disables the
+	 * cache. Within a session the cached results of a query are returned even
+	 * if later queries explored further calling contexts.
+	 */
+	public int getQueryCacheSize() {
+		return 0;
+	}
+
 	public IPropagationController<Unit, AccessGraph> propagationController() {
 		return new IPropagationController<Unit, AccessGraph>() {
 			@Override
@@ -83,4 +142,13 @@ public abstract class BoomerangOptions {
 	public boolean onTheFlyCallGraphGeneration(){
 		return true;
 	}
+
+	/**
+	 * Whether the {@link BoomerangMetrics} measure the time spent processing
+	 * each kind of path edge. Reading the clock around every task is
+	 * noticeable on large queries, hence disabled by default.
+	 */
+	public boolean measureTaskTimes() {
+		return false;
+	}
 }
@@ -4,4 +4,16 @@ public class BoomerangTimeoutException extends RuntimeException {
 
 	private static final long serialVersionUID = 1L;
 
+	public BoomerangTimeoutException() {
+		super();
+	}
+
+	/**
+	 * @param message
+	 *            Describes the exhausted budget.
+	 */
+	public BoomerangTimeoutException(String message) {
+		super(message);
+	}
+
 }
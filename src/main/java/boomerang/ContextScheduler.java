@@ -1,29 +1,80 @@
 package boomerang;
 
 import boomerang.ifdssolver.Scheduler;
+import boomerang.jfr.FlightRecorderEvents;
 
 public class ContextScheduler extends Scheduler {
 	private int propagationCount;
-	private BoomerangContext context;
+	/**
+	 * The largest worklist size reported to the metrics since the last
+	 * {@link #clear()}, smaller sizes are not reported.
+	 */
+	private int worklistHighWaterMark;
+	protected BoomerangContext context;
 
 	public ContextScheduler() {
 	}
-	
+
 	public void setContext(BoomerangContext context){
 		this.context = context;
 	}
 
+	@Override
+	public void add(Runnable runnable) {
+		super.add(runnable);
+		recordWorklistSize(worklist.size());
+	}
+
+	protected void recordWorklistSize(int size) {
+		if (size <= worklistHighWaterMark)
+			return;
+		worklistHighWaterMark = size;
+		context.getMetrics().worklistSize(size);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		worklistHighWaterMark = 0;
+	}
+
 	@Override
 	public void awaitExecution() {
 		while (!worklist.isEmpty()) {
-			Runnable task = worklist.poll();
 			propagationCount++;
-			if (propagationCount % 1000 == 0) {
-				if (context.isOutOfBudget()) {
-					throw new BoomerangTimeoutException();
-				}
-			}
+			checkBudget(propagationCount);
+			Runnable task = worklist.poll();
 			task.run();
 		}
 	}
+
+	/**
+	 * Releases the threads of the scheduler, see {@link AliasFinder#close()}.
+	 * The sequential scheduler holds none.
+	 */
+	public void shutdown() {
+	}
+
+	/**
+	 * Checks whether the query has been cancelled before each task and the
+	 * analysis budget every 1000 executed tasks.
+	 *
+	 * @param executedTasks
+	 *            The number of tasks executed so far.
+	 */
+	protected void checkBudget(long executedTasks) {
+		if (context.isCancelled()) {
+			FlightRecorderEvents.queryCancelled("Query cancelled", context.getPropagationCount(),
+					context.getPathEdgeCount());
+			throw new BoomerangCancellationException();
+		}
+		if (executedTasks % 1000 == 0) {
+			String exhausted = context.exhaustedBudget();
+			if (exhausted != null) {
+				FlightRecorderEvents.budgetExceeded(exhausted, context.getPropagationCount(),
+						context.getPathEdgeCount());
+				throw new BoomerangTimeoutException(exhausted);
+			}
+		}
+	}
 }
@@ -0,0 +1,231 @@
+package boomerang;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import boomerang.accessgraph.AccessGraph;
+import boomerang.cfg.IExtendedICFG;
+import boomerang.ifdssolver.DefaultIFDSTabulationProblem.Direction;
+import boomerang.ifdssolver.IFDSSolver;
+import boomerang.ifdssolver.IPathEdge;
+import soot.SootMethod;
+import soot.Unit;
+
+/**
+ * A {@link ContextScheduler} that processes the scheduled path edges in the
+ * order of the given {@link Ordering}s instead of FIFO order. The orderings
+ * are applied lexicographically, edges of equal rank (and tasks which are not
+ * path edge processing tasks) are processed in FIFO order. The rank of a task
+ * is computed once when it is scheduled.
+ * 
+ * The scheduler is enabled by returning it from
+ * {@link BoomerangOptions#getScheduler()}, e.g.
+ * 
+ * <pre>
+ * return new PriorityScheduler(Ordering.INTRAPROCEDURAL_FIRST, Ordering.REVERSE_POST_ORDER);
+ * </pre>
+ * 
+ * or with the {@link #DEFAULT_ORDERINGS} by <code>new PriorityScheduler()</code>.
+ * 
+ * @author spaeth
+ *
+ */
+public class PriorityScheduler extends ContextScheduler {
+
+	public enum Ordering {
+		/**
+		 * Edges to statements earlier in reverse post-order of their method
+		 * first (post-order for backward edges), such that a statement is
+		 * processed after its predecessors.
+		 */
+		REVERSE_POST_ORDER,
+		/**
+		 * Edges to statements other than call sites, start points and exit
+		 * statements first, then edges to exit statements, then edges to call
+		 * sites and start points. The summaries of a method are thereby
+		 * complete before they are applied at its call sites, and the end
+		 * summaries are created before new calls are entered.
+		 */
+		INTRAPROCEDURAL_FIRST,
+		/**
+		 * Edges with fewer fields in the fact at the target first, set based
+		 * field graphs last.
+		 */
+		FEWER_FIELDS_FIRST,
+		/**
+		 * Edges within the methods of the running queries first.
+		 */
+		QUERY_METHOD_FIRST
+	}
+
+	/**
+	 * The orderings of {@link #PriorityScheduler()}: the edges of the query
+	 * methods first, such that the queries are answered from the path edges
+	 * close to them before distant methods are explored, then intraprocedural
+	 * edges and within a method the reverse post-order.
+	 */
+	public static final Ordering[] DEFAULT_ORDERINGS = { Ordering.QUERY_METHOD_FIRST, Ordering.INTRAPROCEDURAL_FIRST,
+			Ordering.REVERSE_POST_ORDER };
+
+	private final Ordering[] orderings;
+	private long scheduledTasks;
+
+	/**
+	 * The reverse post-order index of the units of the methods in
+	 * {@link #orderedMethods}.
+	 */
+	private final Map<Unit, Integer> reversePostOrder = new HashMap<>();
+	private final Set<SootMethod> orderedMethods = new HashSet<>();
+
+	/**
+	 * Creates a scheduler applying the {@link #DEFAULT_ORDERINGS}.
+	 */
+	public PriorityScheduler() {
+		this(DEFAULT_ORDERINGS);
+	}
+
+	/**
+	 * @param orderings
+	 *            The orderings to apply, the first one has the highest
+	 *            precedence.
+	 */
+	public PriorityScheduler(Ordering... orderings) {
+		this.orderings = orderings.clone();
+		this.worklist = new PriorityQueue<>(64, new Comparator<Runnable>() {
+			@Override
+			public int compare(Runnable o1, Runnable o2) {
+				return ((PrioritizedTask) o1).compareTo((PrioritizedTask) o2);
+			}
+		});
+	}
+
+	@Override
+	public void add(Runnable runnable) {
+		worklist.add(new PrioritizedTask(runnable, rank(runnable), scheduledTasks++));
+		recordWorklistSize(worklist.size());
+	}
+
+	private int[] rank(Runnable runnable) {
+		int[] rank = new int[orderings.length];
+		if (!(runnable instanceof IFDSSolver.PathEdgeProcessingTask))
+			return rank;
+		IFDSSolver<?, ?, ?, ?>.PathEdgeProcessingTask task = (IFDSSolver<?, ?, ?, ?>.PathEdgeProcessingTask) runnable;
+		@SuppressWarnings("unchecked")
+		IPathEdge<Unit, AccessGraph> edge = (IPathEdge<Unit, AccessGraph>) task.edge;
+		for (int i = 0; i < orderings.length; i++)
+			rank[i] = rank(orderings[i], edge, task.getDirection());
+		return rank;
+	}
+
+	private int rank(Ordering ordering, IPathEdge<Unit, AccessGraph> edge, Direction direction) {
+		IExtendedICFG icfg = context.icfg;
+		Unit target = edge.getTarget();
+		switch (ordering) {
+		case REVERSE_POST_ORDER:
+			int index = reversePostOrderOf(target);
+			return (direction == Direction.BACKWARD ? -index : index);
+		case INTRAPROCEDURAL_FIRST:
+			if (icfg.isCallStmt(target) || icfg.isStartPoint(target))
+				return 2;
+			return (icfg.isExitStmt(target) ? 1 : 0);
+		case FEWER_FIELDS_FIRST:
+			AccessGraph fact = edge.factAtTarget();
+			return (fact.hasSetBasedFieldGraph() ? Integer.MAX_VALUE : fact.getFieldCount());
+		case QUERY_METHOD_FIRST:
+			return (context.isQueryMethod(icfg.getMethodOf(target)) ? 0 : 1);
+		default:
+			return 0;
+		}
+	}
+
+	private int reversePostOrderOf(Unit u) {
+		Integer index = reversePostOrder.get(u);
+		if (index != null)
+			return index;
+		SootMethod m = context.icfg.getMethodOf(u);
+		if (orderedMethods.add(m))
+			computeReversePostOrder(m);
+		index = reversePostOrder.get(u);
+		return (index == null ? Integer.MAX_VALUE : index);
+	}
+
+	/**
+	 * Computes the reverse post-order of the units reachable from the start
+	 * points of the method by an iterative depth-first search.
+	 */
+	private void computeReversePostOrder(SootMethod m) {
+		IExtendedICFG icfg = context.icfg;
+		Set<Unit> visited = new HashSet<>();
+		Deque<Unit> postOrder = new ArrayDeque<>();
+		Deque<Unit> stack = new ArrayDeque<>();
+		Deque<Iterator<Unit>> successors = new ArrayDeque<>();
+		for (Unit sp : icfg.getStartPointsOf(m)) {
+			if (!visited.add(sp))
+				continue;
+			stack.push(sp);
+			successors.push(icfg.getSuccsOf(sp).iterator());
+			while (!stack.isEmpty()) {
+				Iterator<Unit> it = successors.peek();
+				if (it.hasNext()) {
+					Unit succ = it.next();
+					if (visited.add(succ)) {
+						stack.push(succ);
+						successors.push(icfg.getSuccsOf(succ).iterator());
+					}
+				} else {
+					postOrder.push(stack.pop());
+					successors.pop();
+				}
+			}
+		}
+		int index = 0;
+		for (Unit u : postOrder)
+			reversePostOrder.put(u, index++);
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		reversePostOrder.clear();
+		orderedMethods.clear();
+	}
+
+	private static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+		private final Runnable task;
+		private final int[] rank;
+		private final long sequence;
+
+		PrioritizedTask(Runnable task, int[] rank, long sequence) {
+			this.task = task;
+			this.rank = rank;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void run() {
+			task.run();
+		}
+
+		@Override
+		public int compareTo(PrioritizedTask o) {
+			for (int i = 0; i < rank.length; i++) {
+				int c = Integer.compare(rank[i], o.rank[i]);
+				if (c != 0)
+					return c;
+			}
+			return Long.compare(sequence, o.sequence);
+		}
+
+		@Override
+		public String toString() {
+			return task.toString();
+		}
+	}
+}
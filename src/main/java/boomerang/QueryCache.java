@@ -0,0 +1,167 @@
+package boomerang;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import boomerang.context.IContextRequester;
+
+/**
+ * A bounded cache of the results of alias queries, keyed by the {@link Query}
+ * and the {@link IContextRequester} it was asked under. Requesters are
+ * distinguished by identity unless they implement
+ * {@link Object#equals(Object)}, as the stateless requesters do. When the
+ * cache is full, the least recently used result is evicted. The cache holds
+ * copies of the results, callers may modify the results they obtain.
+ *
+ * The cache belongs to the {@link BoomerangContext} of an {@link AliasFinder},
+ * whose control-flow graph is fixed. The results do not depend on the state of
+ * the solvers, hence they stay valid when the solvers are reset (e.g. by
+ * {@link AliasFinder#startSession()}). Ignoring further methods with
+ * {@link BoomerangContext#addIgnoredMethod(soot.SootMethod)} invalidates the
+ * cache. Changes of the analyzed program are not noticed: clients which modify
+ * the scene or the bodies of its methods while keeping the
+ * {@link AliasFinder} must call {@link #invalidateAll()}.
+ *
+ * @author spaeth
+ *
+ */
+public class QueryCache {
+	private final int maximumSize;
+	private final LinkedHashMap<Key, AliasResults> results;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param maximumSize
+	 *            The maximal number of cached results.
+	 */
+	public QueryCache(int maximumSize) {
+		if (maximumSize <= 0)
+			throw new IllegalArgumentException("The size of the cache must be positive: " + maximumSize);
+		this.maximumSize = maximumSize;
+		this.results = new LinkedHashMap<Key, AliasResults>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, AliasResults> eldest) {
+				if (size() <= QueryCache.this.maximumSize)
+					return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @return A copy of the cached results of the query, <code>null</code> if
+	 *         the results are not cached.
+	 */
+	public synchronized AliasResults get(Query q, IContextRequester req) {
+		AliasResults res = results.get(new Key(q, req));
+		if (res == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return new AliasResults(res);
+	}
+
+	/**
+	 * Caches a copy of the results of the query. Results of a query which
+	 * timed out are incomplete and not cached.
+	 */
+	public synchronized void put(Query q, IContextRequester req, AliasResults res) {
+		if (res == null || res.queryTimedout())
+			return;
+		results.put(new Key(q, req), new AliasResults(res));
+	}
+
+	/**
+	 * Removes the results of the query under all context requesters.
+	 */
+	public synchronized void invalidate(Query q) {
+		for (Iterator<Key> it = results.keySet().iterator(); it.hasNext();)
+			if (it.next().query.equals(q))
+				it.remove();
+	}
+
+	/**
+	 * Removes all results, e.g. after the scene has changed. The statistics
+	 * are kept.
+	 */
+	public synchronized void invalidateAll() {
+		results.clear();
+	}
+
+	public synchronized int size() {
+		return results.size();
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return The ratio of lookups answered from the cache, <code>0</code> if
+	 *         there was no lookup yet.
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return (lookups == 0 ? 0 : (double) hits / lookups);
+	}
+
+	/**
+	 * Resets the hit, miss and eviction counts.
+	 */
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "QueryCache [size=" + results.size() + "/" + maximumSize + ", hits=" + hits + ", misses=" + misses
+				+ ", evictions=" + evictions + "]";
+	}
+
+	private static class Key {
+		private final Query query;
+		private final IContextRequester requester;
+
+		Key(Query query, IContextRequester requester) {
+			this.query = query;
+			this.requester = requester;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * query.hashCode() + (requester == null ? 0 : requester.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return query.equals(other.query)
+					&& (requester == null ? other.requester == null : requester.equals(other.requester));
+		}
+	}
+}
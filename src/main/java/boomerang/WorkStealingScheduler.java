@@ -0,0 +1,167 @@
+package boomerang;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import boomerang.jfr.FlightRecorderEvents;
+
+/**
+ * A {@link ContextScheduler} that executes the scheduled tasks (typically
+ * {@link boomerang.ifdssolver.IFDSSolver.PathEdgeProcessingTask}s) concurrently
+ * on a work-stealing {@link ForkJoinPool}. Tasks scheduled from within a task
+ * are pushed to the local queue of the executing worker and are stolen by idle
+ * workers.
+ *
+ * The forward and the backward solver share one scheduler, therefore
+ * {@link #awaitExecution()} blocks until no task of either direction is pending
+ * and {@link #isEmpty()} reports whether the pool is quiescent. A call to
+ * {@link #awaitExecution()} from within a worker thread returns immediately, the
+ * outermost caller waits for all tasks.
+ *
+ * The scheduler is enabled by returning it from
+ * {@link BoomerangOptions#getScheduler()}. A pool created by the scheduler is
+ * shut down by {@link #shutdown()}, i.e. when the {@link AliasFinder} is
+ * closed. A pool passed to the constructor may be shared by several
+ * schedulers and is left to its owner.
+ *
+ * @author spaeth
+ *
+ */
+public class WorkStealingScheduler extends ContextScheduler {
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+	private final AtomicInteger pendingTasks = new AtomicInteger();
+	private final AtomicLong executedTasks = new AtomicLong();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final Object quiescence = new Object();
+
+	/**
+	 * Creates a scheduler with one worker per available processor.
+	 */
+	public WorkStealingScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a scheduler with the given number of worker threads.
+	 *
+	 * @param parallelism
+	 *            The number of worker threads.
+	 */
+	public WorkStealingScheduler(int parallelism) {
+		this(new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true), true);
+	}
+
+	/**
+	 * Creates a scheduler executing its tasks on the given pool. The pool is
+	 * expected to be in async mode, such that locally scheduled tasks are
+	 * processed in FIFO order.
+	 *
+	 * @param pool
+	 *            The pool to execute the tasks on.
+	 */
+	public WorkStealingScheduler(ForkJoinPool pool) {
+		this(pool, false);
+	}
+
+	private WorkStealingScheduler(ForkJoinPool pool, boolean ownsPool) {
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+	}
+
+	@Override
+	public void add(final Runnable runnable) {
+		context.getMetrics().worklistSize(pendingTasks.incrementAndGet());
+		pool.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (failure.get() == null) {
+						checkBudget(executedTasks.incrementAndGet());
+						runnable.run();
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					if (pendingTasks.decrementAndGet() == 0) {
+						synchronized (quiescence) {
+							quiescence.notifyAll();
+						}
+					}
+				}
+			}
+		});
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return pendingTasks.get() == 0;
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return true;
+	}
+
+	/**
+	 * The tasks are owned by the pool and cannot be polled.
+	 *
+	 * @return Always <code>null</code>.
+	 */
+	@Override
+	public Runnable poll() {
+		return null;
+	}
+
+	/**
+	 * Waits until no task is pending. If the waiting thread is interrupted, the
+	 * pending tasks are skipped, they are still awaited such that no task
+	 * outlives the query, and a {@link BoomerangTimeoutException} is thrown.
+	 * The first failure of a task is rethrown.
+	 */
+	@Override
+	public void awaitExecution() {
+		if (isWorkerThread())
+			return;
+		boolean interrupted = false;
+		synchronized (quiescence) {
+			while (pendingTasks.get() > 0) {
+				try {
+					quiescence.wait();
+				} catch (InterruptedException e) {
+					if (!interrupted && failure.compareAndSet(null, new BoomerangTimeoutException("Interrupted")))
+						FlightRecorderEvents.queryCancelled("Interrupted", context.getPropagationCount(),
+								context.getPathEdgeCount());
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		Throwable e = failure.getAndSet(null);
+		if (e == null)
+			return;
+		if (e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		if (e instanceof Error)
+			throw (Error) e;
+		throw new RuntimeException(e);
+	}
+
+	private boolean isWorkerThread() {
+		Thread current = Thread.currentThread();
+		return current instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) current).getPool() == pool;
+	}
+
+	/**
+	 * Stops the worker threads of the pool if the scheduler created it.
+	 */
+	@Override
+	public void shutdown() {
+		if (ownsPool)
+			pool.shutdown();
+	}
+}
@@ -5,6 +5,9 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import soot.Local;
 import soot.SootField;
 import soot.Type;
@@ -17,15 +20,15 @@ import soot.jimple.NewExpr;
  * An AccessGraph is represented by a local variable and a {@link FieldGraph}
  * representing multiple field accesses.
  * 
+ * Access graphs are hash-consed: the factory methods {@link #create(Local)}
+ * etc. and all derivations return the canonical instance of a graph, such
+ * that equal canonical graphs are identical and compare by reference.
+ * 
  * @author spaeth
  *
  */
 public class AccessGraph {
 
-	public static int MAX_FIELD_COUNT;
-
-	public static AccessGraph MAX_ACCESS_GRAPH;
-
 	/**
 	 * The local variable at which the field graph is rooted.
 	 */
@@ -38,7 +41,20 @@ public class AccessGraph {
 	 */
 	private final IFieldGraph fieldGraph;
 
-	private int hashCode = 0;
+	private final int hashCode;
+
+	/**
+	 * Whether this graph is the canonical instance within its interner.
+	 */
+	private boolean interned;
+
+	/**
+	 * Canonical instances of the access graphs. As equality disregards
+	 * {@link #hasNullAllocationSite()}, graphs with null allocation sites are
+	 * kept apart, such that interning preserves the flag.
+	 */
+	private static final Interner<AccessGraph> INTERNER = Interners.newWeakInterner();
+	private static final Interner<AccessGraph> NULL_ALLOCSITE_INTERNER = Interners.newWeakInterner();
 
 	/**
 	 * The allocation site to which this access graph points-to.
@@ -55,11 +71,18 @@ public class AccessGraph {
 	 *            The local to be the base of the access graph.
 	 * @param t
 	 *            The type of the base
+	 * @deprecated Use {@link #create(Local)} to obtain the canonical instance.
 	 */
+	@Deprecated
 	public AccessGraph(Local val) {
 		this(val,  null, null, false);
 	}
 
+	/**
+	 * @deprecated Use {@link #create(Local, Unit, boolean)} to obtain the
+	 *             canonical instance.
+	 */
+	@Deprecated
 	public AccessGraph(Local val, Unit allocsite,boolean isNullAllocsite) {
 		this(val, null, allocsite, isNullAllocsite);
 	}
@@ -74,7 +97,10 @@ public class AccessGraph {
 	 *            the type of the local variable
 	 * @param field
 	 *            the first field access
+	 * @deprecated Use {@link #create(Local, WrappedSootField)} to obtain the
+	 *             canonical instance.
 	 */
+	@Deprecated
 	public AccessGraph(Local val,  WrappedSootField field) {
 		this(val, new FieldGraph(field), null,false);
 	}
@@ -89,7 +115,10 @@ public class AccessGraph {
 	 *            the type of the local variable
 	 * @param field
 	 *            An array of field accesses
+	 * @deprecated Use {@link #create(Local, WrappedSootField[])} to obtain the
+	 *             canonical instance.
 	 */
+	@Deprecated
 	public AccessGraph(Local val, WrappedSootField[] f) {
 		this(val, (f == null || f.length == 0 ? null : new FieldGraph(f)), null, false);
 	}
@@ -111,11 +140,70 @@ public class AccessGraph {
 //			System.out.println(fieldGraph);
 			this.fieldGraph = fieldGraph;
 //		}
-		if(getFieldCount() > MAX_FIELD_COUNT)
-			MAX_ACCESS_GRAPH = this;
-		MAX_FIELD_COUNT = Integer.max(MAX_FIELD_COUNT, getFieldCount());
-			
 		this.allocationSite = sourceStmt;
+		this.hashCode = computeHashCode();
+	}
+
+	/**
+	 * Returns the canonical access graph with the given base and empty field
+	 * graph.
+	 * 
+	 * @param val
+	 *            The local to be the base of the access graph.
+	 * @return The canonical access graph.
+	 */
+	public static AccessGraph create(Local val) {
+		return intern(new AccessGraph(val, null, null, false));
+	}
+
+	/**
+	 * Returns the canonical access graph with the given base, empty field
+	 * graph and allocation site.
+	 * 
+	 * @param val
+	 *            The local to be the base of the access graph.
+	 * @param allocsite
+	 *            The allocation site the graph points to.
+	 * @param isNullAllocsite
+	 *            Whether the allocation site assigns <code>null</code>.
+	 * @return The canonical access graph.
+	 */
+	public static AccessGraph create(Local val, Unit allocsite, boolean isNullAllocsite) {
+		return intern(new AccessGraph(val, null, allocsite, isNullAllocsite));
+	}
+
+	/**
+	 * Returns the canonical access graph with the given base and a field graph
+	 * consisting of exactly the given field.
+	 * 
+	 * @param val
+	 *            the local base variable
+	 * @param field
+	 *            the first field access
+	 * @return The canonical access graph.
+	 */
+	public static AccessGraph create(Local val, WrappedSootField field) {
+		return intern(new AccessGraph(val, new FieldGraph(field), null, false));
+	}
+
+	/**
+	 * Returns the canonical access graph with the given base and a field graph
+	 * consisting of the sequence of supplied fields.
+	 * 
+	 * @param val
+	 *            the local base variable
+	 * @param f
+	 *            An array of field accesses
+	 * @return The canonical access graph.
+	 */
+	public static AccessGraph create(Local val, WrappedSootField[] f) {
+		return intern(new AccessGraph(val, (f == null || f.length == 0 ? null : new FieldGraph(f)), null, false));
+	}
+
+	private static AccessGraph intern(AccessGraph graph) {
+		AccessGraph canonical = (graph.isNullAllocsite ? NULL_ALLOCSITE_INTERNER : INTERNER).intern(graph);
+		canonical.interned = true;
+		return canonical;
 	}
 
 	/**
@@ -169,7 +257,7 @@ public class AccessGraph {
 	 * @return The length of the shortest sequence of field accesses.
 	 */
 	public int getFieldCount() {
-		return (fieldGraph == null ? 0 : (getRepresentative() == null ? 0 : getRepresentative().length));
+		return (fieldGraph == null ? 0 : fieldGraph.getFieldCount());
 	}
 
 	/**
@@ -213,7 +301,7 @@ public class AccessGraph {
 	 * @return The access graph
 	 */
 	public AccessGraph deriveWithNewLocal(Local local) {
-		return new AccessGraph(local, fieldGraph, allocationSite,isNullAllocsite);
+		return intern(new AccessGraph(local, fieldGraph, allocationSite,isNullAllocsite));
 	}
 
 	/**
@@ -229,7 +317,7 @@ public class AccessGraph {
 		if(newapg.shouldOverApproximate()){
 			newapg = newapg.overapproximation();
 		}
-		return new AccessGraph(value,  newapg, allocationSite,isNullAllocsite);
+		return intern(new AccessGraph(value,  newapg, allocationSite,isNullAllocsite));
 	}
 
 	/**
@@ -246,7 +334,7 @@ public class AccessGraph {
 		if(newapg.shouldOverApproximate()){
 			newapg = newapg.overapproximation();
 		}
-		return new AccessGraph(value,  newapg, allocationSite,isNullAllocsite);
+		return intern(new AccessGraph(value,  newapg, allocationSite,isNullAllocsite));
 	}
 	
 	/**
@@ -262,7 +350,7 @@ public class AccessGraph {
 		if(newapg.shouldOverApproximate()){
 			newapg = newapg.overapproximation();
 		}
-		return new AccessGraph(value, newapg, allocationSite,isNullAllocsite);
+		return intern(new AccessGraph(value, newapg, allocationSite,isNullAllocsite));
 	}
 
 	/**
@@ -310,10 +398,10 @@ public class AccessGraph {
 
 		Set<IFieldGraph> newapg = fieldGraph.popFirstField();
 		if (newapg.isEmpty())
-			return Collections.singleton(new AccessGraph(value, null, allocationSite,isNullAllocsite));
+			return Collections.singleton(intern(new AccessGraph(value, null, allocationSite,isNullAllocsite)));
 		Set<AccessGraph> out = new HashSet<>();
 		for (IFieldGraph a : newapg) {
-				out.add(new AccessGraph(value, a, allocationSite,isNullAllocsite));
+				out.add(intern(new AccessGraph(value, a, allocationSite,isNullAllocsite)));
 		}
 		return out;
 	}
@@ -333,9 +421,9 @@ public class AccessGraph {
 
 		Set<AccessGraph> out = new HashSet<>();
 		if (newapg.isEmpty())
-			return Collections.singleton(new AccessGraph(value, null, allocationSite,isNullAllocsite));
+			return Collections.singleton(intern(new AccessGraph(value, null, allocationSite,isNullAllocsite)));
 		for (IFieldGraph a : newapg) {
-			out.add(new AccessGraph(value,  a, allocationSite,isNullAllocsite));
+			out.add(intern(new AccessGraph(value,  a, allocationSite,isNullAllocsite)));
 		}
 		return out;
 	}
@@ -359,7 +447,7 @@ public class AccessGraph {
 	 * @return The derived access graph
 	 */
 	public AccessGraph deriveWithAllocationSite(Unit stmt, boolean isNullAllocsite) {
-		return new AccessGraph(value, fieldGraph, stmt, isNullAllocsite);
+		return intern(new AccessGraph(value, fieldGraph, stmt, isNullAllocsite));
 	}
 
 	/**
@@ -380,7 +468,7 @@ public class AccessGraph {
 	 * @return The derived access graph
 	 */
 	public AccessGraph deriveWithoutAllocationSite() {
-		return new AccessGraph(value, fieldGraph, null, false);
+		return intern(new AccessGraph(value, fieldGraph, null, false));
 	}
 
 	/**
@@ -389,7 +477,7 @@ public class AccessGraph {
 	 * @return The derived access graph
 	 */
 	public AccessGraph dropTail() {
-		return new AccessGraph(value, null, allocationSite,isNullAllocsite);
+		return intern(new AccessGraph(value, null, allocationSite,isNullAllocsite));
 	}
 
 	/**
@@ -400,7 +488,7 @@ public class AccessGraph {
 	 * @return The derived access graph.
 	 */
 	public AccessGraph makeStatic() {
-		return new AccessGraph(null, fieldGraph, allocationSite,isNullAllocsite);
+		return intern(new AccessGraph(null, fieldGraph, allocationSite,isNullAllocsite));
 	}
 
 	/**
@@ -436,17 +524,16 @@ public class AccessGraph {
 
 	@Override
 	public int hashCode() {
-//		if (hashCode != 0)
-//			return hashCode;
+		return hashCode;
+	}
 
+	private int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((fieldGraph == null) ? 0 : fieldGraph.hashCode());
 		result = prime * result + ((value == null) ? 0 : value.hashCode());
 		result = prime * result + ((allocationSite == null) ? 0 : allocationSite.hashCode());
-		this.hashCode = result;
-
-		return this.hashCode;
+		return result;
 	}
 
 	@Override
@@ -457,6 +544,11 @@ public class AccessGraph {
 			return false;
 
 		AccessGraph other = (AccessGraph) obj;
+		// Distinct canonical instances of one interner are never equal.
+		if (interned && other.interned && isNullAllocsite == other.isNullAllocsite)
+			return false;
+		if (hashCode != other.hashCode)
+			return false;
 		if (value == null) {
 			if (other.value != null)
 				return false;
@@ -481,7 +573,7 @@ public class AccessGraph {
 	}
 
 	public AccessGraph overApproximate() {
-		return new AccessGraph(value,fieldGraph == null ? null : fieldGraph.overapproximation(), allocationSite,isNullAllocsite);
+		return intern(new AccessGraph(value,fieldGraph == null ? null : fieldGraph.overapproximation(), allocationSite,isNullAllocsite));
 	}
 
 
@@ -1,91 +1,145 @@
 package boomerang.accessgraph;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Set;
 
-import soot.SootField;
-
 /**
  * A field graph represents only the of the access graph field accesses. It is a
  * directed graph. Two nodes of the graph are special, the entry and exit node.
  * One can also see the field graph as a Finite State Machine. The inital state
- * is the entry node and the accepting state is the target node. As the Grph
- * Library represents nodes within the graph as integers, we keep a mapping from
- * fields to integer.
- * 
+ * is the entry node and the accepting state is the target node.
+ *
+ * The sequence of fields is stored as an immutable list of cells sharing their
+ * tails, each cell caches the length, hash code and last field of the sequence
+ * it starts. Prepending a field and removing the first field hence do not copy
+ * the fields. Removing the first field runs in constant time. Prepending a
+ * field also determines whether the sequence repeats a field: each cell keeps
+ * a 64 bit mask with one bit per field of its sequence, selected by the hash
+ * code of the field, and the sequence is only scanned if the bit of the
+ * prepended field is already set. Prepending a field not in the sequence thus
+ * runs in constant time unless its bit collides with another field.
+ *
  * @author spaeth
  *
  */
 public class FieldGraph implements IFieldGraph {
 
-	final LinkedList<WrappedSootField> fields;
-	static FieldGraph EMPTY_GRAPH = new FieldGraph() {
-		public String toString() {
-			return "EMPTY_GRAPH";
-		};
-	};
+	/**
+	 * The first field, <code>null</code> only for {@link #EMPTY_GRAPH}.
+	 */
+	private final WrappedSootField head;
+	/**
+	 * The remaining fields, <code>null</code> if there are none.
+	 */
+	private final FieldGraph tail;
+	private final WrappedSootField last;
+	private final int length;
+	private final int hashCode;
+	/**
+	 * The union of {@link #maskOf(WrappedSootField)} over the fields of the
+	 * sequence.
+	 */
+	private final long fieldMask;
+	private final boolean hasLoops;
+
+	static FieldGraph EMPTY_GRAPH = new FieldGraph();
 
 	FieldGraph(WrappedSootField[] fields) {
+		this(fields[0], fromArray(fields, 1));
 		assert fields != null && fields.length > 0;
-		this.fields = new LinkedList<>(Arrays.asList(fields));
 	}
 
 	FieldGraph(WrappedSootField f) {
+		this(f, null);
 		assert f != null;
-		this.fields = new LinkedList<>();
-		this.fields.add(f);
 	}
 
-	private FieldGraph(LinkedList<WrappedSootField> fields) {
-		this.fields = fields;
+	private FieldGraph(WrappedSootField head, FieldGraph tail) {
+		this.head = head;
+		this.tail = tail;
+		this.last = (tail == null ? head : tail.last);
+		this.length = (tail == null ? 1 : tail.length + 1);
+		this.hashCode = 31 * (tail == null ? 1 : tail.hashCode) + head.hashCode();
+		long mask = maskOf(head);
+		this.fieldMask = (tail == null ? mask : tail.fieldMask | mask);
+		this.hasLoops = tail != null
+				&& (tail.hasLoops || ((tail.fieldMask & mask) != 0 && tail.containsField(head)));
 	}
 
 	private FieldGraph() {
-		this.fields = new LinkedList<>();
+		this.head = null;
+		this.tail = null;
+		this.last = null;
+		this.length = 0;
+		this.hashCode = 1;
+		this.fieldMask = 0;
+		this.hasLoops = false;
+	}
+
+	/**
+	 * @return A mask with the bit of the field set. Fields are compared by
+	 *         their {@link soot.SootField}, hence the bit is derived from its
+	 *         hash code.
+	 */
+	private static long maskOf(WrappedSootField f) {
+		int h = f.getField().hashCode();
+		return 1L << (h ^ (h >>> 6) ^ (h >>> 12));
+	}
+
+	private static FieldGraph fromArray(WrappedSootField[] fields, int from) {
+		FieldGraph graph = null;
+		for (int i = fields.length - 1; i >= from; i--)
+			graph = new FieldGraph(fields[i], graph);
+		return graph;
+	}
+
+	private boolean containsField(WrappedSootField f) {
+		for (FieldGraph g = this; g != null; g = g.tail) {
+			if (g.head.getField().equals(f.getField()))
+				return true;
+		}
+		return false;
 	}
 
 	/**
-	 * 
+	 *
 	 * @return
 	 */
 	public Set<IFieldGraph> popFirstField() {
-		if (fields.isEmpty())
-			return new HashSet<>();
-		Set<IFieldGraph> out = new HashSet<>();
-		LinkedList<WrappedSootField> newFields = new LinkedList<>(fields);
-		newFields.removeFirst();
-		if(newFields.isEmpty())
-			out.add(FieldGraph.EMPTY_GRAPH);
-		else
-			out.add(new FieldGraph(newFields));
-		return out;
+		if (length == 0)
+			return Collections.emptySet();
+		return Collections.<IFieldGraph> singleton(tail == null ? FieldGraph.EMPTY_GRAPH : tail);
 	}
 
 	public WrappedSootField[] getFields() {
-		return fields.toArray(new WrappedSootField[] {});
+		WrappedSootField[] fields = new WrappedSootField[length];
+		int i = 0;
+		for (FieldGraph g = this; g != null && g.length > 0; g = g.tail)
+			fields[i++] = g.head;
+		return fields;
+	}
+
+	@Override
+	public int getFieldCount() {
+		return length;
 	}
 
 	public IFieldGraph prependField(WrappedSootField f) {
-		LinkedList<WrappedSootField> newFields = new LinkedList<>(fields);
-		newFields.addFirst(f);
-		return new FieldGraph(newFields);
+		return new FieldGraph(f, length == 0 ? null : this);
 	}
 
 	public Set<IFieldGraph> popLastField() {
-		Set<IFieldGraph> out = new HashSet<>();
-		if (fields.isEmpty())
-			return out;
-		LinkedList<WrappedSootField> newFields = new LinkedList<>(fields);
-		newFields.removeLast();
-		if(newFields.isEmpty())
-			out.add(FieldGraph.EMPTY_GRAPH);
-		else
-			out.add(new FieldGraph(newFields));
-		return out;
+		if (length == 0)
+			return Collections.emptySet();
+		return Collections.<IFieldGraph> singleton(length == 1 ? FieldGraph.EMPTY_GRAPH : withoutLast());
+	}
+
+	private FieldGraph withoutLast() {
+		if (tail == null)
+			return null;
+		return new FieldGraph(head, tail.withoutLast());
 	}
 
 	public IFieldGraph append(IFieldGraph o) {
@@ -94,42 +148,49 @@ public class FieldGraph implements IFieldGraph {
 			return setBasedFieldGraph.append(this);
 		} else if (o instanceof FieldGraph) {
 			FieldGraph other = (FieldGraph) o;
-			LinkedList<WrappedSootField> fields2 = other.fields;
-			LinkedList<WrappedSootField> newFields = new LinkedList<>(fields);
-			newFields.addAll(fields2);
-			return new FieldGraph(newFields);
+			if (other.length == 0)
+				return this;
+			if (length == 0)
+				return other;
+			return prependTo(other);
 		}
 		throw new RuntimeException("Not yet implemented!");
 	}
 
+	/**
+	 * Copies the cells of this graph in front of the given graph, the given
+	 * graph is shared.
+	 */
+	private FieldGraph prependTo(FieldGraph other) {
+		return new FieldGraph(head, tail == null ? other : tail.prependTo(other));
+	}
+
 	public IFieldGraph appendFields(WrappedSootField[] toAppend) {
 		return append(new FieldGraph(toAppend));
 	}
 
 	public Set<WrappedSootField> getEntryNode() {
-		Set<WrappedSootField> out = new HashSet<>();
-		out.add(fields.get(0));
-		return out;
+		return Collections.singleton(head);
 	}
 
 	boolean hasLoops() {
-		Set<SootField> sootFields = new HashSet<>();
-		for (WrappedSootField f : this.fields) {
-			if (sootFields.contains(f.getField()))
-				return true;
-			sootFields.add(f.getField());
-		}
-		return false;
+		return hasLoops;
 	}
 
 	public Collection<WrappedSootField> getExitNode() {
-		return Collections.singleton(fields.getLast());
+		return Collections.singleton(last);
 	}
 
 	public String toString() {
-		String str = "";
-		str += fields.toString();
-		return str;
+		if (length == 0)
+			return "EMPTY_GRAPH";
+		StringBuilder str = new StringBuilder("[");
+		for (FieldGraph g = this; g != null; g = g.tail) {
+			str.append(g.head);
+			if (g.tail != null)
+				str.append(", ");
+		}
+		return str.append("]").toString();
 	}
 
 	@Override
@@ -139,17 +200,15 @@ public class FieldGraph implements IFieldGraph {
 
 	@Override
 	public IFieldGraph overapproximation() {
-		return new SetBasedFieldGraph(new HashSet<>(fields));
+		Set<WrappedSootField> fields = new HashSet<>();
+		for (FieldGraph g = this; g != null && g.length > 0; g = g.tail)
+			fields.add(g.head);
+		return new SetBasedFieldGraph(fields);
 	}
 
-	
-
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((fields == null) ? 0 : fields.hashCode());
-		return result;
+		return hashCode;
 	}
 
 	@Override
@@ -161,13 +220,15 @@ public class FieldGraph implements IFieldGraph {
 		if (getClass() != obj.getClass())
 			return false;
 		FieldGraph other = (FieldGraph) obj;
-		if (fields == null) {
-			if (other.fields != null)
+		FieldGraph g = this;
+		while (g != other) {
+			if (g == null || other == null || g.length != other.length || g.hashCode != other.hashCode
+					|| !g.head.equals(other.head))
 				return false;
-		} else if (!fields.equals(other.fields))
-			return false;
+			g = g.tail;
+			other = other.tail;
+		}
 		return true;
 	}
 
-
 }
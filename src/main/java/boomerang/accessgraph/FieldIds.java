@@ -0,0 +1,66 @@
+package boomerang.accessgraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interning table assigning dense integer ids to {@link WrappedSootField}s. The
+ * ids index the bits of a {@link SetBasedFieldGraph}, each graph keeps the
+ * table it was numbered with.
+ * 
+ * New graphs are numbered with the current table. {@link #reset()} replaces
+ * the current table, e.g. when the Soot scene is reset. The old table then is
+ * only reachable from the graphs numbered with it and is garbage collected
+ * together with them, such that the fields and units of an old scene are not
+ * retained.
+ * 
+ * @author spaeth
+ *
+ */
+public final class FieldIds {
+	private static volatile FieldIds current = new FieldIds();
+
+	private final ConcurrentMap<WrappedSootField, Integer> fieldToId = new ConcurrentHashMap<>();
+	private final List<WrappedSootField> idToField = new ArrayList<>();
+
+	private FieldIds() {
+	}
+
+	static FieldIds current() {
+		return current;
+	}
+
+	/**
+	 * Replaces the current table by an empty one. Must be called whenever the
+	 * scene is reset (see {@link soot.G#reset()}).
+	 */
+	public static void reset() {
+		current = new FieldIds();
+	}
+
+	/**
+	 * Returns the id of the field, a new id is assigned on the first request.
+	 */
+	int idOf(WrappedSootField field) {
+		Integer id = fieldToId.get(field);
+		if (id != null)
+			return id;
+		synchronized (idToField) {
+			id = fieldToId.get(field);
+			if (id == null) {
+				id = idToField.size();
+				idToField.add(field);
+				fieldToId.put(field, id);
+			}
+			return id;
+		}
+	}
+
+	WrappedSootField fieldOf(int id) {
+		synchronized (idToField) {
+			return idToField.get(id);
+		}
+	}
+}
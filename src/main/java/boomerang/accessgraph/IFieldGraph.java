@@ -8,6 +8,10 @@ public interface IFieldGraph {
 	Set<IFieldGraph> popLastField();
 	Collection<WrappedSootField> getEntryNode();
 	WrappedSootField[] getFields();
+	/**
+	 * @return The length of {@link #getFields()}, without copying the fields.
+	 */
+	int getFieldCount();
 	IFieldGraph appendFields(WrappedSootField[] toAppend);
 	IFieldGraph append(IFieldGraph graph);
 	IFieldGraph prependField(WrappedSootField f);
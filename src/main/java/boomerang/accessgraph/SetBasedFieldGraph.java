@@ -1,42 +1,58 @@
 package boomerang.accessgraph;
 
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.Map.Entry;
 
 import com.google.common.base.Joiner;
 
 import soot.Scene;
-import soot.SootField;
 import soot.Type;
 
+/**
+ * Over-approximation of a field graph by the set of fields it contains. The set
+ * is stored as a bitset over the ids of a {@link FieldIds} table, such that
+ * union, equality and hashing operate on words.
+ * 
+ * @author spaeth
+ *
+ */
 public class SetBasedFieldGraph implements IFieldGraph {
 
-	private Set<WrappedSootField> fields;
-	public static Set<WrappedSootField> allFields;
+	private final FieldIds ids;
+	private final BitSet fields;
+	private final int hashCode;
+	private volatile Set<WrappedSootField> fieldSet;
 
 	public SetBasedFieldGraph(Set<WrappedSootField> fields) {
 		this(fields, true);
 	}
 
 	public SetBasedFieldGraph(Set<WrappedSootField> fields, boolean type) {
-		if (!type) {
-			this.fields = new HashSet<>();
-			for (WrappedSootField f : fields) {
-				this.fields.add(new WrappedSootField(f.getField(), null));
-			}
-		} else {
-			if (allFields == null)
-				allFields = new HashSet<>();
-			allFields.addAll(fields);
-				this.fields =new HashSet<>(fields);// minimize(fields);
-		}
+		this(FieldIds.current(), fields, type);
 		// assert fields.size() > 1;
 	}
 
+	private SetBasedFieldGraph(FieldIds ids, Set<WrappedSootField> fields, boolean type) {
+		this(ids, toBitSet(ids, fields, type));
+	}
+
+	private SetBasedFieldGraph(FieldIds ids, BitSet fields) {
+		this.ids = ids;
+		this.fields = fields;
+		this.hashCode = fields.hashCode();
+	}
+
+	private static BitSet toBitSet(FieldIds ids, Set<WrappedSootField> fields, boolean type) {
+		BitSet bits = new BitSet();
+		for (WrappedSootField f : fields) {
+			bits.set(ids.idOf(type ? f : new WrappedSootField(f.getField(), null)));
+		}
+		return bits;
+	}
 
 	private Type superType(Type a, Type b) {
 		if (a.equals(b))
@@ -64,7 +80,22 @@ public class SetBasedFieldGraph implements IFieldGraph {
 
 	@Override
 	public Collection<WrappedSootField> getEntryNode() {
-		return fields;
+		return getFieldSet();
+	}
+
+	/**
+	 * The fields of the bitset, materialized on first use.
+	 */
+	private Set<WrappedSootField> getFieldSet() {
+		Set<WrappedSootField> set = fieldSet;
+		if (set == null) {
+			Set<WrappedSootField> out = new LinkedHashSet<>();
+			for (int i = fields.nextSetBit(0); i >= 0; i = fields.nextSetBit(i + 1))
+				out.add(ids.fieldOf(i));
+			set = Collections.unmodifiableSet(out);
+			fieldSet = set;
+		}
+		return set;
 	}
 
 	@Override
@@ -72,12 +103,23 @@ public class SetBasedFieldGraph implements IFieldGraph {
 		return new WrappedSootField[0];
 	}
 
+	@Override
+	public int getFieldCount() {
+		return 0;
+	}
+
 	@Override
 	public IFieldGraph appendFields(WrappedSootField[] toAppend) {
-		Set<WrappedSootField> overapprox = new HashSet<>(fields);
-		for (WrappedSootField f : toAppend)
-			overapprox.add(f);
-		return new SetBasedFieldGraph(overapprox);
+		BitSet overapprox = null;
+		for (WrappedSootField f : toAppend) {
+			int id = ids.idOf(f);
+			if (fields.get(id))
+				continue;
+			if (overapprox == null)
+				overapprox = (BitSet) fields.clone();
+			overapprox.set(id);
+		}
+		return overapprox == null ? this : new SetBasedFieldGraph(ids, overapprox);
 	}
 
 	@Override
@@ -87,14 +129,12 @@ public class SetBasedFieldGraph implements IFieldGraph {
 
 	@Override
 	public IFieldGraph prependField(WrappedSootField f) {
-		Set<WrappedSootField> overapprox = new HashSet<>(fields);
-		overapprox.add(f);
-		return new SetBasedFieldGraph(overapprox);
+		return appendFields(new WrappedSootField[] { f });
 	}
 
 	@Override
 	public Collection<WrappedSootField> getExitNode() {
-		return fields;
+		return getFieldSet();
 	}
 
 	@Override
@@ -110,14 +150,11 @@ public class SetBasedFieldGraph implements IFieldGraph {
 	}
 
 	public String toString() {
-		return " {" + Joiner.on(",").join(fields) + "}";
+		return " {" + Joiner.on(",").join(getFieldSet()) + "}";
 	}
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((fields == null) ? 0 : fields.hashCode());
-		return result;
+		return hashCode;
 	}
 	@Override
 	public boolean equals(Object obj) {
@@ -128,12 +165,7 @@ public class SetBasedFieldGraph implements IFieldGraph {
 		if (getClass() != obj.getClass())
 			return false;
 		SetBasedFieldGraph other = (SetBasedFieldGraph) obj;
-		if (fields == null) {
-			if (other.fields != null)
-				return false;
-		} else if (fields.size() != other.fields.size() || !fields.equals(other.fields))
-			return false;
-		return true;
+		return hashCode == other.hashCode && ids == other.ids && fields.equals(other.fields);
 	}
 
 }
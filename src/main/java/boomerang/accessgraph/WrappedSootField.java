@@ -12,11 +12,15 @@ import soot.Unit;
 public class WrappedSootField {
   private SootField field;
   private Unit stmt;
-  public static boolean TRACK_STMT = false;
 
+  /**
+   * @param f The wrapped field.
+   * @param s The statement at which the field is accessed, <code>null</code> if statements are not
+   *        tracked, see {@link boomerang.BoomerangContext#wrapField(SootField, Unit)}.
+   */
   public WrappedSootField(SootField f, Unit s) {
     this.field = f;
-    this.stmt = (TRACK_STMT ? s : null);
+    this.stmt = s;
   }
 
   public SootField getField() {
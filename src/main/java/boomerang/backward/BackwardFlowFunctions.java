@@ -3,7 +3,9 @@ package boomerang.backward;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.base.Optional;
 
@@ -12,6 +14,8 @@ import boomerang.BoomerangContext;
 import boomerang.accessgraph.AccessGraph;
 import boomerang.accessgraph.WrappedSootField;
 import boomerang.forward.AbstractFlowFunctions;
+import boomerang.forward.ClassifiedStmt;
+import boomerang.forward.ClassifiedStmt.Operand;
 import boomerang.ifdssolver.FlowFunctions;
 import boomerang.ifdssolver.IPathEdge;
 import boomerang.pointsofindirection.Alloc;
@@ -22,181 +26,165 @@ import soot.SootField;
 import soot.SootMethod;
 import soot.Unit;
 import soot.Value;
-import soot.jimple.ArrayRef;
 import soot.jimple.AssignStmt;
-import soot.jimple.CastExpr;
-import soot.jimple.CaughtExceptionRef;
-import soot.jimple.IdentityStmt;
 import soot.jimple.InstanceFieldRef;
 import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InvokeExpr;
-import soot.jimple.NullConstant;
 import soot.jimple.ReturnStmt;
-import soot.jimple.StaticFieldRef;
 import soot.jimple.Stmt;
 import soot.jimple.ThrowStmt;
 
 public class BackwardFlowFunctions extends AbstractFlowFunctions
 		implements FlowFunctions<Unit, AccessGraph, SootMethod> {
 
+	private final Map<Unit, NormalFlowFunction> normalFlowFunctions = new ConcurrentHashMap<>();
+
 	public BackwardFlowFunctions(BoomerangContext context) {
 		this.context = context;
 	}
 
 	@Override
 	public FlowFunction<AccessGraph> getNormalFlowFunction(final IPathEdge<Unit, AccessGraph> edge, final Unit succ) {
-		final Unit curr = edge.getTarget();
-		final SootMethod method = context.icfg.getMethodOf(curr);
-		context.addAsVisitedBackwardMethod(method);
-		final Local thisLocal = method.isStatic() ? null : method.getActiveBody().getThisLocal();
-		return new FlowFunction<AccessGraph>() {
-			@Override
-			public Set<AccessGraph> computeTargets(final AccessGraph source) {
+		Unit curr = edge.getTarget();
+		NormalFlowFunction function = normalFlowFunctions.get(curr);
+		if (function == null) {
+			function = new NormalFlowFunction(new ClassifiedStmt(curr, context.icfg.getMethodOf(curr)));
+			normalFlowFunctions.put(curr, function);
+		}
+		context.addAsVisitedBackwardMethod(function.stmt.method());
+		return function;
+	}
 
-				if (curr instanceof IdentityStmt) {
-					IdentityStmt identityStmt = (IdentityStmt) curr;
-					if (identityStmt.getRightOp() instanceof CaughtExceptionRef)
-						return Collections.emptySet();
-				}
-				if (!(curr instanceof AssignStmt)) {
-					return Collections.singleton(source);
-				}
-				if (curr instanceof ThrowStmt)
+	/**
+	 * The normal flow function of a statement, one instance is shared by all
+	 * path edges reaching the statement.
+	 */
+	private class NormalFlowFunction implements FlowFunction<AccessGraph> {
+		private final ClassifiedStmt stmt;
+
+		NormalFlowFunction(ClassifiedStmt stmt) {
+			this.stmt = stmt;
+		}
+
+		@Override
+		public Set<AccessGraph> computeTargets(final AccessGraph source) {
+			switch (stmt.kind()) {
+			case CAUGHT_EXCEPTION:
+				return Collections.emptySet();
+			case OTHER:
+				return Collections.singleton(source);
+			default:
+				break;
+			}
+			Unit curr = stmt.unit();
+			AssignStmt as = stmt.assign();
+			switch (stmt.left()) {
+			case LOCAL:
+				if (!source.baseMatches(stmt.leftLocal()))
+					break;
+				Optional<AllocationSiteHandler> allocates = context.allocationSiteHandlers().assignStatement(as,
+						as.getRightOp(), source);
+				if (allocates.isPresent()) {
+					allocates.get().alloc().execute(context);
 					return Collections.emptySet();
-				AssignStmt as = (AssignStmt) curr;
-				Value leftOp = as.getLeftOp();
-				Value rightOp = as.getRightOp();
-				if (leftOp instanceof Local && source.baseMatches(leftOp)) {
-					Optional<AllocationSiteHandler> allocates = context.allocationSiteHandlers().assignStatement(as,
-							rightOp, source);
-					if (allocates.isPresent()) {
-						allocates.get().alloc().execute(context);
-						return Collections.emptySet();
-					} else if (rightOp instanceof CastExpr) {
-						CastExpr castExpr = (CastExpr) rightOp;
-						Value op = castExpr.getOp();
-						if (op instanceof Local) {
-							return Collections
-									.singleton(source.deriveWithNewLocal((Local) op));
-						}
-					} else if (rightOp instanceof Local) {
-						return Collections
-								.singleton(source.deriveWithNewLocal((Local) rightOp));
-					} else if (rightOp instanceof InstanceFieldRef) {
-						// d = e.f, source = d.c ;
-						final InstanceFieldRef fr = (InstanceFieldRef) rightOp;
-
-						if (fr.getBase() instanceof Local) {
-							Local base = (Local) fr.getBase();
-
-							Set<AccessGraph> out = new HashSet<>();
-							WrappedSootField newFirstField = new WrappedSootField(fr.getField(),
-									curr);
-							AccessGraph ap = source.deriveWithNewLocal(base);
-							AccessGraph prependField = ap.prependField(newFirstField);
-							out.add(prependField);
-							return out;
-						}
-					} else if (rightOp instanceof ArrayRef) {
-						ArrayRef arrayRef = (ArrayRef) rightOp;
-						Local base = (Local) arrayRef.getBase();
-
-						Set<AccessGraph> out = new HashSet<>();
-						AccessGraph prependField = source.prependField(
-								new WrappedSootField(AliasFinder.ARRAY_FIELD,  curr));
-						AccessGraph ap = prependField.deriveWithNewLocal(base);
-						out.add(ap);
-						return out;
-					} else if (rightOp instanceof StaticFieldRef && context.trackStaticFields()) {
-						StaticFieldRef fr = (StaticFieldRef) rightOp;
-						AccessGraph ap = source
-								.prependField(new WrappedSootField(fr.getField(), curr))
-								.makeStatic();
-
-						if (ap.hasSetBasedFieldGraph()) {
-							ap = source.dropTail()
-									.prependField(new WrappedSootField(fr.getField(), curr))
-									.makeStatic();
-						}
+				}
+				switch (stmt.right()) {
+				case CAST:
+					if (stmt.castOp() != null)
+						return Collections.singleton(source.deriveWithNewLocal(stmt.castOp()));
+					break;
+				case LOCAL:
+					return Collections.singleton(source.deriveWithNewLocal(stmt.rightLocal()));
+				case INSTANCE_FIELD:
+					// d = e.f, source = d.c ;
+					if (stmt.rightBase() instanceof Local) {
+						WrappedSootField newFirstField = context.wrapField(stmt.rightField(), curr);
+						AccessGraph ap = source.deriveWithNewLocal((Local) stmt.rightBase());
+						return Collections.singleton(ap.prependField(newFirstField));
+					}
+					break;
+				case ARRAY:
+					AccessGraph prependField = source.prependField(context.wrapField(AliasFinder.ARRAY_FIELD, curr));
+					return Collections.singleton(prependField.deriveWithNewLocal((Local) stmt.rightBase()));
+				case STATIC_FIELD:
+					if (context.trackStaticFields()) {
+						SootField field = stmt.rightField();
+						AccessGraph ap = source.prependField(context.wrapField(field, curr)).makeStatic();
+						if (ap.hasSetBasedFieldGraph())
+							ap = source.dropTail().prependField(context.wrapField(field, curr)).makeStatic();
 						return Collections.singleton(ap);
 					}
-				} else if (leftOp instanceof ArrayRef) {
-					ArrayRef leftArrayRef = (ArrayRef) leftOp;
-					Local base = (Local) leftArrayRef.getBase();
-					if (source.baseAndFirstFieldMatches(base, AliasFinder.ARRAY_FIELD)) {
-						Optional<AllocationSiteHandler> handler = context.allocationSiteHandlers()
-								.arrayStoreStatement(as, rightOp, source);
-						if (handler.isPresent()) {
-							handler.get().alloc().execute(context);
-							return Collections.emptySet();
-						}
-						Set<AccessGraph> out = new HashSet<>();
-						out.add(source);
-						if (rightOp instanceof Local)
-							out.add(new AccessGraph((Local) rightOp));
-						return out;
+					break;
+				default:
+					break;
+				}
+				break;
+			case ARRAY:
+				if (source.baseAndFirstFieldMatches((Local) stmt.leftBase(), AliasFinder.ARRAY_FIELD)) {
+					Optional<AllocationSiteHandler> handler = context.allocationSiteHandlers()
+							.arrayStoreStatement(as, as.getRightOp(), source);
+					if (handler.isPresent()) {
+						handler.get().alloc().execute(context);
+						return Collections.emptySet();
 					}
-				} else if (leftOp instanceof InstanceFieldRef) {
-					InstanceFieldRef fr = (InstanceFieldRef) leftOp;
-					Value base = fr.getBase();
-					SootField field = fr.getField();
-					if (source.baseMatches(base) && source.firstFirstFieldMayMatch(field)) {
-						Optional<AllocationSiteHandler> fieldWriteStatements = context.allocationSiteHandlers()
-								.fieldStoreStatement(as, fr, rightOp, source);
-						if (fieldWriteStatements.isPresent()) {
-							fieldWriteStatements.get().alloc().execute(context);
-						}
-						if (rightOp instanceof NullConstant) {
-							if (!source.firstFieldMustMatch(field))
-								return Collections.singleton(source);
-							return Collections.emptySet();
-						}
-
-						if (rightOp instanceof Local) {
-							Set<AccessGraph> out = new HashSet<>();
-							for (WrappedSootField wrappedField : source.getFirstField()) {
-								out.addAll(source.deriveWithNewLocal((Local) rightOp)
-										.popFirstField());
-							}
-							if (!source.firstFieldMustMatch(field))
-								out.add(source);
-
-							return out;
-						}
+					if (stmt.right() != Operand.LOCAL)
+						return Collections.singleton(source);
+					Set<AccessGraph> out = new HashSet<>();
+					out.add(source);
+					out.add(AccessGraph.create(stmt.rightLocal()));
+					return out;
+				}
+				break;
+			case INSTANCE_FIELD:
+				SootField field = stmt.leftField();
+				if (source.baseMatches(stmt.leftBase()) && source.firstFirstFieldMayMatch(field)) {
+					Optional<AllocationSiteHandler> fieldWriteStatements = context.allocationSiteHandlers()
+							.fieldStoreStatement(as, (InstanceFieldRef) as.getLeftOp(), as.getRightOp(), source);
+					if (fieldWriteStatements.isPresent()) {
+						fieldWriteStatements.get().alloc().execute(context);
 					}
-					// Strong updates of fields
-					// if(source.firstFieldMustMatch(field) && base instanceof
-					// Local){
-					// AliasFinder dart = new AliasFinder(context);
-					// AliasResults res = dart.findAliasAtStmt(new
-					// AccessGraph((Local)base, base.getType()), curr);
-					// System.out.println("Strong update " + source + " @ "+
-					// as);
-					// if(res.keySet().size() == 1 &&
-					// res.values().contains(source.dropTail()) &&
-					// source.getFieldCount() == 1)
-					// return Collections.emptySet();
-					// }
-				} else if (leftOp instanceof StaticFieldRef && context.trackStaticFields()) {
-					StaticFieldRef sfr = (StaticFieldRef) leftOp;
-					if (source.isStatic() && source.firstFieldMustMatch(sfr.getField())) {
-						if (rightOp instanceof Local) {
-							Set<AccessGraph> newAp = source.popFirstField();
-							Set<AccessGraph> out = new HashSet<>();
-							for (AccessGraph a : newAp) {
-								for (WrappedSootField wrappedField : source.getFirstField())
-									out.add(a.deriveWithNewLocal((Local) rightOp));
-							}
-							return out;
-						}
+					if (stmt.right() == Operand.NULL_CONSTANT) {
+						if (!source.firstFieldMustMatch(field))
+							return Collections.singleton(source);
+						return Collections.emptySet();
 					}
 
+					if (stmt.right() == Operand.LOCAL) {
+						Set<AccessGraph> out = new HashSet<>(
+								source.deriveWithNewLocal(stmt.rightLocal()).popFirstField());
+						if (!source.firstFieldMustMatch(field))
+							out.add(source);
+						return out;
+					}
 				}
-
-				return Collections.singleton(source);
+				// Strong updates of fields
+				// if(source.firstFieldMustMatch(field) && base instanceof
+				// Local){
+				// AliasFinder dart = new AliasFinder(context);
+				// AliasResults res = dart.findAliasAtStmt(new
+				// AccessGraph((Local)base, base.getType()), curr);
+				// System.out.println("Strong update " + source + " @ "+
+				// as);
+				// if(res.keySet().size() == 1 &&
+				// res.values().contains(source.dropTail()) &&
+				// source.getFieldCount() == 1)
+				// return Collections.emptySet();
+				// }
+				break;
+			case STATIC_FIELD:
+				if (context.trackStaticFields() && source.isStatic() && source.firstFieldMustMatch(stmt.leftField())
+						&& stmt.right() == Operand.LOCAL) {
+					Set<AccessGraph> out = new HashSet<>();
+					for (AccessGraph a : source.popFirstField())
+						out.add(a.deriveWithNewLocal(stmt.rightLocal()));
+					return out;
+				}
+				break;
+			default:
+				break;
 			}
-
-		};
+			return Collections.singleton(source);
+		}
 	}
 
 	@Override
@@ -223,7 +211,7 @@ public class BackwardFlowFunctions extends AbstractFlowFunctions
 						return Collections.emptySet();
 					}
 				}
-				if (AliasFinder.IGNORED_METHODS.contains(callee)) {
+				if (context.isIgnoredMethod(callee)) {
 					return Collections.emptySet();
 				}
 				HashSet<AccessGraph> out = new HashSet<AccessGraph>();
@@ -406,7 +394,7 @@ public class BackwardFlowFunctions extends AbstractFlowFunctions
 							return context.backwardMockHandler.computeTargetsOverCall(callSite, ie, source, callArgs,
 									edge);
 						}
-						if (ie.getMethod().equals(AliasFinder.arrayCopy())) {
+						if (ie.getMethod().equals(context.arrayCopy())) {
 							for (Value callVal : callArgs) {
 								if (callVal.equals(source.getBase())) {
 									// java uses call by value, but fields of
@@ -11,6 +11,7 @@ import boomerang.ifdssolver.IPathEdge;
 import boomerang.ifdssolver.IPropagationController;
 import boomerang.ifdssolver.PathEdgeFunctions;
 import boomerang.ifdssolver.Scheduler;
+import boomerang.ifdssolver.SolverMetrics;
 import heros.solver.Pair;
 import soot.SootMethod;
 import soot.Unit;
@@ -76,6 +77,11 @@ public class BackwardProblem
 	public Scheduler getScheduler() {
 		return context.scheduler;
 	}
+
+	@Override
+	public SolverMetrics<SootMethod> getMetrics() {
+		return context.getMetrics().of(getDirection());
+	}
 	@Override
 	public IPropagationController<Unit, AccessGraph> propagationController() {
 		return context.propagationController;
@@ -1,6 +1,5 @@
 package boomerang.backward;
 
-import boomerang.AliasFinder;
 import boomerang.BoomerangContext;
 import boomerang.accessgraph.AccessGraph;
 import boomerang.bidi.Incomings;
@@ -39,7 +38,7 @@ public class BackwardSolver
 	public void onRegister(IPathEdge<Unit, AccessGraph> edge) {
 		context.sanityCheckEdge(edge);
 		if (edge.getTarget() != null)
-			AliasFinder.VISITED_METHODS.add(icfg.getMethodOf(edge.getTarget()));
+			context.addVisitedMethod(icfg.getMethodOf(edge.getTarget()));
 	}
 
 	public String toString() {
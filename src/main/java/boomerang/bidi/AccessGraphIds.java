@@ -0,0 +1,53 @@
+package boomerang.bidi;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import boomerang.accessgraph.AccessGraph;
+
+/**
+ * Assigns dense integer ids, starting from 1, to the access graphs of the path
+ * edges of a {@link PathEdgeStore}. An id is published through the concurrent
+ * map after the graph has been stored in the array, hence a thread that
+ * obtained an id also sees the graph.
+ * 
+ * @author spaeth
+ *
+ */
+final class AccessGraphIds {
+	private final ConcurrentMap<AccessGraph, Integer> graphToId = new ConcurrentHashMap<>();
+	private volatile AccessGraph[] idToGraph = new AccessGraph[64];
+	private int next = 1;
+
+	/**
+	 * Returns the id of the graph, a new id is assigned on the first request.
+	 */
+	int idOf(AccessGraph graph) {
+		Integer id = graphToId.get(graph);
+		if (id != null)
+			return id;
+		synchronized (this) {
+			id = graphToId.get(graph);
+			if (id != null)
+				return id;
+			if (next == idToGraph.length)
+				idToGraph = Arrays.copyOf(idToGraph, 2 * next);
+			idToGraph[next] = graph;
+			graphToId.put(graph, next);
+			return next++;
+		}
+	}
+
+	/**
+	 * @return The id of the graph, <code>0</code> if the graph has no id.
+	 */
+	int existingIdOf(AccessGraph graph) {
+		Integer id = graphToId.get(graph);
+		return id == null ? 0 : id;
+	}
+
+	AccessGraph graphOf(int id) {
+		return idToGraph[id];
+	}
+}
@@ -4,8 +4,8 @@ import heros.solver.Pair;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import boomerang.accessgraph.AccessGraph;
 import boomerang.ifdssolver.IIncomings;
@@ -15,7 +15,7 @@ import soot.Unit;
 
 public class Incomings implements IIncomings<Unit, SootMethod, AccessGraph> {
 	
-	private Map<SootMethod, IPerMethodIncomings> methodToInc = new HashMap<>();
+	private Map<SootMethod, IPerMethodIncomings> methodToInc = new ConcurrentHashMap<>();
 	@Override
 	public Collection<IPathEdge<Unit, AccessGraph>> incoming(Pair<Unit,AccessGraph> startNode, SootMethod m) {
 		IPerMethodIncomings perMethodIncomings = methodToInc.get(m);
@@ -35,7 +35,9 @@ public class Incomings implements IIncomings<Unit, SootMethod, AccessGraph> {
 		IPerMethodIncomings perMethodIncomings = methodToInc.get(m);
 		if(perMethodIncomings == null){
 			perMethodIncomings = new PerMethodIncomings();
-			methodToInc.put(m, perMethodIncomings);
+			IPerMethodIncomings existing = methodToInc.putIfAbsent(m, perMethodIncomings);
+			if(existing != null)
+				return existing;
 		}
 		return perMethodIncomings;
 	}
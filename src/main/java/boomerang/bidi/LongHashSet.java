@@ -0,0 +1,99 @@
+package boomerang.bidi;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive <code>long</code> values using open addressing. The value
+ * <code>0</code> marks free slots, it is stored in a separate flag. The set is
+ * not thread-safe.
+ * 
+ * @author spaeth
+ *
+ */
+final class LongHashSet {
+	private long[] table;
+	private boolean containsZero;
+	private int size;
+
+	LongHashSet() {
+		this.table = new long[4];
+	}
+
+	boolean add(long value) {
+		if (value == 0) {
+			if (containsZero)
+				return false;
+			containsZero = true;
+			size++;
+			return true;
+		}
+		if (2 * (size + 1) > table.length)
+			rehash(2 * table.length);
+		int mask = table.length - 1;
+		int i = indexOf(value, mask);
+		while (table[i] != 0) {
+			if (table[i] == value)
+				return false;
+			i = (i + 1) & mask;
+		}
+		table[i] = value;
+		size++;
+		return true;
+	}
+
+	boolean contains(long value) {
+		if (value == 0)
+			return containsZero;
+		int mask = table.length - 1;
+		int i = indexOf(value, mask);
+		while (table[i] != 0) {
+			if (table[i] == value)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return A copy of the values of the set.
+	 */
+	long[] toArray() {
+		long[] values = new long[size];
+		int j = 0;
+		if (containsZero)
+			values[j++] = 0;
+		for (long v : table) {
+			if (v != 0)
+				values[j++] = v;
+		}
+		return values;
+	}
+
+	private void rehash(int capacity) {
+		long[] old = table;
+		table = new long[capacity];
+		int mask = capacity - 1;
+		for (long v : old) {
+			if (v == 0)
+				continue;
+			int i = indexOf(v, mask);
+			while (table[i] != 0)
+				i = (i + 1) & mask;
+			table[i] = v;
+		}
+	}
+
+	private static int indexOf(long value, int mask) {
+		int h = (int) (value ^ (value >>> 32)) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
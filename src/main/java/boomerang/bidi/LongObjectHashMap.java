@@ -0,0 +1,106 @@
+package boomerang.bidi;
+
+/**
+ * A map from primitive <code>long</code> keys to objects using open addressing,
+ * such that the keys are not boxed. The key <code>0</code> marks free slots
+ * and cannot be stored, <code>null</code> values cannot be stored either. The
+ * map is not thread-safe.
+ * 
+ * @author spaeth
+ *
+ */
+final class LongObjectHashMap<V> {
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	LongObjectHashMap() {
+		this.keys = new long[4];
+		this.values = new Object[4];
+	}
+
+	/**
+	 * @return The value of the key, <code>null</code> if the key is not
+	 *         mapped.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		int mask = keys.length - 1;
+		int i = indexOf(key, mask);
+		while (keys[i] != 0) {
+			if (keys[i] == key)
+				return (V) values[i];
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Maps the key to the value.
+	 * 
+	 * @return The previous value of the key, <code>null</code> if there was
+	 *         none.
+	 */
+	@SuppressWarnings("unchecked")
+	V put(long key, V value) {
+		if (key == 0)
+			throw new IllegalArgumentException("The key 0 cannot be stored");
+		if (value == null)
+			throw new IllegalArgumentException("null cannot be stored");
+		if (2 * (size + 1) > keys.length)
+			rehash(2 * keys.length);
+		int mask = keys.length - 1;
+		int i = indexOf(key, mask);
+		while (keys[i] != 0) {
+			if (keys[i] == key) {
+				V previous = (V) values[i];
+				values[i] = value;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		return null;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return A copy of the keys of the map.
+	 */
+	long[] keys() {
+		long[] out = new long[size];
+		int j = 0;
+		for (long k : keys) {
+			if (k != 0)
+				out[j++] = k;
+		}
+		return out;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == 0)
+				continue;
+			int i = indexOf(oldKeys[j], mask);
+			while (keys[i] != 0)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+
+	private static int indexOf(long value, int mask) {
+		int h = (int) (value ^ (value >>> 32)) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
@@ -1,17 +1,21 @@
 package boomerang.bidi;
 
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
+import boomerang.AliasResultListener;
 import boomerang.BoomerangContext;
 import boomerang.BoomerangTimeoutException;
 import boomerang.accessgraph.AccessGraph;
+import boomerang.cfg.UnitNumbering;
 import boomerang.ifdssolver.DefaultIFDSTabulationProblem.Direction;
 import boomerang.ifdssolver.IPathEdge;
 import boomerang.ifdssolver.IPathEdges;
@@ -22,57 +26,112 @@ import soot.SootMethod;
 import soot.Unit;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 
+/**
+ * Stores the path edges of one direction grouped by method and target statement. Methods and
+ * statements are addressed by their number in the {@link UnitNumbering} of the control-flow graph,
+ * such that a lookup requires a single hash lookup of the target statement. If the scheduler of the
+ * context executes tasks concurrently, the store is thread-safe: path edges are registered with
+ * per-statement locking and all bookkeeping of points of indirection and their callbacks is guarded
+ * by a single store-wide lock.
+ */
 public class PathEdgeStore implements
     IPathEdges<Unit, AccessGraph, SootMethod, BiDiInterproceduralCFG<Unit, SootMethod>> {
-  private Map<SootMethod, PerMethodPathEdges> stmtToPathEdges = new HashMap<>();
+  /**
+   * The path edges per method, indexed by the number of the method. Entries are only written while
+   * holding the monitor of the store, which also guards growing the array.
+   */
+  private volatile AtomicReferenceArray<PerMethodPathEdges> methodToPathEdges;
   private BoomerangContext context;
-private Direction direction;
-
-
+  private Direction direction;
+  private final UnitNumbering numbering;
+  private final boolean concurrent;
+  private final Lock poiLock = new ReentrantLock();
+  private final AtomicLong pathEdgeCount = new AtomicLong();
+  private final AccessGraphIds factIds = new AccessGraphIds();
 
   public PathEdgeStore(BoomerangContext c, Direction dir) {
     this.context = c;
-	this.direction = dir;
+    this.direction = dir;
+    this.numbering = c.icfg.getNumbering();
+    this.concurrent = c.scheduler.isConcurrent();
+    this.methodToPathEdges = new AtomicReferenceArray<>(Math.max(1, numbering.methodCount()));
   }
 
   public void register(IPathEdge<Unit, AccessGraph> pe) {
+    registerIfAbsent(pe);
+  }
+
+  @Override
+  public boolean registerIfAbsent(IPathEdge<Unit, AccessGraph> pe) {
     Unit target = pe.getTarget();
-    SootMethod m = context.icfg.getMethodOf(target);
-    PerMethodPathEdges perMethodPathEdges = getOrCreatePerStmt(m);
-    perMethodPathEdges.register(pe);
+    int unitNumber = numbering.numberOf(target);
+    int methodNumber = numbering.methodNumberOf(unitNumber);
+    PerMethodPathEdges perMethodPathEdges = getOrCreate(methodNumber);
+    if (!perMethodPathEdges.registerIfAbsent(pe, unitNumber))
+      return false;
+    pathEdgeCount.incrementAndGet();
+    context.getMetrics().of(direction).propagatedInto(methodNumber);
+    return true;
+  }
+
+  /**
+   * @return The number of stored path edges. In contrast to {@link #size()} the
+   *         number is maintained on registration and is cheap to query.
+   */
+  public long getPathEdgeCount() {
+    return pathEdgeCount.get();
   }
 
   public void registerPointOfIndirectionAt(Unit stmt, PointOfIndirection poi,AliasCallback cb){
-	    SootMethod m = context.icfg.getMethodOf(stmt);
-	    PerMethodPathEdges perMethodPathEdges = getOrCreatePerStmt(m);
-	    perMethodPathEdges.registerPointOfIndirectionAt(stmt,poi,cb);
+	    context.getMetrics().poiRegistered();
+	    int unitNumber = numbering.numberOf(stmt);
+	    PerMethodPathEdges perMethodPathEdges = getOrCreate(numbering.methodNumberOf(unitNumber));
+	    perMethodPathEdges.registerPointOfIndirectionAt(stmt, unitNumber, poi, cb);
   }
   
 
+  /**
+   * Reports the results of a query for the fact at the statement to the listener as soon as the
+   * path edges are registered, starting with the results of the path edges already stored.
+   */
+  public void addResultListener(Unit stmt, AccessGraph fact, AliasResultListener listener) {
+    int unitNumber = numbering.numberOf(stmt);
+    getOrCreate(numbering.methodNumberOf(unitNumber)).addResultListener(stmt, unitNumber, fact,
+        listener);
+  }
+
+  public void removeResultListener(Unit stmt, AccessGraph fact, AliasResultListener listener) {
+    int unitNumber = numbering.numberOf(stmt);
+    PerMethodPathEdges perMethodPathEdges = get(numbering.methodNumberOf(unitNumber));
+    if (perMethodPathEdges != null)
+      perMethodPathEdges.removeResultListener(stmt, unitNumber, fact, listener);
+  }
+
   public boolean hasAlreadyProcessed(IPathEdge<Unit, AccessGraph> pe) {
-    Unit target = pe.getTarget();
-    SootMethod m = context.icfg.getMethodOf(target);
-    PerMethodPathEdges perMethodPathEdges = stmtToPathEdges.get(m);
+    int unitNumber = numbering.numberOf(pe.getTarget());
+    PerMethodPathEdges perMethodPathEdges = get(numbering.methodNumberOf(unitNumber));
     if (perMethodPathEdges == null)
       return false;
-    return perMethodPathEdges.hasAlreadyProcessed(pe);
+    return perMethodPathEdges.hasAlreadyProcessed(pe, unitNumber);
   }
 
   public Multimap<Pair<Unit, AccessGraph>, AccessGraph> getResultAtStmtContainingValue(Unit stmt,
       final AccessGraph fact, Set<Pair<Unit,AccessGraph>> visited) {
-    SootMethod m = context.icfg.getMethodOf(stmt);
-    PerMethodPathEdges perMethodPathEdges = stmtToPathEdges.get(m);
+    int unitNumber = numbering.numberOf(stmt);
+    PerMethodPathEdges perMethodPathEdges = get(numbering.methodNumberOf(unitNumber));
     if (perMethodPathEdges == null)
       return HashMultimap.create();
 
-    return perMethodPathEdges.getResultsAtStmtContainingValue(stmt, fact,visited);
+    return perMethodPathEdges.getResultsAtStmtContainingValue(stmt, unitNumber, fact,visited);
 
   }
 
   public void printStats() {
-    for (SootMethod m : stmtToPathEdges.keySet()) {
-      PerMethodPathEdges perMethodPathEdges = stmtToPathEdges.get(m);
-      System.out.println(m + " ::: " + perMethodPathEdges.size());
+    AtomicReferenceArray<PerMethodPathEdges> methods = methodToPathEdges;
+    for (int i = 0; i < methods.length(); i++) {
+      PerMethodPathEdges perMethodPathEdges = methods.get(i);
+      if (perMethodPathEdges != null)
+        System.out.println(numbering.methodOf(i) + " ::: " + perMethodPathEdges.size());
     }
 
   }
@@ -80,41 +139,68 @@ private Direction direction;
 
   public int size() {
     int c = 0;
-    for (SootMethod u : this.stmtToPathEdges.keySet())
-      c += this.stmtToPathEdges.get(u).size();
+    AtomicReferenceArray<PerMethodPathEdges> methods = methodToPathEdges;
+    for (int i = 0; i < methods.length(); i++) {
+      PerMethodPathEdges perMethodPathEdges = methods.get(i);
+      if (perMethodPathEdges != null)
+        c += perMethodPathEdges.size();
+    }
     return c;
   }
 
-  public void clear() {
-    stmtToPathEdges.clear();
+  public synchronized void clear() {
+    methodToPathEdges = new AtomicReferenceArray<>(methodToPathEdges.length());
+    pathEdgeCount.set(0);
   }
 
+  private PerMethodPathEdges get(int methodNumber) {
+    AtomicReferenceArray<PerMethodPathEdges> methods = methodToPathEdges;
+    if (methodNumber >= methods.length())
+      return null;
+    return methods.get(methodNumber);
+  }
 
-  private PerMethodPathEdges getOrCreatePerStmt(SootMethod method) {
-    PerMethodPathEdges perMethodPathEdges = stmtToPathEdges.get(method);
-    if (perMethodPathEdges == null) {
-      perMethodPathEdges = new PerMethodPathEdges(context, direction);
-      stmtToPathEdges.put(method, perMethodPathEdges);
+  private PerMethodPathEdges getOrCreate(int methodNumber) {
+    PerMethodPathEdges perMethodPathEdges = get(methodNumber);
+    if (perMethodPathEdges != null)
+      return perMethodPathEdges;
+    synchronized (this) {
+      AtomicReferenceArray<PerMethodPathEdges> methods = methodToPathEdges;
+      if (methodNumber >= methods.length()) {
+        AtomicReferenceArray<PerMethodPathEdges> grown = new AtomicReferenceArray<>(
+            Math.max(methodNumber + 1, methods.length() * 2));
+        for (int i = 0; i < methods.length(); i++)
+          grown.set(i, methods.get(i));
+        methods = grown;
+        methodToPathEdges = grown;
+      }
+      perMethodPathEdges = methods.get(methodNumber);
+      if (perMethodPathEdges == null) {
+        perMethodPathEdges = new PerMethodPathEdges(context, direction, concurrent, poiLock, factIds,
+            numbering.methodOf(methodNumber), numbering.firstUnitOf(methodNumber),
+            numbering.unitCountOf(methodNumber));
+        methods.set(methodNumber, perMethodPathEdges);
+      }
+      return perMethodPathEdges;
     }
-    return perMethodPathEdges;
   }
   @Override
   public void printTopMethods(int i) {
-    TreeSet<SootMethod> set = new TreeSet<>(new Comparator<SootMethod>() {
+    final AtomicReferenceArray<PerMethodPathEdges> methods = methodToPathEdges;
+    TreeSet<Integer> set = new TreeSet<>(new Comparator<Integer>() {
       @Override
-      public int compare(SootMethod o1, SootMethod o2) {
-        PerMethodPathEdges m1 = stmtToPathEdges.get(o1);
-        int size1 = m1.size();
-        PerMethodPathEdges m2 = stmtToPathEdges.get(o2);
-        int size2 = m2.size();
+      public int compare(Integer o1, Integer o2) {
+        int size1 = methods.get(o1).size();
+        int size2 = methods.get(o2).size();
         return size1 > size2 ? -1 : 1;
       }
     });
-    for (SootMethod m : stmtToPathEdges.keySet())
-      set.add(m);
+    for (int m = 0; m < methods.length(); m++)
+      if (methods.get(m) != null)
+        set.add(m);
     int j = 0;
-    for (SootMethod m : set) {
-      stmtToPathEdges.get(m).printTopStmts();
+    for (Integer m : set) {
+      methods.get(m).printTopStmts();
       j++;
       if (j > i)
         break;
@@ -4,20 +4,29 @@ import heros.solver.Pair;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.Unit;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
 import boomerang.accessgraph.AccessGraph;
 import boomerang.ifdssolver.IPathEdge;
 
 class PerMethodIncomings implements IPerMethodIncomings {
-	private Multimap<Pair<Unit,AccessGraph>,IPathEdge<Unit, AccessGraph>> startNodeToIncEdges = HashMultimap.create();
+	private ConcurrentMap<Pair<Unit,AccessGraph>,Set<IPathEdge<Unit, AccessGraph>>> startNodeToIncEdges = new ConcurrentHashMap<>();
 	public boolean addIncoming(Pair<Unit, AccessGraph> pair,
 			IPathEdge<Unit, AccessGraph> pe) {
-		return startNodeToIncEdges.put(pair, pe);
+		Set<IPathEdge<Unit, AccessGraph>> incEdges = startNodeToIncEdges.get(pair);
+		if(incEdges == null){
+			incEdges = Sets.newConcurrentHashSet();
+			Set<IPathEdge<Unit, AccessGraph>> existing = startNodeToIncEdges.putIfAbsent(pair, incEdges);
+			if(existing != null)
+				incEdges = existing;
+		}
+		return incEdges.add(pe);
 	}
 	public Collection<IPathEdge<Unit, AccessGraph>> getIncomings(
 			Pair<Unit, AccessGraph> startNode) {
@@ -5,11 +5,17 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
 
 import com.google.common.collect.Multimap;
 
+import boomerang.AliasResultListener;
 import boomerang.BoomerangContext;
 import boomerang.accessgraph.AccessGraph;
+import boomerang.cfg.UnitNumbering;
 import boomerang.ifdssolver.DefaultIFDSTabulationProblem.Direction;
 import boomerang.ifdssolver.IPathEdge;
 import boomerang.pointsofindirection.AliasCallback;
@@ -18,73 +24,142 @@ import heros.solver.Pair;
 import soot.SootMethod;
 import soot.Unit;
 
+/**
+ * The path edges of one method, indexed by the number of their target statement. The statements
+ * numbered consecutively with the method are stored in an array, statements numbered later (e.g.
+ * added to the body afterwards) in a map.
+ */
 class PerMethodPathEdges {
-	private Map<Unit, PerStatementPathEdges> stmtToPathEdges = new HashMap<>();
+	private final AtomicReferenceArray<PerStatementPathEdges> stmtToPathEdges;
+	private final ConcurrentMap<Unit, PerStatementPathEdges> unnumberedStmtToPathEdges = new ConcurrentHashMap<>();
+	private final SootMethod method;
+	private final int firstUnit;
 	private final BoomerangContext context;
 	private Direction direction;
+	private final boolean concurrent;
+	private final Lock poiLock;
+	private final AccessGraphIds factIds;
 
-	public PerMethodPathEdges(BoomerangContext context, Direction direction) {
+	public PerMethodPathEdges(BoomerangContext context, Direction direction, boolean concurrent, Lock poiLock,
+			AccessGraphIds factIds, SootMethod method, int firstUnit, int unitCount) {
 		this.context = context;
 		this.direction = direction;
+		this.concurrent = concurrent;
+		this.poiLock = poiLock;
+		this.factIds = factIds;
+		this.method = method;
+		this.firstUnit = firstUnit;
+		this.stmtToPathEdges = new AtomicReferenceArray<>(unitCount);
 	}
 
-	boolean hasAlreadyProcessed(IPathEdge<Unit, AccessGraph> pe) {
-		PerStatementPathEdges pathEdges = getOrCreate(pe.getTarget());
+	boolean hasAlreadyProcessed(IPathEdge<Unit, AccessGraph> pe, int unitNumber) {
+		PerStatementPathEdges pathEdges = get(pe.getTarget(), unitNumber);
+		if (pathEdges == null)
+			return false;
 		return pathEdges.hasAlreadyProcessed(pe);
 	}
 
-	private PerStatementPathEdges getOrCreate(Unit stmt) {
-		PerStatementPathEdges perStatementPathEdges = stmtToPathEdges.get(stmt);
-		if (perStatementPathEdges == null)
-			perStatementPathEdges = new PerStatementPathEdges(context,direction);
-		stmtToPathEdges.put(stmt, perStatementPathEdges);
-		return perStatementPathEdges;
+	private int indexOf(int unitNumber) {
+		int index = unitNumber - firstUnit;
+		return (firstUnit >= 0 && index >= 0 && index < stmtToPathEdges.length() ? index : -1);
 	}
 
-	void register(IPathEdge<Unit, AccessGraph> pe) {
-		Unit target = pe.getTarget();
-		PerStatementPathEdges pathedges = getOrCreate(target);
-		pathedges.register(pe);
+	private PerStatementPathEdges get(Unit stmt, int unitNumber) {
+		int index = indexOf(unitNumber);
+		if (index < 0)
+			return unnumberedStmtToPathEdges.get(stmt);
+		return stmtToPathEdges.get(index);
 	}
 
-	public void registerPointOfIndirectionAt(Unit stmt, PointOfIndirection poi, AliasCallback callback) {
-		PerStatementPathEdges pathedges = getOrCreate(stmt);
+	private PerStatementPathEdges getOrCreate(Unit stmt, int unitNumber) {
+		PerStatementPathEdges perStatementPathEdges = get(stmt, unitNumber);
+		if (perStatementPathEdges != null)
+			return perStatementPathEdges;
+		perStatementPathEdges = new PerStatementPathEdges(context, direction, concurrent, poiLock, stmt,
+				factIds);
+		int index = indexOf(unitNumber);
+		if (index < 0) {
+			PerStatementPathEdges existing = unnumberedStmtToPathEdges.putIfAbsent(stmt, perStatementPathEdges);
+			return (existing != null ? existing : perStatementPathEdges);
+		}
+		if (stmtToPathEdges.compareAndSet(index, null, perStatementPathEdges))
+			return perStatementPathEdges;
+		return stmtToPathEdges.get(index);
+	}
+
+	boolean registerIfAbsent(IPathEdge<Unit, AccessGraph> pe, int unitNumber) {
+		PerStatementPathEdges pathedges = getOrCreate(pe.getTarget(), unitNumber);
+		return pathedges.registerIfAbsent(pe);
+	}
+
+	public void registerPointOfIndirectionAt(Unit stmt, int unitNumber, PointOfIndirection poi,
+			AliasCallback callback) {
+		PerStatementPathEdges pathedges = getOrCreate(stmt, unitNumber);
 		pathedges.registerPointOfIndirectionAt(poi, callback);
 	}
 
+	void addResultListener(Unit stmt, int unitNumber, AccessGraph fact, AliasResultListener listener) {
+		getOrCreate(stmt, unitNumber).addResultListener(fact, listener);
+	}
+
+	void removeResultListener(Unit stmt, int unitNumber, AccessGraph fact, AliasResultListener listener) {
+		PerStatementPathEdges pathEdges = get(stmt, unitNumber);
+		if (pathEdges != null)
+			pathEdges.removeResultListener(fact, listener);
+	}
+
 	public int size() {
 		int c = 0;
-		for (Unit u : this.stmtToPathEdges.keySet())
-			c += this.stmtToPathEdges.get(u).size();
+		for (PerStatementPathEdges pathEdges : all().values())
+			c += pathEdges.size();
 		return c;
 	}
 
-	Multimap<Pair<Unit, AccessGraph>, AccessGraph> getResultsAtStmtContainingValue(Unit stmt, AccessGraph fact, Set<Pair<Unit,AccessGraph>> visited) {
-		PerStatementPathEdges pathedges = getOrCreate(stmt);
+	Multimap<Pair<Unit, AccessGraph>, AccessGraph> getResultsAtStmtContainingValue(Unit stmt, int unitNumber,
+			AccessGraph fact, Set<Pair<Unit, AccessGraph>> visited) {
+		PerStatementPathEdges pathedges = getOrCreate(stmt, unitNumber);
 		return pathedges.getResultsAtStmtContainingValue(stmt, fact,visited);
 	}
 
+	/**
+	 * @return The path edges of all statements of the method, keyed by
+	 *         statement.
+	 */
+	private Map<Unit, PerStatementPathEdges> all() {
+		Map<Unit, PerStatementPathEdges> all = new HashMap<>(unnumberedStmtToPathEdges);
+		if (stmtToPathEdges.length() == 0)
+			return all;
+		UnitNumbering numbering = context.icfg.getNumbering();
+		for (Unit u : method.getActiveBody().getUnits()) {
+			PerStatementPathEdges pathEdges = get(u, numbering.numberOf(u));
+			if (pathEdges != null)
+				all.put(u, pathEdges);
+		}
+		return all;
+	}
+
 	public SootMethod reportStats() {
 		return null;
 	}
 
 	public void printTopStmts() {
+		final Map<Unit, PerStatementPathEdges> all = all();
 		TreeSet<Unit> set = new TreeSet<>(new Comparator<Unit>() {
 			@Override
 			public int compare(Unit o1, Unit o2) {
-				PerStatementPathEdges m1 = stmtToPathEdges.get(o1);
+				PerStatementPathEdges m1 = all.get(o1);
 				int size1 = m1.size();
-				PerStatementPathEdges m2 = stmtToPathEdges.get(o2);
+				PerStatementPathEdges m2 = all.get(o2);
 				int size2 = m2.size();
 				return size1 > size2 ? -1 : 1;
 			}
 
 		});
-		for (Unit unit : stmtToPathEdges.keySet())
+		for (Unit unit : all.keySet())
 			set.add(unit);
 		for (Unit m : set) {
-			System.out.println("\t " + m + " " + stmtToPathEdges.get(m).size());
-			stmtToPathEdges.get(m).groupByStartUnit();
+			System.out.println("\t " + m + " " + all.get(m).size());
+			all.get(m).groupByStartUnit();
 		}
 	}
 
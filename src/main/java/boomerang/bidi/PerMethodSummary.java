@@ -3,21 +3,34 @@ package boomerang.bidi;
 import heros.solver.Pair;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import soot.Unit;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
 import boomerang.accessgraph.AccessGraph;
 import boomerang.ifdssolver.IPathEdge;
 
 class PerMethodSummary implements IPerMethodSummary{
-	private Multimap<Pair<Unit,AccessGraph>, IPathEdge<Unit,AccessGraph>> startNodeToSummary = HashMultimap.create();
+	private ConcurrentMap<Pair<Unit,AccessGraph>, Set<IPathEdge<Unit,AccessGraph>>> startNodeToSummary = new ConcurrentHashMap<>();
 	public void addEndSummary(IPathEdge<Unit, AccessGraph> edge) {
-		startNodeToSummary.put(edge.getStartNode(), edge);
+		Set<IPathEdge<Unit, AccessGraph>> summaries = startNodeToSummary.get(edge.getStartNode());
+		if(summaries == null){
+			summaries = Sets.newConcurrentHashSet();
+			Set<IPathEdge<Unit, AccessGraph>> existing = startNodeToSummary.putIfAbsent(edge.getStartNode(), summaries);
+			if(existing != null)
+				summaries = existing;
+		}
+		summaries.add(edge);
 	}
 	public Collection<IPathEdge<Unit, AccessGraph>> endSummary(Pair<Unit, AccessGraph> startNode) {
-		return startNodeToSummary.get(startNode);
+		Set<IPathEdge<Unit, AccessGraph>> summaries = startNodeToSummary.get(startNode);
+		if(summaries == null)
+			return Collections.emptySet();
+		return summaries;
 	}
 }
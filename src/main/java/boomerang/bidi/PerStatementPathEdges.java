@@ -1,76 +1,405 @@
 package boomerang.bidi;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
+import boomerang.AliasResultListener;
 import boomerang.BoomerangContext;
 import boomerang.accessgraph.AccessGraph;
+import boomerang.cfg.UnitNumbering;
 import boomerang.ifdssolver.DefaultIFDSTabulationProblem.Direction;
 import boomerang.ifdssolver.IPathEdge;
+import boomerang.jfr.FlightRecorderEvents;
 import boomerang.pointsofindirection.AliasCallback;
 import boomerang.pointsofindirection.PointOfIndirection;
 import heros.solver.Pair;
+import soot.FastHierarchy;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
 import soot.SootMethod;
+import soot.Type;
 import soot.Unit;
 
+/**
+ * The path edges ending at one statement. As all path edges share the target
+ * statement, a path edge is encoded by the key of its start node (the number of
+ * the start statement and the id of the start fact, see
+ * {@link #startKey(Unit, int)}) and the id of its target fact. The path edges
+ * are stored as adjacency sets of these primitives in both directions,
+ * {@link Pair}s of statements and access graphs are only created when the path
+ * edges are read.
+ */
 class PerStatementPathEdges {
-	private Multimap<Pair<Unit, AccessGraph>, Pair<Unit, AccessGraph>> forwardPathEdges = HashMultimap.create();
-	private Multimap<Pair<Unit, AccessGraph>, Pair<Unit, AccessGraph>> reversePathEdges = HashMultimap.create();
-	private Set<IPathEdge<Unit, AccessGraph>> processedPathEdges = new HashSet<>();
+	/**
+	 * Start node keys to target fact ids and vice versa. Guarded by
+	 * {@link #lock}.
+	 */
+	private final LongObjectHashMap<IntHashSet> forwardPathEdges = new LongObjectHashMap<>();
+	private final IntObjectHashMap<LongHashSet> reversePathEdges = new IntObjectHashMap<>();
+	private int pathEdgeCount;
+	/**
+	 * The start node keys of the path edges whose start fact can be an alias
+	 * in context (see {@link #aliasInContext(Unit, AccessGraph, AccessGraph)})
+	 * grouped by the static type of the start fact. Guarded by {@link #lock}.
+	 */
+	private final Map<Type, LongHashSet> aliasableStartsByType = new HashMap<>();
+	/**
+	 * The listeners of queries at this statement keyed by the id of the
+	 * queried fact, <code>null</code> if there are none. Guarded by
+	 * {@link #lock}.
+	 */
+	private Map<Integer, List<AliasResultListener>> resultListeners;
+	private final Unit stmt;
+	private final AccessGraphIds factIds;
+	private final UnitNumbering numbering;
 	private Multimap<Pair<Unit, AccessGraph>, PointOfIndirection> targetToPOI = HashMultimap.create();
 	private Multimap<Pair<Unit, AccessGraph>, PointOfIndirection> originToPOI = HashMultimap.create();
-	private Multimap<Pair<Unit, AccessGraph>, PointOfIndirection> parameterOriginToPOI = HashMultimap.create();
+	/**
+	 * The facts of origins without allocation site at which points of
+	 * indirection are registered, grouped by the static type of the fact, see
+	 * {@link #typeOf(AccessGraph)}.
+	 */
+	private Map<Type, Multimap<AccessGraph, PointOfIndirection>> parameterOriginToPOI = new HashMap<>();
 	private Multimap<PointOfIndirection, AliasCallback> poisToCallback = HashMultimap.create();
-	private Set<PointOfIndirection> pois = new HashSet<>();
+	private Set<PointOfIndirection> pois;
 	private final BoomerangContext context;
 	private Direction direction;
+	private final boolean concurrent;
+	/**
+	 * Guards the path edges of this statement, <code>null</code> unless the
+	 * scheduler executes tasks concurrently, see {@link #lock()}.
+	 */
+	private final ReentrantLock lock;
+	private final Lock poiLock;
 
-	public PerStatementPathEdges(BoomerangContext context, Direction direction) {
+	public PerStatementPathEdges(BoomerangContext context, Direction direction, boolean concurrent, Lock poiLock,
+			Unit stmt, AccessGraphIds factIds) {
 		this.context = context;
 		this.direction = direction;
+		this.concurrent = concurrent;
+		this.poiLock = poiLock;
+		this.stmt = stmt;
+		this.factIds = factIds;
+		this.numbering = context.icfg.getNumbering();
+		this.pois = (concurrent ? Sets.<PointOfIndirection> newConcurrentHashSet() : new HashSet<PointOfIndirection>());
+		this.lock = (concurrent ? new ReentrantLock() : null);
 	}
 
-	void register(IPathEdge<Unit, AccessGraph> pe) {
-		Pair<Unit, AccessGraph> typeLessBackwardNode = new Pair<Unit, AccessGraph>(pe.getTarget(),
-				pe.factAtTarget());
-		forwardPathEdges.put(pe.getStartNode(), pe.getTargetNode());
-		reversePathEdges.put(typeLessBackwardNode, pe.getStartNode());
-		if (!processedPathEdges.add(pe))
-			return;
-		if(direction == Direction.BACKWARD)
-			return;
+	/**
+	 * Acquires {@link #lock}. Without a concurrent scheduler a single thread
+	 * accesses the statement and nothing is locked.
+	 */
+	private void lock() {
+		if (concurrent)
+			lock.lock();
+	}
+
+	private void unlock() {
+		if (concurrent)
+			lock.unlock();
+	}
+
+	private long startKey(Unit start, int factId) {
+		long unit = (start == null ? 0 : numbering.numberOf(start) + 1);
+		return (unit << 32) | factId;
+	}
+
+	private Pair<Unit, AccessGraph> startNodeOf(long startKey) {
+		int unit = (int) (startKey >>> 32);
+		return new Pair<Unit, AccessGraph>(unit == 0 ? null : numbering.unitOf(unit - 1),
+				factIds.graphOf((int) startKey));
+	}
+
+	boolean registerIfAbsent(IPathEdge<Unit, AccessGraph> pe) {
+		int targetFact = factIds.idOf(pe.factAtTarget());
+		long start = startKey(pe.getStart(), factIds.idOf(pe.factAtSource()));
+		List<ResultEvent> events = null;
+		lock();
+		try {
+			IntHashSet targets = forwardPathEdges.get(start);
+			if (targets == null) {
+				targets = new IntHashSet();
+				forwardPathEdges.put(start, targets);
+				if (isAliasableOrigin(pe.factAtSource()))
+					addAliasableStart(start, typeOf(pe.factAtSource()));
+			}
+			if (!targets.add(targetFact))
+				return false;
+			LongHashSet starts = reversePathEdges.get(targetFact);
+			if (starts == null) {
+				starts = new LongHashSet();
+				reversePathEdges.put(targetFact, starts);
+			}
+			starts.add(start);
+			pathEdgeCount++;
+			if (resultListeners != null)
+				events = resultsOfNewPathEdge(start, targets, targetFact);
+		} finally {
+			unlock();
+		}
+		if (events != null)
+			fire(events);
+		Pair<Unit, AccessGraph> typeLessBackwardNode = pe.getTargetNode();
+		// All maps of points of indirection are empty as long as no point of
+		// indirection is registered at this statement. A concurrent
+		// registration adds to pois before it scans the path edges.
+		if (direction == Direction.BACKWARD || pois.isEmpty())
+			return true;
+		poiLock.lock();
+		try {
+			notifyPointsOfIndirection(pe, typeLessBackwardNode);
+		} finally {
+			poiLock.unlock();
+		}
+		return true;
+	}
+
+	private void notifyPointsOfIndirection(IPathEdge<Unit, AccessGraph> pe, Pair<Unit, AccessGraph> typeLessBackwardNode) {
 		for (PointOfIndirection p : targetToPOI.get(typeLessBackwardNode)) {
 			registerPOIWithTarget(typeLessBackwardNode, p);
 		}
 		for (PointOfIndirection p : originToPOI.get(pe.getStartNode())) {
 			for (AliasCallback cb : poisToCallback.get(p)) {
-				cb.newAliasEncountered(p, pe.factAtTarget(),pe.getStartNode());
+				newAliasEncountered(cb, p, pe.factAtTarget(),pe.getStartNode());
 			}
 		}
-		if (!pe.factAtSource().hasAllocationSite()) {
-			for (Entry<Pair<Unit, AccessGraph>, PointOfIndirection> e : parameterOriginToPOI.entries()) {
-				PointOfIndirection p = e.getValue();
-				// TODO add check only if type match
-				if (aliasInContext(pe.getStart(), e.getKey().getO2(), pe.factAtSource())) {
-					for (AliasCallback cb : poisToCallback.get(p)) {
-						cb.newAliasEncountered(p, pe.factAtTarget(),pe.getStartNode());
-					}
+		AccessGraph source = pe.factAtSource();
+		if (!source.hasAllocationSite() && !source.hasSetBasedFieldGraph()) {
+			Type type = typeOf(source);
+			List<PointOfIndirection> aliasing = new ArrayList<>();
+			for (Entry<Type, Multimap<AccessGraph, PointOfIndirection>> byType : parameterOriginToPOI.entrySet()) {
+				if (!mayAlias(type, byType.getKey()))
+					continue;
+				for (Entry<AccessGraph, Collection<PointOfIndirection>> e : byType.getValue().asMap().entrySet()) {
+					if (aliasInContext(pe.getStart(), e.getKey(), source))
+						aliasing.addAll(e.getValue());
 				}
 			}
+			for (PointOfIndirection p : aliasing) {
+				for (AliasCallback cb : poisToCallback.get(p)) {
+					newAliasEncountered(cb, p, pe.factAtTarget(), pe.getStartNode());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Registers the listener of a query for the fact at this statement. The
+	 * results of the path edges already stored are reported immediately.
+	 */
+	void addResultListener(AccessGraph fact, AliasResultListener listener) {
+		int queriedFact = factIds.idOf(fact);
+		List<ResultEvent> events = new ArrayList<>();
+		lock();
+		try {
+			if (resultListeners == null)
+				resultListeners = new HashMap<>();
+			List<AliasResultListener> listeners = resultListeners.get(queriedFact);
+			if (listeners == null) {
+				listeners = new ArrayList<>();
+				resultListeners.put(queriedFact, listeners);
+			}
+			listeners.add(listener);
+			LongHashSet starts = reversePathEdges.get(queriedFact);
+			if (starts != null) {
+				for (long start : starts.toArray())
+					addResultsOfStart(events, listener, start, forwardPathEdges.get(start));
+			}
+		} finally {
+			unlock();
+		}
+		fire(events);
+	}
+
+	void removeResultListener(AccessGraph fact, AliasResultListener listener) {
+		int queriedFact = factIds.existingIdOf(fact);
+		lock();
+		try {
+			if (resultListeners == null)
+				return;
+			List<AliasResultListener> listeners = resultListeners.get(queriedFact);
+			if (listeners == null)
+				return;
+			listeners.remove(listener);
+			if (listeners.isEmpty())
+				resultListeners.remove(queriedFact);
+			if (resultListeners.isEmpty())
+				resultListeners = null;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Computes the results the new path edge from the start node to the
+	 * target fact contributes to the queries at this statement. Must be called
+	 * while holding {@link #lock}.
+	 * 
+	 * @param targets
+	 *            The target facts of the start node, including the new one.
+	 */
+	private List<ResultEvent> resultsOfNewPathEdge(long start, IntHashSet targets, int targetFact) {
+		List<ResultEvent> events = null;
+		for (Entry<Integer, List<AliasResultListener>> e : resultListeners.entrySet()) {
+			int queriedFact = e.getKey();
+			if (!targets.contains(queriedFact))
+				continue;
+			if (events == null)
+				events = new ArrayList<>();
+			for (AliasResultListener listener : e.getValue()) {
+				if (targetFact == queriedFact)
+					// The start node newly reaches the queried fact.
+					addResultsOfStart(events, listener, start, targets);
+				else
+					events.add(new ResultEvent(listener, start, targetFact));
+			}
+		}
+		return events;
+	}
+
+	private static void addResultsOfStart(List<ResultEvent> events, AliasResultListener listener, long start,
+			IntHashSet targets) {
+		events.add(new ResultEvent(listener, start, 0));
+		for (int target : targets.toArray())
+			events.add(new ResultEvent(listener, start, target));
+	}
+
+	/**
+	 * Reports the results to the listeners outside of the monitor. Results of
+	 * path edges starting at the start point of a method are skipped, they are
+	 * only resolved in the calling contexts of the method, see
+	 * {@link #getResultsAtStmtContainingValue(Unit, AccessGraph, Set)}.
+	 */
+	private void fire(List<ResultEvent> events) {
+		Set<AliasResultListener> stopped = new HashSet<>();
+		for (ResultEvent event : events) {
+			if (stopped.contains(event.listener))
+				continue;
+			Pair<Unit, AccessGraph> startNode = startNodeOf(event.start);
+			Unit startUnit = startNode.getO1();
+			if (startUnit == null
+					|| context.icfg.getStartPointsOf(context.icfg.getMethodOf(startUnit)).contains(startUnit))
+				continue;
+			boolean proceed = (event.alias == 0 ? event.listener.onAllocationSite(startNode)
+					: event.listener.onAlias(startNode, factIds.graphOf(event.alias)));
+			if (!proceed) {
+				stopped.add(event.listener);
+				context.stopQuery();
+			}
+		}
+	}
+
+	/**
+	 * A result for a listener. The id of the alias is <code>0</code> if the
+	 * start node is reported as new allocation site.
+	 */
+	private static class ResultEvent {
+		private final AliasResultListener listener;
+		private final long start;
+		private final int alias;
+
+		ResultEvent(AliasResultListener listener, long start, int alias) {
+			this.listener = listener;
+			this.start = start;
+			this.alias = alias;
+		}
+	}
+
+	/**
+	 * Whether the fact of an origin can be an alias in context of another
+	 * origin. {@link #aliasInContext(Unit, AccessGraph, AccessGraph)} never
+	 * holds for facts with set based field graph.
+	 */
+	private static boolean isAliasableOrigin(AccessGraph fact) {
+		return !fact.hasNullAllocationSite() && !fact.hasSetBasedFieldGraph();
+	}
+
+	private void addAliasableStart(long start, Type type) {
+		LongHashSet starts = aliasableStartsByType.get(type);
+		if (starts == null) {
+			starts = new LongHashSet();
+			aliasableStartsByType.put(type, starts);
+		}
+		starts.add(start);
+	}
+
+	/**
+	 * @return The start nodes of path edges which may be aliases in context of
+	 *         the fact, i.e. all aliasable origins whose type may alias the type
+	 *         of the fact.
+	 */
+	private Collection<Pair<Unit, AccessGraph>> candidateOrigins(AccessGraph fact) {
+		if (fact.hasSetBasedFieldGraph())
+			return Collections.emptyList();
+		Type type = typeOf(fact);
+		List<long[]> candidates = new ArrayList<>();
+		lock();
+		try {
+			for (Entry<Type, LongHashSet> e : aliasableStartsByType.entrySet()) {
+				if (mayAlias(type, e.getKey()))
+					candidates.add(e.getValue().toArray());
+			}
+		} finally {
+			unlock();
+		}
+		List<Pair<Unit, AccessGraph>> out = new ArrayList<>();
+		for (long[] starts : candidates) {
+			for (long start : starts)
+				out.add(startNodeOf(start));
 		}
+		return out;
+	}
+
+	/**
+	 * @return The static type of the object the access graph points to,
+	 *         <code>null</code> if unknown.
+	 */
+	private static Type typeOf(AccessGraph g) {
+		if (g.getFieldGraph() != null && !g.hasSetBasedFieldGraph())
+			return g.getLastField().iterator().next().getField().getType();
+		if (g.getFieldGraph() == null && g.getBase() != null)
+			return g.getBase().getType();
+		return null;
+	}
+
+	/**
+	 * Two objects of static types of unrelated classes cannot be the same
+	 * object. Interfaces, arrays and unknown types may alias anything.
+	 */
+	private static boolean mayAlias(Type a, Type b) {
+		if (a == null || b == null || a.equals(b))
+			return true;
+		if (!(a instanceof RefType) || !(b instanceof RefType))
+			return true;
+		SootClass classA = ((RefType) a).getSootClass();
+		SootClass classB = ((RefType) b).getSootClass();
+		if (classA.isInterface() || classB.isInterface() || classA.isPhantom() || classB.isPhantom())
+			return true;
+		FastHierarchy hierarchy = Scene.v().getOrMakeFastHierarchy();
+		return hierarchy.canStoreType(a, b) || hierarchy.canStoreType(b, a);
 	}
 
 	private boolean aliasInContext(Unit start, AccessGraph potentialAlias1, AccessGraph potentialAlias2) {
-		return aliasInContext(start,potentialAlias1, potentialAlias2, new HashSet<Unit>());
+		Object event = FlightRecorderEvents.beginAliasInContext();
+		Set<Unit> visited = new HashSet<Unit>();
+		boolean res = aliasInContext(start,potentialAlias1, potentialAlias2, visited);
+		FlightRecorderEvents.endAliasInContext(event, start, potentialAlias1, potentialAlias2, visited.size(), res);
+		return res;
 	}
 
 	Map<CacheKey, Boolean> cache = new HashMap<>();
@@ -160,31 +489,35 @@ class PerStatementPathEdges {
 	
 	public void registerPointOfIndirectionAt(PointOfIndirection poi, AliasCallback callback) {
 		Pair<Unit, AccessGraph> aliasTarget = poi.getTarget();
-		if (poisToCallback.put(poi, callback))
-			executeCallback(aliasTarget, poi, callback);
-		if (pois.add(poi)) {
-			if (targetToPOI.put(aliasTarget, poi)) {
-				poi.sendBackward();
+		boolean sendBackward = false;
+		poiLock.lock();
+		try {
+			boolean newPoi = pois.add(poi);
+			if (poisToCallback.put(poi, callback))
+				executeCallback(aliasTarget, poi, callback);
+			if (newPoi) {
+				sendBackward = targetToPOI.put(aliasTarget, poi);
 			}
-
+		} finally {
+			poiLock.unlock();
 		}
+		if (sendBackward)
+			poi.sendBackward();
 	}
 
 	private void executeCallback(Pair<Unit, AccessGraph> aliasTarget, PointOfIndirection poi, AliasCallback cb) {
-		for (Pair<Unit, AccessGraph> origin : reversePathEdges.get(aliasTarget)) {
-			for (Pair<Unit, AccessGraph> aliases : forwardPathEdges.get(origin)) {
-				cb.newAliasEncountered(poi, aliases.getO2(),origin);
+		for (Pair<Unit, AccessGraph> origin : startsOf(aliasTarget)) {
+			for (Pair<Unit, AccessGraph> aliases : targetsOf(origin)) {
+				newAliasEncountered(cb, poi, aliases.getO2(),origin);
 			}
 			if (!origin.getO2().hasAllocationSite()) {
 				// TODO Check all existing path edges with no origin if they
 				// alias.
-				for (Pair<Unit, AccessGraph> existingPathEdgeOrigin : forwardPathEdges.keySet()) {
-					if (!existingPathEdgeOrigin.getO2().hasNullAllocationSite()) {
-						if (!aliasInContext(origin.getO1(), origin.getO2(), existingPathEdgeOrigin.getO2()))
-							continue;
-						for(Pair<Unit,AccessGraph> target : forwardPathEdges.get(existingPathEdgeOrigin)){
-							cb.newAliasEncountered(poi, target.getO2(),existingPathEdgeOrigin);
-						}
+				for (Pair<Unit, AccessGraph> existingPathEdgeOrigin : candidateOrigins(origin.getO2())) {
+					if (!aliasInContext(origin.getO1(), origin.getO2(), existingPathEdgeOrigin.getO2()))
+						continue;
+					for(Pair<Unit,AccessGraph> target : targetsOf(existingPathEdgeOrigin)){
+						newAliasEncountered(cb, poi, target.getO2(),existingPathEdgeOrigin);
 					}
 				}
 			}
@@ -192,26 +525,25 @@ class PerStatementPathEdges {
 	}
 
 	private void registerPOIWithTarget(Pair<Unit, AccessGraph> aliasTarget, PointOfIndirection poi) {
-		for (Pair<Unit, AccessGraph> origin : reversePathEdges.get(aliasTarget)) {
+		for (Pair<Unit, AccessGraph> origin : startsOf(aliasTarget)) {
 			if (originToPOI.put(origin, poi)) {
-				for (Pair<Unit, AccessGraph> aliases : forwardPathEdges.get(origin)) {
+				for (Pair<Unit, AccessGraph> aliases : targetsOf(origin)) {
 					for (AliasCallback cb : poisToCallback.get(poi)) {
-						cb.newAliasEncountered(poi, aliases.getO2(),origin);
+						newAliasEncountered(cb, poi, aliases.getO2(),origin);
 					}
 				}
 			}
 			if (!origin.getO2().hasAllocationSite()) {
-				parameterOriginToPOI.put(origin, poi);
+				if (!origin.getO2().hasSetBasedFieldGraph())
+					parameterOriginsOfType(typeOf(origin.getO2())).put(origin.getO2(), poi);
 				// TODO Check all existing path edges with no origin if they
 				// alias.
-				for (Pair<Unit, AccessGraph> existingPathEdgeOrigin : forwardPathEdges.keySet()) {
-					if (!existingPathEdgeOrigin.getO2().hasNullAllocationSite()) {
-						if (!aliasInContext(origin.getO1(), origin.getO2(), existingPathEdgeOrigin.getO2()))
-							continue;
-						for (AliasCallback cb : poisToCallback.get(poi)) {
-							for(Pair<Unit,AccessGraph> target : forwardPathEdges.get(existingPathEdgeOrigin)){
-								cb.newAliasEncountered(poi, target.getO2(),existingPathEdgeOrigin);
-							}
+				for (Pair<Unit, AccessGraph> existingPathEdgeOrigin : candidateOrigins(origin.getO2())) {
+					if (!aliasInContext(origin.getO1(), origin.getO2(), existingPathEdgeOrigin.getO2()))
+						continue;
+					for (AliasCallback cb : poisToCallback.get(poi)) {
+						for(Pair<Unit,AccessGraph> target : targetsOf(existingPathEdgeOrigin)){
+							newAliasEncountered(cb, poi, target.getO2(),existingPathEdgeOrigin);
 						}
 					}
 				}
@@ -219,6 +551,21 @@ class PerStatementPathEdges {
 		}
 	}
 
+	private void newAliasEncountered(AliasCallback cb, PointOfIndirection poi, AccessGraph alias,
+			Pair<Unit, AccessGraph> origin) {
+		context.getMetrics().callbackInvoked();
+		cb.newAliasEncountered(poi, alias, origin);
+	}
+
+	private Multimap<AccessGraph, PointOfIndirection> parameterOriginsOfType(Type type) {
+		Multimap<AccessGraph, PointOfIndirection> origins = parameterOriginToPOI.get(type);
+		if (origins == null) {
+			origins = HashMultimap.create();
+			parameterOriginToPOI.put(type, origins);
+		}
+		return origins;
+	}
+
 	Multimap<Pair<Unit, AccessGraph>, AccessGraph> getResultsAtStmtContainingValue(Unit stmt, AccessGraph fact,
 			Set<Pair<Unit, AccessGraph>> visited) {
 		Pair<Unit, AccessGraph> visit = new Pair<Unit, AccessGraph>(stmt, fact);
@@ -228,13 +575,11 @@ class PerStatementPathEdges {
 		visited.add(visit);
 		Multimap<Pair<Unit, AccessGraph>, AccessGraph> pathEdges = HashMultimap.create();
 		Pair<Unit, AccessGraph> o = new Pair<>(stmt, fact);
-		if (!reversePathEdges.containsKey(o))
+		Collection<Pair<Unit, AccessGraph>> matchingStarts = startsOf(o);
+		if (matchingStarts.isEmpty())
 			return HashMultimap.create();
-
-		Collection<Pair<Unit, AccessGraph>> matchingStarts = new HashSet<>();
-		matchingStarts = reversePathEdges.get(o);
 		for (Pair<Unit, AccessGraph> start : matchingStarts) {
-			Collection<Pair<Unit, AccessGraph>> fwPair = forwardPathEdges.get(start);
+			Collection<Pair<Unit, AccessGraph>> fwPair = targetsOf(start);
 			for (Pair<Unit, AccessGraph> target : fwPair) {
 				pathEdges.put(start, target.getO2());
 			}
@@ -256,8 +601,8 @@ class PerStatementPathEdges {
 									callSite, callee);
 							for (AccessGraph wihinCalleeFact : withinCalleeFacts) {
 
-								Collection<Pair<Unit, AccessGraph>> fwPair = forwardPathEdges
-										.get(new Pair<Unit, AccessGraph>(pathEdgeStart, wihinCalleeFact));
+								Collection<Pair<Unit, AccessGraph>> fwPair = targetsOf(
+										new Pair<Unit, AccessGraph>(pathEdgeStart, wihinCalleeFact));
 								for (Pair<Unit, AccessGraph> target : fwPair) {
 									out.put(aliasEntry.getKey(), target.getO2());
 								}
@@ -275,20 +620,99 @@ class PerStatementPathEdges {
 		return out;
 	}
 
+	/**
+	 * @return The start nodes of the path edges with the given target node.
+	 */
+	private Collection<Pair<Unit, AccessGraph>> startsOf(Pair<Unit, AccessGraph> targetNode) {
+		int fact = factIds.existingIdOf(targetNode.getO2());
+		if (fact == 0)
+			return Collections.emptyList();
+		long[] starts;
+		lock();
+		try {
+			LongHashSet set = reversePathEdges.get(fact);
+			if (set == null)
+				return Collections.emptyList();
+			starts = set.toArray();
+		} finally {
+			unlock();
+		}
+		List<Pair<Unit, AccessGraph>> out = new ArrayList<>(starts.length);
+		for (long start : starts)
+			out.add(startNodeOf(start));
+		return out;
+	}
+
+	/**
+	 * @return The target nodes of the path edges with the given start node.
+	 */
+	private Collection<Pair<Unit, AccessGraph>> targetsOf(Pair<Unit, AccessGraph> startNode) {
+		int fact = factIds.existingIdOf(startNode.getO2());
+		if (fact == 0)
+			return Collections.emptyList();
+		long start = startKey(startNode.getO1(), fact);
+		int[] targets;
+		lock();
+		try {
+			IntHashSet set = forwardPathEdges.get(start);
+			if (set == null)
+				return Collections.emptyList();
+			targets = set.toArray();
+		} finally {
+			unlock();
+		}
+		List<Pair<Unit, AccessGraph>> out = new ArrayList<>(targets.length);
+		for (int target : targets)
+			out.add(new Pair<Unit, AccessGraph>(stmt, factIds.graphOf(target)));
+		return out;
+	}
+
+	/**
+	 * @return The start nodes of all path edges.
+	 */
+	private Collection<Pair<Unit, AccessGraph>> origins() {
+		long[] starts;
+		lock();
+		try {
+			starts = forwardPathEdges.keys();
+		} finally {
+			unlock();
+		}
+		List<Pair<Unit, AccessGraph>> out = new ArrayList<>(starts.length);
+		for (long start : starts)
+			out.add(startNodeOf(start));
+		return out;
+	}
+
 	boolean hasAlreadyProcessed(IPathEdge<Unit, AccessGraph> pe) {
-		if (processedPathEdges.contains(pe))
-			return true;
-		return false;
+		int source = factIds.existingIdOf(pe.factAtSource());
+		int target = factIds.existingIdOf(pe.factAtTarget());
+		if (source == 0 || target == 0)
+			return false;
+		long start = startKey(pe.getStart(), source);
+		lock();
+		try {
+			IntHashSet targets = forwardPathEdges.get(start);
+			return targets != null && targets.contains(target);
+		} finally {
+			unlock();
+		}
 	}
 
 	int size() {
-		return forwardPathEdges.size();
+		lock();
+		try {
+			return pathEdgeCount;
+		} finally {
+			unlock();
+		}
 	}
 
 	void groupByStartUnit() {
-		for (Pair<Unit, AccessGraph> pe : forwardPathEdges.keySet()) {
-			System.out.println(pe + " :: " + forwardPathEdges.get(pe).size());
-			prettyPrint(forwardPathEdges.get(pe));
+		for (Pair<Unit, AccessGraph> pe : origins()) {
+			Collection<Pair<Unit, AccessGraph>> targets = targetsOf(pe);
+			System.out.println(pe + " :: " + targets.size());
+			prettyPrint(targets);
 		}
 	}
 
@@ -310,15 +734,4 @@ class PerStatementPathEdges {
 
 		}
 	}
-
-	void clear() {
-		forwardPathEdges.clear();
-		reversePathEdges.clear();
-		processedPathEdges.clear();
-
-		forwardPathEdges = null;
-		reversePathEdges = null;
-		processedPathEdges = null;
-	}
-
 }
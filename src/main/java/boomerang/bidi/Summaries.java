@@ -2,8 +2,8 @@ package boomerang.bidi;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import boomerang.BoomerangContext;
 import boomerang.accessgraph.AccessGraph;
@@ -16,7 +16,7 @@ import soot.Unit;
 
 public class Summaries implements ISummaries<Unit, SootMethod, AccessGraph> {
 	private BoomerangContext context;
-	private Map<SootMethod, IPerMethodSummary> methodToStartFact = new HashMap<>();
+	private Map<SootMethod, IPerMethodSummary> methodToStartFact = new ConcurrentHashMap<>();
 
 	public Summaries(BoomerangContext c){
 		this.context = c;
@@ -51,8 +51,10 @@ public class Summaries implements ISummaries<Unit, SootMethod, AccessGraph> {
 	private IPerMethodSummary getOrCreate(SootMethod m){
 		IPerMethodSummary perStartFactSummary = methodToStartFact.get(m);
 		if(perStartFactSummary == null){
-      perStartFactSummary = new PerMethodSummary();
-			methodToStartFact.put(m, perStartFactSummary);
+			perStartFactSummary = new PerMethodSummary();
+			IPerMethodSummary existing = methodToStartFact.putIfAbsent(m, perStartFactSummary);
+			if(existing != null)
+				return existing;
 		}
 		return perStartFactSummary;
 	}
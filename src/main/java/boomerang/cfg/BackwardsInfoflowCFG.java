@@ -13,7 +13,7 @@ public class BackwardsInfoflowCFG extends ExtendedICFG {
 	private final IExtendedICFG baseCFG;
 	
 	public BackwardsInfoflowCFG(IExtendedICFG baseCFG) {
-		super(new BackwardsInterproceduralCFG(baseCFG));
+		super(new BackwardsInterproceduralCFG(baseCFG), baseCFG.getNumbering());
 		this.baseCFG = baseCFG;
 	}
 	
@@ -11,7 +11,6 @@ package boomerang.cfg;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,8 +22,6 @@ import com.google.common.cache.LoadingCache;
 import boomerang.preanalysis.FieldPreanalysis;
 import heros.solver.IDESolver;
 import soot.Local;
-import soot.MethodOrMethodContext;
-import soot.Scene;
 import soot.SootField;
 import soot.SootMethod;
 import soot.Type;
@@ -36,13 +33,10 @@ import soot.jimple.FieldRef;
 import soot.jimple.Jimple;
 import soot.jimple.StaticFieldRef;
 import soot.jimple.Stmt;
-import soot.jimple.toolkits.callgraph.Edge;
-import soot.jimple.toolkits.callgraph.ReachableMethods;
 import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
 import soot.toolkits.graph.DirectedGraph;
 import soot.toolkits.graph.MHGPostDominatorsFinder;
-import soot.util.queue.QueueReader;
 
 /**
  * Interprocedural control-flow graph for the infoflow solver
@@ -63,6 +57,7 @@ public class ExtendedICFG implements IExtendedICFG {
 	private final Set<SootMethod> IGNORED_METHODS = new HashSet<>();
 
 	protected final BiDiInterproceduralCFG<Unit, SootMethod> delegate;
+	private final UnitNumbering numbering;
 
 
 	public ExtendedICFG() {
@@ -73,7 +68,17 @@ public class ExtendedICFG implements IExtendedICFG {
 	}
 
 	public ExtendedICFG(BiDiInterproceduralCFG<Unit, SootMethod> delegate) {
+		this(delegate, null);
+	}
+
+	/**
+	 * @param numbering
+	 *            The numbering to share, <code>null</code> to number the units
+	 *            of this graph.
+	 */
+	protected ExtendedICFG(BiDiInterproceduralCFG<Unit, SootMethod> delegate, UnitNumbering numbering) {
 		this.delegate = delegate;
+		this.numbering = (numbering == null ? new UnitNumbering(delegate) : numbering);
 		preanalysis();
 	}
 
@@ -83,10 +88,8 @@ public class ExtendedICFG implements IExtendedICFG {
 	}
 
 	private void selectSpecialMethods() {
-		ReachableMethods reachableMethods = Scene.v().getReachableMethods();
-		QueueReader<MethodOrMethodContext> listener = reachableMethods.listener();
-		while (listener.hasNext()) {
-			SootMethod method = listener.next().method();
+		for (int i = 0; i < numbering.methodCount(); i++) {
+			SootMethod method = numbering.methodOf(i);
 			if (method.getSubSignature().equals("java.lang.String toString()")) {
 				METHODS_TO_STRING.add(method);
 				IGNORED_METHODS.add(method);
@@ -107,6 +110,11 @@ public class ExtendedICFG implements IExtendedICFG {
 		return IGNORED_METHODS.contains(method);
 	}
 
+	@Override
+	public UnitNumbering getNumbering() {
+		return numbering;
+	}
+
 
 	// delegate methods follow
 
@@ -259,9 +267,8 @@ public class ExtendedICFG implements IExtendedICFG {
 			}
 
 			if (((Stmt) u).containsInvokeExpr())
-				for (Iterator<Edge> edgeIt = Scene.v().getCallGraph().edgesOutOf(u); edgeIt.hasNext();) {
-					Edge e = edgeIt.next();
-					if (isStaticFieldUsed(e.getTgt().method(), variable, runList, readOnly))
+				for (SootMethod callee : getCalleesOfCallAt(u)) {
+					if (isStaticFieldUsed(callee, variable, runList, readOnly))
 						return true;
 				}
 		}
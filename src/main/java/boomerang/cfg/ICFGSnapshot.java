@@ -0,0 +1,386 @@
+package boomerang.cfg;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import soot.Body;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+
+/**
+ * A binary snapshot of an interprocedural control-flow graph and the call
+ * graph it is built on. The snapshot stores the methods of the graph (by
+ * signature) in the order of their {@link UnitNumbering}, the units of each
+ * method (by their index in the body), the successors and predecessors of each
+ * unit, the callees and return sites of each call site, and the callers, start
+ * points and end points of each method.
+ *
+ * A snapshot is written once with {@link #write(IExtendedICFG, File, String)}
+ * and afterwards read with {@link #open(File, String)}. The file is mapped into
+ * memory and the edges are served from the mapping, neither the call graph nor
+ * the control-flow graph are built again. As units cannot be stored, the
+ * classes are loaded and the bodies of the methods are retrieved on
+ * {@link #open(File, String)}. Body transformations applied before the
+ * snapshot was written (e.g. by
+ * {@link boomerang.preanalysis.PreparationTransformer}) must be applied again
+ * before {@link #icfg()} is called, the bodies are checked against the unit
+ * counts and the hashes of the unit strings stored in the snapshot.
+ *
+ * @author spaeth
+ *
+ */
+public class ICFGSnapshot {
+	private static final int MAGIC = 0x424d4347;
+	private static final int VERSION = 2;
+
+	static final byte CALL = 1;
+	static final byte EXIT = 2;
+	static final byte START_POINT = 4;
+	static final byte RETURN_SITE = 8;
+
+	private final SootMethod[] methods;
+	private final int[] firstUnit;
+	private final int[] unitCount;
+	private final long[] bodyHash;
+	private final int units;
+	private final byte[] flags;
+	private final Adjacency succs;
+	private final Adjacency preds;
+	private final Adjacency callees;
+	private final Adjacency returnSites;
+	private final Adjacency callers;
+	private final Adjacency startPoints;
+	private final Adjacency endPoints;
+	private IExtendedICFG icfg;
+
+	private ICFGSnapshot(ByteBuffer buffer, String fingerprint, File file) throws IOException {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException(file + " is no control-flow graph snapshot of this version");
+		String snapshotFingerprint = readString(buffer);
+		if (!snapshotFingerprint.equals(fingerprint))
+			throw new IOException(file + " is a snapshot of " + snapshotFingerprint + ", not of " + fingerprint);
+		int methodCount = buffer.getInt();
+		units = buffer.getInt();
+		methods = new SootMethod[methodCount];
+		firstUnit = new int[methodCount];
+		unitCount = new int[methodCount];
+		bodyHash = new long[methodCount];
+		int first = 0;
+		for (int m = 0; m < methodCount; m++) {
+			String signature = readString(buffer);
+			firstUnit[m] = first;
+			unitCount[m] = buffer.getInt();
+			bodyHash[m] = buffer.getLong();
+			methods[m] = resolve(signature, unitCount[m] > 0);
+			first += unitCount[m];
+		}
+		flags = new byte[units];
+		buffer.get(flags);
+		succs = new Adjacency(buffer, units);
+		preds = new Adjacency(buffer, units);
+		callees = new Adjacency(buffer, units);
+		returnSites = new Adjacency(buffer, units);
+		callers = new Adjacency(buffer, methodCount);
+		startPoints = new Adjacency(buffer, methodCount);
+		endPoints = new Adjacency(buffer, methodCount);
+	}
+
+	/**
+	 * Maps the snapshot into memory, loads the classes of its methods and
+	 * retrieves their bodies. The scene must be set up (class path, options)
+	 * before.
+	 *
+	 * @param fingerprint
+	 *            Identifies the analyzed program, the snapshot must have been
+	 *            written with the same fingerprint.
+	 * @throws IOException
+	 *             If the file cannot be read or is a snapshot of another
+	 *             program.
+	 */
+	public static ICFGSnapshot open(File file, String fingerprint) throws IOException {
+		try (RandomAccessFile f = new RandomAccessFile(file, "r"); FileChannel channel = f.getChannel()) {
+			// The mapping stays valid after the channel is closed.
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ICFGSnapshot(buffer, fingerprint, file);
+		}
+	}
+
+	/**
+	 * @return The control-flow graph served from the snapshot.
+	 * @throws IllegalStateException
+	 *             If a body does not match the snapshot.
+	 */
+	public synchronized IExtendedICFG icfg() {
+		if (icfg == null) {
+			SnapshotICFG delegate = new SnapshotICFG(this);
+			icfg = new ExtendedICFG(delegate, delegate.getNumbering());
+		}
+		return icfg;
+	}
+
+	SootMethod[] methods() {
+		return methods;
+	}
+
+	int firstUnitOf(int method) {
+		return firstUnit[method];
+	}
+
+	int unitCountOf(int method) {
+		return unitCount[method];
+	}
+
+	long bodyHashOf(int method) {
+		return bodyHash[method];
+	}
+
+	int units() {
+		return units;
+	}
+
+	boolean is(int unit, byte flag) {
+		return (flags[unit] & flag) != 0;
+	}
+
+	Adjacency succs() {
+		return succs;
+	}
+
+	Adjacency preds() {
+		return preds;
+	}
+
+	Adjacency callees() {
+		return callees;
+	}
+
+	Adjacency returnSites() {
+		return returnSites;
+	}
+
+	Adjacency callers() {
+		return callers;
+	}
+
+	Adjacency startPoints() {
+		return startPoints;
+	}
+
+	Adjacency endPoints() {
+		return endPoints;
+	}
+
+	/**
+	 * @return A 64-bit FNV-1a hash of the strings of the units of the body, in
+	 *         the order of the body.
+	 */
+	static long hashOf(Body body) {
+		long hash = 0xcbf29ce484222325L;
+		for (Unit u : body.getUnits()) {
+			String s = u.toString();
+			for (int i = 0; i < s.length(); i++) {
+				hash ^= s.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+			// Separates the units, such that moving text between units changes
+			// the hash.
+			hash ^= '\n';
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static SootMethod resolve(String signature, boolean hasBody) throws IOException {
+		String className = signature.substring(1, signature.indexOf(':'));
+		Scene.v().forceResolve(className, SootClass.BODIES);
+		if (!Scene.v().containsMethod(signature))
+			throw new IOException("The snapshot is outdated, " + signature + " does not exist");
+		SootMethod method = Scene.v().getMethod(signature);
+		if (hasBody)
+			method.retrieveActiveBody();
+		return method;
+	}
+
+	/**
+	 * Writes a snapshot of the control-flow graph. The methods of the
+	 * {@link UnitNumbering} of the graph and all methods reachable from them by
+	 * a call are stored.
+	 *
+	 * @param fingerprint
+	 *            Identifies the analyzed program, see
+	 *            {@link #open(File, String)}.
+	 */
+	public static void write(IExtendedICFG icfg, File file, String fingerprint) throws IOException {
+		UnitNumbering numbering = icfg.getNumbering();
+		List<SootMethod> methods = new ArrayList<>();
+		Map<SootMethod, Integer> methodIds = new HashMap<>();
+		for (int m = 0; m < numbering.methodCount(); m++)
+			add(numbering.methodOf(m), methods, methodIds);
+		List<Unit> units = new ArrayList<>();
+		Map<Unit, Integer> unitIds = new HashMap<>();
+		// Callees not numbered yet are appended and visited by the same loop.
+		for (int m = 0; m < methods.size(); m++) {
+			SootMethod method = methods.get(m);
+			if (!method.hasActiveBody())
+				continue;
+			for (Unit u : method.getActiveBody().getUnits()) {
+				unitIds.put(u, units.size());
+				units.add(u);
+				if (icfg.isCallStmt(u))
+					for (SootMethod callee : icfg.getCalleesOfCallAt(u))
+						add(callee, methods, methodIds);
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, fingerprint);
+			out.writeInt(methods.size());
+			out.writeInt(units.size());
+			for (SootMethod method : methods) {
+				writeString(out, method.getSignature());
+				boolean body = method.hasActiveBody();
+				out.writeInt(body ? method.getActiveBody().getUnits().size() : 0);
+				out.writeLong(body ? hashOf(method.getActiveBody()) : 0);
+			}
+			for (Unit u : units) {
+				int flags = 0;
+				if (icfg.isCallStmt(u))
+					flags |= CALL;
+				if (icfg.isExitStmt(u))
+					flags |= EXIT;
+				if (icfg.isStartPoint(u))
+					flags |= START_POINT;
+				if (icfg.isReturnSite(u))
+					flags |= RETURN_SITE;
+				out.writeByte(flags);
+			}
+			List<List<Integer>> succs = new ArrayList<>();
+			List<List<Integer>> preds = new ArrayList<>();
+			List<List<Integer>> callees = new ArrayList<>();
+			List<List<Integer>> returnSites = new ArrayList<>();
+			for (Unit u : units) {
+				succs.add(ids(icfg.getSuccsOf(u), unitIds));
+				preds.add(ids(icfg.getPredsOf(u), unitIds));
+				boolean call = icfg.isCallStmt(u);
+				callees.add(ids(call ? icfg.getCalleesOfCallAt(u) : null, methodIds));
+				returnSites.add(ids(call ? icfg.getReturnSitesOfCallAt(u) : null, unitIds));
+			}
+			Adjacency.write(out, succs);
+			Adjacency.write(out, preds);
+			Adjacency.write(out, callees);
+			Adjacency.write(out, returnSites);
+			List<List<Integer>> callers = new ArrayList<>();
+			List<List<Integer>> startPoints = new ArrayList<>();
+			List<List<Integer>> endPoints = new ArrayList<>();
+			for (SootMethod method : methods) {
+				boolean body = method.hasActiveBody();
+				callers.add(ids(icfg.getCallersOf(method), unitIds));
+				startPoints.add(ids(body ? icfg.getStartPointsOf(method) : null, unitIds));
+				endPoints.add(ids(body ? icfg.getEndPointsOf(method) : null, unitIds));
+			}
+			Adjacency.write(out, callers);
+			Adjacency.write(out, startPoints);
+			Adjacency.write(out, endPoints);
+		}
+	}
+
+	private static void add(SootMethod method, List<SootMethod> methods, Map<SootMethod, Integer> methodIds) {
+		if (!methodIds.containsKey(method)) {
+			methodIds.put(method, methods.size());
+			methods.add(method);
+		}
+	}
+
+	/**
+	 * @return The ids of the elements, elements without an id (e.g. callers
+	 *         within unreachable methods) are omitted.
+	 */
+	private static <T> List<Integer> ids(Collection<T> elements, Map<T, Integer> ids) {
+		List<Integer> res = new ArrayList<>();
+		if (elements == null)
+			return res;
+		for (T e : elements) {
+			Integer id = ids.get(e);
+			if (id != null)
+				res.add(id);
+		}
+		return res;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Adjacency lists in compressed sparse row format: the ids adjacent to
+	 * element <code>i</code> are stored from <code>offsets[i]</code> to
+	 * <code>offsets[i + 1]</code> (exclusive) in <code>targets</code>. Both
+	 * arrays are views of the mapped file.
+	 */
+	static class Adjacency {
+		private final IntBuffer offsets;
+		private final IntBuffer targets;
+
+		private Adjacency(ByteBuffer buffer, int size) {
+			offsets = ints(buffer, size + 1);
+			targets = ints(buffer, offsets.get(size));
+		}
+
+		int size(int element) {
+			return offsets.get(element + 1) - offsets.get(element);
+		}
+
+		int get(int element, int index) {
+			return targets.get(offsets.get(element) + index);
+		}
+
+		private static IntBuffer ints(ByteBuffer buffer, int count) {
+			ByteBuffer slice = buffer.slice();
+			// Called on Buffer, the covariant overrides of ByteBuffer do not exist
+			// on Java 8.
+			((Buffer) slice).limit(count * 4);
+			((Buffer) buffer).position(buffer.position() + count * 4);
+			return slice.asIntBuffer();
+		}
+
+		private static void write(DataOutputStream out, List<List<Integer>> lists) throws IOException {
+			int offset = 0;
+			out.writeInt(offset);
+			for (List<Integer> list : lists) {
+				offset += list.size();
+				out.writeInt(offset);
+			}
+			for (List<Integer> list : lists)
+				for (int id : list)
+					out.writeInt(id);
+		}
+	}
+}
@@ -27,4 +27,9 @@ public interface IExtendedICFG extends BiDiInterproceduralCFG<Unit, SootMethod>
 
 	public boolean isIgnoredMethod(SootMethod callee);
 
+	/**
+	 * @return The dense numbering of the units and methods of this graph.
+	 */
+	public UnitNumbering getNumbering();
+
 }
@@ -0,0 +1,291 @@
+package boomerang.cfg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import boomerang.cfg.ICFGSnapshot.Adjacency;
+import soot.Body;
+import soot.SootMethod;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.jimple.IdentityStmt;
+import soot.jimple.ParameterRef;
+import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
+import soot.toolkits.graph.DirectedGraph;
+
+/**
+ * A control-flow graph answering all queries from an {@link ICFGSnapshot}. The
+ * units of the snapshot are bound to the units of the bodies on construction,
+ * the methods and units are numbered in the order of the snapshot. Units which
+ * are not part of the snapshot have no edges.
+ *
+ * @author spaeth
+ *
+ */
+class SnapshotICFG implements BiDiInterproceduralCFG<Unit, SootMethod> {
+	private final ICFGSnapshot snapshot;
+	private final SootMethod[] methods;
+	private final Unit[] units;
+	private final int[] unitToMethod;
+	private final Map<Unit, Integer> unitIds;
+	private final Map<SootMethod, Integer> methodIds = new HashMap<>();
+	private final UnitNumbering numbering;
+	private final Map<SootMethod, DirectedGraph<Unit>> unitGraphs = new ConcurrentHashMap<>();
+
+	SnapshotICFG(ICFGSnapshot snapshot) {
+		this.snapshot = snapshot;
+		this.methods = snapshot.methods();
+		this.units = new Unit[snapshot.units()];
+		this.unitToMethod = new int[units.length];
+		this.unitIds = new HashMap<>(units.length * 2);
+		for (int m = 0; m < methods.length; m++) {
+			SootMethod method = methods[m];
+			methodIds.put(method, m);
+			int count = snapshot.unitCountOf(m);
+			if (count == 0)
+				continue;
+			if (!method.hasActiveBody() || method.getActiveBody().getUnits().size() != count
+					|| ICFGSnapshot.hashOf(method.getActiveBody()) != snapshot.bodyHashOf(m))
+				throw new IllegalStateException("The body of " + method + " does not match the snapshot");
+			int u = snapshot.firstUnitOf(m);
+			for (Unit unit : method.getActiveBody().getUnits()) {
+				units[u] = unit;
+				unitToMethod[u] = m;
+				unitIds.put(unit, u++);
+			}
+		}
+		this.numbering = new UnitNumbering(this, Arrays.asList(methods));
+	}
+
+	UnitNumbering getNumbering() {
+		return numbering;
+	}
+
+	private int idOf(Unit u) {
+		Integer id = unitIds.get(u);
+		return (id == null ? -1 : id);
+	}
+
+	private int idOf(SootMethod m) {
+		Integer id = methodIds.get(m);
+		return (id == null ? -1 : id);
+	}
+
+	private boolean is(Unit u, byte flag) {
+		int id = idOf(u);
+		return id >= 0 && snapshot.is(id, flag);
+	}
+
+	private List<Unit> units(Adjacency adjacency, int element) {
+		if (element < 0)
+			return new ArrayList<>();
+		int size = adjacency.size(element);
+		List<Unit> res = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			res.add(units[adjacency.get(element, i)]);
+		return res;
+	}
+
+	@Override
+	public SootMethod getMethodOf(Unit u) {
+		int id = idOf(u);
+		if (id < 0)
+			throw new IllegalArgumentException(u + " is not part of the snapshot");
+		return methods[unitToMethod[id]];
+	}
+
+	@Override
+	public List<Unit> getSuccsOf(Unit u) {
+		return units(snapshot.succs(), idOf(u));
+	}
+
+	@Override
+	public List<Unit> getPredsOf(Unit u) {
+		return units(snapshot.preds(), idOf(u));
+	}
+
+	@Override
+	public List<Unit> getPredsOfCallAt(Unit u) {
+		return getPredsOf(u);
+	}
+
+	@Override
+	public Collection<SootMethod> getCalleesOfCallAt(Unit u) {
+		int id = idOf(u);
+		List<SootMethod> res = new ArrayList<>();
+		if (id < 0)
+			return res;
+		Adjacency callees = snapshot.callees();
+		for (int i = 0; i < callees.size(id); i++)
+			res.add(methods[callees.get(id, i)]);
+		return res;
+	}
+
+	@Override
+	public Collection<Unit> getCallersOf(SootMethod m) {
+		return units(snapshot.callers(), idOf(m));
+	}
+
+	@Override
+	public Collection<Unit> getReturnSitesOfCallAt(Unit u) {
+		return units(snapshot.returnSites(), idOf(u));
+	}
+
+	@Override
+	public Collection<Unit> getStartPointsOf(SootMethod m) {
+		return units(snapshot.startPoints(), idOf(m));
+	}
+
+	@Override
+	public Collection<Unit> getEndPointsOf(SootMethod m) {
+		return units(snapshot.endPoints(), idOf(m));
+	}
+
+	@Override
+	public Set<Unit> getCallsFromWithin(SootMethod m) {
+		Set<Unit> res = new HashSet<>();
+		int method = idOf(m);
+		if (method < 0)
+			return res;
+		int first = snapshot.firstUnitOf(method);
+		for (int u = first; u < first + snapshot.unitCountOf(method); u++)
+			if (snapshot.is(u, ICFGSnapshot.CALL))
+				res.add(units[u]);
+		return res;
+	}
+
+	@Override
+	public boolean isCallStmt(Unit u) {
+		return is(u, ICFGSnapshot.CALL);
+	}
+
+	@Override
+	public boolean isExitStmt(Unit u) {
+		return is(u, ICFGSnapshot.EXIT);
+	}
+
+	@Override
+	public boolean isStartPoint(Unit u) {
+		return is(u, ICFGSnapshot.START_POINT);
+	}
+
+	@Override
+	public boolean isReturnSite(Unit u) {
+		return is(u, ICFGSnapshot.RETURN_SITE);
+	}
+
+	@Override
+	public Set<Unit> allNonCallStartNodes() {
+		Set<Unit> res = new HashSet<>();
+		for (int u = 0; u < units.length; u++)
+			if (!snapshot.is(u, ICFGSnapshot.CALL) && !snapshot.is(u, ICFGSnapshot.START_POINT))
+				res.add(units[u]);
+		return res;
+	}
+
+	@Override
+	public Set<Unit> allNonCallEndNodes() {
+		Set<Unit> res = new HashSet<>();
+		for (int u = 0; u < units.length; u++)
+			if (!snapshot.is(u, ICFGSnapshot.CALL) && !snapshot.is(u, ICFGSnapshot.EXIT))
+				res.add(units[u]);
+		return res;
+	}
+
+	@Override
+	public boolean isFallThroughSuccessor(Unit u, Unit succ) {
+		if (!u.fallsThrough())
+			return false;
+		Body body = getMethodOf(u).getActiveBody();
+		return body.getUnits().getSuccOf(u) == succ;
+	}
+
+	@Override
+	public boolean isBranchTarget(Unit u, Unit succ) {
+		if (!u.branches())
+			return false;
+		for (UnitBox box : u.getUnitBoxes())
+			if (box.getUnit() == succ)
+				return true;
+		return false;
+	}
+
+	@Override
+	public List<Value> getParameterRefs(SootMethod m) {
+		Value[] refs = new Value[m.getParameterCount()];
+		for (Unit u : m.getActiveBody().getUnits()) {
+			if (u instanceof IdentityStmt) {
+				Value right = ((IdentityStmt) u).getRightOp();
+				if (right instanceof ParameterRef)
+					refs[((ParameterRef) right).getIndex()] = right;
+			}
+		}
+		return Arrays.asList(refs);
+	}
+
+	@Override
+	public DirectedGraph<Unit> getOrCreateUnitGraph(SootMethod m) {
+		DirectedGraph<Unit> graph = unitGraphs.get(m);
+		if (graph == null) {
+			graph = new MethodGraph(idOf(m));
+			unitGraphs.put(m, graph);
+		}
+		return graph;
+	}
+
+	@Override
+	public boolean isReachable(Unit u) {
+		return unitIds.containsKey(u);
+	}
+
+	/**
+	 * The intraprocedural graph of a method, backed by the snapshot.
+	 */
+	private class MethodGraph implements DirectedGraph<Unit> {
+		private final int method;
+
+		MethodGraph(int method) {
+			this.method = method;
+		}
+
+		@Override
+		public List<Unit> getHeads() {
+			return units(snapshot.startPoints(), method);
+		}
+
+		@Override
+		public List<Unit> getTails() {
+			return units(snapshot.endPoints(), method);
+		}
+
+		@Override
+		public List<Unit> getSuccsOf(Unit u) {
+			return SnapshotICFG.this.getSuccsOf(u);
+		}
+
+		@Override
+		public List<Unit> getPredsOf(Unit u) {
+			return SnapshotICFG.this.getPredsOf(u);
+		}
+
+		@Override
+		public int size() {
+			return (method < 0 ? 0 : snapshot.unitCountOf(method));
+		}
+
+		@Override
+		public Iterator<Unit> iterator() {
+			int first = (method < 0 ? 0 : snapshot.firstUnitOf(method));
+			return Arrays.asList(units).subList(first, first + size()).iterator();
+		}
+	}
+}
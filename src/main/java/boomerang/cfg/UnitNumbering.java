@@ -0,0 +1,190 @@
+package boomerang.cfg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import soot.MethodOrMethodContext;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
+import soot.util.queue.QueueReader;
+
+/**
+ * Dense numbering of the units and methods of an interprocedural control-flow
+ * graph. The units of all reachable methods are numbered once on construction.
+ * The units of a method are numbered consecutively, hence the units of a method
+ * with number <code>m</code> are numbered from {@link #firstUnitOf(int)} to
+ * {@link #firstUnitOf(int)} + {@link #unitCountOf(int)} (exclusive). The method
+ * of a unit is stored in an int array and does not require a lookup in the
+ * control-flow graph, the unit of a number is stored in an array as well.
+ *
+ * Units which are not numbered on construction (e.g. of methods that become
+ * reachable later or units added to a body afterwards) are numbered on demand.
+ * Such a unit of an already numbered method is not within the range of its
+ * method.
+ *
+ * @author spaeth
+ *
+ */
+public class UnitNumbering {
+	private final BiDiInterproceduralCFG<Unit, SootMethod> icfg;
+	private final ConcurrentMap<Unit, Integer> unitToNumber = new ConcurrentHashMap<>();
+	private final ConcurrentMap<SootMethod, Integer> methodToNumber = new ConcurrentHashMap<>();
+
+	/**
+	 * The arrays are only written while holding the monitor of this object. A
+	 * number is published through the concurrent maps after the entries it
+	 * refers to have been written, hence readers obtaining a number also see
+	 * the entries.
+	 */
+	private volatile int[] unitToMethod = new int[64];
+	private volatile Unit[] numberToUnit = new Unit[64];
+	private volatile SootMethod[] methods = new SootMethod[16];
+	private volatile int[] firstUnit = new int[16];
+	private volatile int[] unitCount = new int[16];
+	private int units;
+	private volatile int methodCount;
+
+	public UnitNumbering(BiDiInterproceduralCFG<Unit, SootMethod> icfg) {
+		this(icfg, reachableMethods());
+	}
+
+	/**
+	 * Numbers the given methods in iteration order, such that the method
+	 * returned first has number <code>0</code>.
+	 */
+	public UnitNumbering(BiDiInterproceduralCFG<Unit, SootMethod> icfg, Iterable<SootMethod> methods) {
+		this.icfg = icfg;
+		for (SootMethod method : methods)
+			numberOf(method);
+	}
+
+	private static List<SootMethod> reachableMethods() {
+		List<SootMethod> methods = new ArrayList<>();
+		QueueReader<MethodOrMethodContext> listener = Scene.v().getReachableMethods().listener();
+		while (listener.hasNext()) {
+			SootMethod method = listener.next().method();
+			if (method != null)
+				methods.add(method);
+		}
+		return methods;
+	}
+
+	/**
+	 * @return The number of the unit, the unit is numbered if it has no number
+	 *         yet.
+	 */
+	public int numberOf(Unit u) {
+		Integer number = unitToNumber.get(u);
+		if (number != null)
+			return number;
+		return numberLazily(u);
+	}
+
+	/**
+	 * @return The number of the method, the method and its units are numbered
+	 *         if it has no number yet.
+	 */
+	public int numberOf(SootMethod m) {
+		Integer number = methodToNumber.get(m);
+		if (number != null)
+			return number;
+		return numberLazily(m);
+	}
+
+	/**
+	 * @param unitNumber
+	 *            The number of a unit.
+	 * @return The number of the method containing the unit.
+	 */
+	public int methodNumberOf(int unitNumber) {
+		return unitToMethod[unitNumber];
+	}
+
+	public Unit unitOf(int unitNumber) {
+		return numberToUnit[unitNumber];
+	}
+
+	public SootMethod methodOf(int methodNumber) {
+		return methods[methodNumber];
+	}
+
+	/**
+	 * @return The number of the first unit of the method, <code>-1</code> if
+	 *         the method has no body.
+	 */
+	public int firstUnitOf(int methodNumber) {
+		return firstUnit[methodNumber];
+	}
+
+	/**
+	 * @return The number of units of the method which are numbered
+	 *         consecutively.
+	 */
+	public int unitCountOf(int methodNumber) {
+		return unitCount[methodNumber];
+	}
+
+	public int methodCount() {
+		return methodCount;
+	}
+
+	private synchronized int numberLazily(SootMethod m) {
+		Integer number = methodToNumber.get(m);
+		if (number != null)
+			return number;
+		int methodNumber = methodCount;
+		if (methodNumber == methods.length) {
+			int capacity = methods.length * 2;
+			methods = Arrays.copyOf(methods, capacity);
+			firstUnit = Arrays.copyOf(firstUnit, capacity);
+			unitCount = Arrays.copyOf(unitCount, capacity);
+		}
+		methods[methodNumber] = m;
+		firstUnit[methodNumber] = -1;
+		if (m.hasActiveBody()) {
+			int first = units;
+			int count = m.getActiveBody().getUnits().size();
+			growUnits(first + count);
+			firstUnit[methodNumber] = first;
+			unitCount[methodNumber] = count;
+			for (Unit u : m.getActiveBody().getUnits()) {
+				unitToMethod[units] = methodNumber;
+				numberToUnit[units] = u;
+				unitToNumber.put(u, units++);
+			}
+		}
+		methodCount = methodNumber + 1;
+		methodToNumber.put(m, methodNumber);
+		return methodNumber;
+	}
+
+	private synchronized int numberLazily(Unit u) {
+		Integer number = unitToNumber.get(u);
+		if (number != null)
+			return number;
+		SootMethod m = icfg.getMethodOf(u);
+		int methodNumber = numberOf(m);
+		number = unitToNumber.get(u);
+		if (number != null)
+			return number;
+		// A unit added to the body after the method has been numbered.
+		growUnits(units + 1);
+		unitToMethod[units] = methodNumber;
+		numberToUnit[units] = u;
+		unitToNumber.put(u, units);
+		return units++;
+	}
+
+	private void growUnits(int size) {
+		if (size > unitToMethod.length) {
+			int capacity = Math.max(size, unitToMethod.length * 2);
+			unitToMethod = Arrays.copyOf(unitToMethod, capacity);
+			numberToUnit = Arrays.copyOf(numberToUnit, capacity);
+		}
+	}
+}
@@ -23,4 +23,15 @@ public class AllCallersRequester implements
 	public boolean isEntryPointMethod(SootMethod method) {
 		return Scene.v().getEntryPoints().contains(method);
 	}
+
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		// The requester is stateless, all instances behave the same.
+		return obj != null && obj.getClass() == getClass();
+	}
 }
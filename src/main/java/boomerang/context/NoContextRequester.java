@@ -24,4 +24,15 @@ public class NoContextRequester implements IContextRequester {
 		return false;
 	}
 
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		// The requester is stateless, all instances behave the same.
+		return obj != null && obj.getClass() == getClass();
+	}
+
 }
\ No newline at end of file
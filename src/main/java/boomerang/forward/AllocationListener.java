@@ -16,7 +16,7 @@ public abstract class AllocationListener implements IncomingListener<Unit, Acces
 
 	private Pair<Unit, AccessGraph> sourcePair;
 	private BoomerangContext context;
-	private Set<Pair<Unit, AccessGraph>> triggered = Sets.newHashSet();
+	private Set<Pair<Unit, AccessGraph>> triggered = Sets.newConcurrentHashSet();
 
 	public AllocationListener(Pair<Unit,AccessGraph> sourcePair,BoomerangContext context) {
 		this.sourcePair = sourcePair;
@@ -0,0 +1,186 @@
+package boomerang.forward;
+
+import boomerang.AliasFinder;
+import soot.Local;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.CastExpr;
+import soot.jimple.CaughtExceptionRef;
+import soot.jimple.Constant;
+import soot.jimple.IdentityStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.NewExpr;
+import soot.jimple.NullConstant;
+import soot.jimple.StaticFieldRef;
+
+/**
+ * The shape of a statement as seen by the normal flow functions, computed once
+ * per statement. For an assignment both sides are classified into an
+ * {@link Operand} and the locals and fields of the operands are extracted, an
+ * array access is treated as an access of {@link AliasFinder#ARRAY_FIELD}.
+ *
+ * @author spaeth
+ *
+ */
+public class ClassifiedStmt {
+	public enum Kind {
+		/** An identity statement assigning a caught exception. */
+		CAUGHT_EXCEPTION,
+		/** An assignment, see {@link ClassifiedStmt#left()} and {@link ClassifiedStmt#right()}. */
+		ASSIGN,
+		/** Any other statement, the facts flow through unchanged. */
+		OTHER
+	}
+
+	public enum Operand {
+		LOCAL, INSTANCE_FIELD, ARRAY, STATIC_FIELD, CAST, NEW, CONSTANT, NULL_CONSTANT, OTHER
+	}
+
+	private final Unit unit;
+	private final SootMethod method;
+	private final Kind kind;
+	private Operand left = Operand.OTHER;
+	private Operand right = Operand.OTHER;
+	private Local leftLocal;
+	private Value leftBase;
+	private SootField leftField;
+	private Local rightLocal;
+	private Value rightBase;
+	private SootField rightField;
+	private Local castOp;
+
+	public ClassifiedStmt(Unit unit, SootMethod method) {
+		this.unit = unit;
+		this.method = method;
+		if (unit instanceof IdentityStmt && ((IdentityStmt) unit).getRightOp() instanceof CaughtExceptionRef) {
+			kind = Kind.CAUGHT_EXCEPTION;
+			Value leftOp = ((IdentityStmt) unit).getLeftOp();
+			if (leftOp instanceof Local)
+				leftLocal = (Local) leftOp;
+		} else if (unit instanceof AssignStmt) {
+			kind = Kind.ASSIGN;
+			classifyLeft(((AssignStmt) unit).getLeftOp());
+			classifyRight(((AssignStmt) unit).getRightOp());
+		} else {
+			kind = Kind.OTHER;
+		}
+	}
+
+	private void classifyLeft(Value leftOp) {
+		if (leftOp instanceof Local) {
+			left = Operand.LOCAL;
+			leftLocal = (Local) leftOp;
+		} else if (leftOp instanceof InstanceFieldRef) {
+			left = Operand.INSTANCE_FIELD;
+			leftBase = ((InstanceFieldRef) leftOp).getBase();
+			leftField = ((InstanceFieldRef) leftOp).getField();
+		} else if (leftOp instanceof ArrayRef) {
+			left = Operand.ARRAY;
+			leftBase = ((ArrayRef) leftOp).getBase();
+			leftField = AliasFinder.ARRAY_FIELD;
+		} else if (leftOp instanceof StaticFieldRef) {
+			left = Operand.STATIC_FIELD;
+			leftField = ((StaticFieldRef) leftOp).getField();
+		}
+	}
+
+	private void classifyRight(Value rightOp) {
+		if (rightOp instanceof Local) {
+			right = Operand.LOCAL;
+			rightLocal = (Local) rightOp;
+		} else if (rightOp instanceof InstanceFieldRef) {
+			right = Operand.INSTANCE_FIELD;
+			rightBase = ((InstanceFieldRef) rightOp).getBase();
+			rightField = ((InstanceFieldRef) rightOp).getField();
+		} else if (rightOp instanceof ArrayRef) {
+			right = Operand.ARRAY;
+			rightBase = ((ArrayRef) rightOp).getBase();
+			rightField = AliasFinder.ARRAY_FIELD;
+		} else if (rightOp instanceof StaticFieldRef) {
+			right = Operand.STATIC_FIELD;
+			rightField = ((StaticFieldRef) rightOp).getField();
+		} else if (rightOp instanceof CastExpr) {
+			right = Operand.CAST;
+			Value op = ((CastExpr) rightOp).getOp();
+			if (op instanceof Local)
+				castOp = (Local) op;
+		} else if (rightOp instanceof NewExpr) {
+			right = Operand.NEW;
+		} else if (rightOp instanceof NullConstant) {
+			right = Operand.NULL_CONSTANT;
+		} else if (rightOp instanceof Constant) {
+			right = Operand.CONSTANT;
+		}
+	}
+
+	public Unit unit() {
+		return unit;
+	}
+
+	public SootMethod method() {
+		return method;
+	}
+
+	public Kind kind() {
+		return kind;
+	}
+
+	public AssignStmt assign() {
+		return (AssignStmt) unit;
+	}
+
+	public Operand left() {
+		return left;
+	}
+
+	public Operand right() {
+		return right;
+	}
+
+	/**
+	 * @return Whether the statement assigns an object allocated by a
+	 *         <code>new</code> expression or a constant.
+	 */
+	public boolean assignsNewOrConstant() {
+		return right == Operand.NEW || right == Operand.CONSTANT || right == Operand.NULL_CONSTANT;
+	}
+
+	/**
+	 * @return The assigned local, or the local of the caught exception.
+	 */
+	public Local leftLocal() {
+		return leftLocal;
+	}
+
+	public Value leftBase() {
+		return leftBase;
+	}
+
+	public SootField leftField() {
+		return leftField;
+	}
+
+	public Local rightLocal() {
+		return rightLocal;
+	}
+
+	public Value rightBase() {
+		return rightBase;
+	}
+
+	public SootField rightField() {
+		return rightField;
+	}
+
+	/**
+	 * @return The local which is cast, <code>null</code> if a constant is
+	 *         cast.
+	 */
+	public Local castOp() {
+		return castOp;
+	}
+}
@@ -3,12 +3,16 @@ package boomerang.forward;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import boomerang.AliasFinder;
 import boomerang.BoomerangContext;
 import boomerang.accessgraph.AccessGraph;
 import boomerang.accessgraph.WrappedSootField;
+import boomerang.forward.ClassifiedStmt.Kind;
+import boomerang.forward.ClassifiedStmt.Operand;
 import boomerang.ifdssolver.FlowFunctions;
 import boomerang.ifdssolver.IFDSSolver.PropagationType;
 import boomerang.ifdssolver.IPathEdge;
@@ -26,242 +30,226 @@ import soot.SootMethod;
 import soot.Type;
 import soot.Unit;
 import soot.Value;
-import soot.jimple.ArrayRef;
 import soot.jimple.AssignStmt;
-import soot.jimple.CastExpr;
-import soot.jimple.CaughtExceptionRef;
-import soot.jimple.Constant;
-import soot.jimple.IdentityStmt;
-import soot.jimple.InstanceFieldRef;
 import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InvokeExpr;
-import soot.jimple.NewExpr;
 import soot.jimple.ReturnStmt;
-import soot.jimple.StaticFieldRef;
 import soot.jimple.Stmt;
 
 public class ForwardFlowFunctions extends AbstractFlowFunctions
 		implements FlowFunctions<Unit, AccessGraph, SootMethod> {
 
+	private final Map<Unit, NormalFlowFunction> normalFlowFunctions = new ConcurrentHashMap<>();
+
 	public ForwardFlowFunctions(BoomerangContext c) {
 		this.context = c;
 	}
 
 	@Override
 	public FlowFunction<AccessGraph> getNormalFlowFunction(final IPathEdge<Unit, AccessGraph> edge, final Unit succ) {
-		final Unit curr = edge.getTarget();
-
-		final SootMethod method = context.icfg.getMethodOf(curr);
-		final Local thisLocal = method.isStatic() ? null : method.getActiveBody().getThisLocal();
+		final NormalFlowFunction function = normalFlowFunction(edge.getTarget());
+		if (!function.needsEdge())
+			return function;
 		return new FlowFunction<AccessGraph>() {
-
 			@Override
 			public Set<AccessGraph> computeTargets(AccessGraph source) {
-				if (AliasFinder.HANDLE_EXCEPTION_FLOW && !source.isStatic() && curr instanceof IdentityStmt) {
-					IdentityStmt identityStmt = (IdentityStmt) curr;
-					if (identityStmt.getRightOp() instanceof CaughtExceptionRef
-							&& identityStmt.getLeftOp() instanceof Local) {
-						Local leftOp = (Local) identityStmt.getLeftOp();
-						// e = d;
-							HashSet<AccessGraph> out = new HashSet<AccessGraph>();
-							out.add(source);
-							out.add(source.deriveWithNewLocal((Local) leftOp));
-							return out;
-					}
-				}
-				assert source.isStatic() || method.getActiveBody().getLocals().contains(source.getBase());
-
-				if(!source.isStatic() && source.getBase() == null)
-					return Collections.emptySet();
-				if (!(curr instanceof AssignStmt)) {
-					return Collections.singleton(source);
-				}
+				return function.computeTargets(source, edge, succ);
+			}
+		};
+	}
 
-				AssignStmt as = (AssignStmt) curr;
-				Value leftOp = as.getLeftOp();
-				Value rightOp = as.getRightOp();
+	private NormalFlowFunction normalFlowFunction(Unit curr) {
+		NormalFlowFunction function = normalFlowFunctions.get(curr);
+		if (function == null) {
+			function = new NormalFlowFunction(new ClassifiedStmt(curr, context.icfg.getMethodOf(curr)));
+			normalFlowFunctions.put(curr, function);
+		}
+		return function;
+	}
 
-				HashSet<AccessGraph> out = new HashSet<AccessGraph>();
+	/**
+	 * The normal flow function of a statement. Only a write of a local to a
+	 * field or an array registers a point of indirection and requires the path
+	 * edge and the successor, all other statements share one instance.
+	 */
+	private class NormalFlowFunction implements FlowFunction<AccessGraph> {
+		private final ClassifiedStmt stmt;
+
+		NormalFlowFunction(ClassifiedStmt stmt) {
+			this.stmt = stmt;
+		}
+
+		boolean needsEdge() {
+			return stmt.right() == Operand.LOCAL
+					&& (stmt.left() == Operand.INSTANCE_FIELD || stmt.left() == Operand.ARRAY);
+		}
+
+		@Override
+		public Set<AccessGraph> computeTargets(AccessGraph source) {
+			return computeTargets(source, null, null);
+		}
+
+		Set<AccessGraph> computeTargets(AccessGraph source, IPathEdge<Unit, AccessGraph> edge, Unit succ) {
+			if (stmt.kind() == Kind.CAUGHT_EXCEPTION && AliasFinder.HANDLE_EXCEPTION_FLOW && !source.isStatic()
+					&& stmt.leftLocal() != null) {
+				// e = d;
+				Set<AccessGraph> out = new HashSet<AccessGraph>();
 				out.add(source);
+				out.add(source.deriveWithNewLocal(stmt.leftLocal()));
+				return out;
+			}
+			assert source.isStatic() || stmt.method().getActiveBody().getLocals().contains(source.getBase());
+
+			if (!source.isStatic() && source.getBase() == null)
+				return Collections.emptySet();
+			if (stmt.kind() != Kind.ASSIGN)
+				return Collections.singleton(source);
+
+			Unit curr = stmt.unit();
+			if (stmt.assignsNewOrConstant()) {
+				// a = new || a = 2
+				if (stmt.left() == Operand.LOCAL && source.baseMatches(stmt.leftLocal()))
+					// source == a.*
+					return Collections.emptySet();
+				// a.f = new || a.f = 2;
+				if (stmt.left() == Operand.INSTANCE_FIELD
+						&& source.baseAndFirstFieldMatches(stmt.leftBase(), stmt.leftField()))
+					// source == a.f.*
+					return Collections.emptySet();
+			}
 
-				if (rightOp instanceof Constant || rightOp instanceof NewExpr) {
-					// a = new || a = 2
-					if (leftOp instanceof Local && source.baseMatches(leftOp))
-						// source == a.*
+			// Allocated on the first target besides the source.
+			Set<AccessGraph> out = null;
+			switch (stmt.left()) {
+			case LOCAL:
+				if (source.baseMatches(stmt.leftLocal())) {
+					if (stmt.right() == Operand.INSTANCE_FIELD
+							&& source.baseAndFirstFieldMatches(stmt.rightBase(), stmt.rightField()))
+						out = addAll(out, source, source.popFirstField());
+					else
 						return Collections.emptySet();
-					// a.f = new || a.f = 2;
-					if (leftOp instanceof InstanceFieldRef) {
-						InstanceFieldRef fr = (InstanceFieldRef) leftOp;
-						Value base = fr.getBase();
-						SootField field = fr.getField();
-						// source == a.f.*
-						if (source.baseAndFirstFieldMatches(base, field))
-							return Collections.emptySet();
-					}
-
-				}
-
-				if (leftOp instanceof Local) {
-					if (source.baseMatches(leftOp)) {
-						if (rightOp instanceof InstanceFieldRef) {
-							InstanceFieldRef fr = (InstanceFieldRef) rightOp;
-							Value base = fr.getBase();
-							SootField field = fr.getField();
-
-							if (source.baseAndFirstFieldMatches(base, field)) {
-								Set<AccessGraph> popFirstField = source.popFirstField();
-								out.addAll(popFirstField);
-							} else {
-								return Collections.emptySet();
-							}
-						} else {
-							return Collections.emptySet();
-						}
-					}
-				} else if (leftOp instanceof InstanceFieldRef) {
-					InstanceFieldRef fr = (InstanceFieldRef) leftOp;
-					Value base = fr.getBase();
-					SootField field = fr.getField();
-					if (!source.isStatic()) {
-						if (source.getBase().equals(base) && source.firstFirstFieldMayMatch(field)) {
-							if (rightOp instanceof Local) {
-								Local local = (Local) rightOp;
-								AccessGraph a = new AccessGraph(local);
-								context.getBackwardSolver().inject(new PathEdge<Unit, AccessGraph>(null, a, curr, a),
-										PropagationType.Normal);
-							}
-						}
-						// Strong update on fields
-						if (source.baseAndFirstFieldMatches(base, field))
-							return Collections.emptySet();
-					}
-				} else if (leftOp instanceof ArrayRef) {
-					ArrayRef fr = (ArrayRef) leftOp;
-					Value base = fr.getBase();
-					if (source.baseMatches(base) && source.firstFirstFieldMayMatch(AliasFinder.ARRAY_FIELD)
-							&& rightOp instanceof Local) {
-						Local local = (Local) rightOp;
-						AccessGraph a = new AccessGraph(local);
-						context.getBackwardSolver().inject(new PathEdge<Unit, AccessGraph>(null, a, curr, a),
-								PropagationType.Normal);
-					}
 				}
-				if (rightOp instanceof CastExpr) {
-					CastExpr castExpr = (CastExpr) rightOp;
-					Value op = castExpr.getOp();
-					if (op instanceof Local) {
-						if (!source.isStatic() && source.baseMatches(op)) {
-							out.add(source.deriveWithNewLocal((Local) leftOp));
-						}
-					}
+				break;
+			case INSTANCE_FIELD:
+				if (!source.isStatic()) {
+					if (source.getBase().equals(stmt.leftBase()) && source.firstFirstFieldMayMatch(stmt.leftField())
+							&& stmt.right() == Operand.LOCAL)
+						injectBackward(stmt.rightLocal(), curr);
+					// Strong update on fields
+					if (source.baseAndFirstFieldMatches(stmt.leftBase(), stmt.leftField()))
+						return Collections.emptySet();
 				}
-				if (rightOp instanceof Local && source.baseMatches(rightOp)) {
-
-					if (leftOp instanceof Local) {
-						// e = d;
-						out.add(source.deriveWithNewLocal((Local) leftOp));
-					} else if (leftOp instanceof InstanceFieldRef) {
-						// d.f = e;
-						InstanceFieldRef fr = (InstanceFieldRef) leftOp;
-						Value base = fr.getBase();
-						SootField field = fr.getField();
-
-						if (base instanceof Local) {
-							Local lBase = (Local) base;
-
-							AccessGraph withNewLocal = source.deriveWithNewLocal(lBase);
-							WrappedSootField newFirstField = new WrappedSootField(field, curr);
-							AccessGraph newAp = withNewLocal.prependField(newFirstField);
-							out.add(newAp);
-							computeAliasesOnInstanceWrite(curr, succ, source, lBase, field, (Local) rightOp, edge);
-						}
-					} else if (leftOp instanceof ArrayRef) {
-						ArrayRef fr = (ArrayRef) leftOp;
-						Value base = fr.getBase();
-
-						if (base instanceof Local) {
-							Local lBase = (Local) base;
-
-							AccessGraph withNewLocal = source.deriveWithNewLocal(lBase);
-							AccessGraph newAp = withNewLocal.prependField(
-									new WrappedSootField(AliasFinder.ARRAY_FIELD, curr));
-							out.add(newAp);
-							computeAliasesOnInstanceWrite(curr, succ, source, lBase, AliasFinder.ARRAY_FIELD,
-									(Local) rightOp, edge);
+				break;
+			case ARRAY:
+				if (source.baseMatches(stmt.leftBase()) && source.firstFirstFieldMayMatch(AliasFinder.ARRAY_FIELD)
+						&& stmt.right() == Operand.LOCAL)
+					injectBackward(stmt.rightLocal(), curr);
+				break;
+			default:
+				break;
+			}
 
-						}
-					} else if (leftOp instanceof StaticFieldRef && context.trackStaticFields()) {
+			switch (stmt.right()) {
+			case CAST:
+				if (stmt.castOp() != null && !source.isStatic() && source.baseMatches(stmt.castOp()))
+					out = add(out, source, source.deriveWithNewLocal(stmt.leftLocal()));
+				break;
+			case LOCAL:
+				if (!source.baseMatches(stmt.rightLocal()))
+					break;
+				switch (stmt.left()) {
+				case LOCAL:
+					// e = d;
+					out = add(out, source, source.deriveWithNewLocal(stmt.leftLocal()));
+					break;
+				case INSTANCE_FIELD:
+				case ARRAY:
+					// d.f = e; d[i] = e;
+					if (stmt.leftBase() instanceof Local) {
+						Local lBase = (Local) stmt.leftBase();
+						AccessGraph withNewLocal = source.deriveWithNewLocal(lBase);
+						out = add(out, source, withNewLocal.prependField(context.wrapField(stmt.leftField(), curr)));
+						computeAliasesOnInstanceWrite(curr, succ, source, lBase, stmt.leftField(), stmt.rightLocal(),
+								edge);
+					}
+					break;
+				case STATIC_FIELD:
+					if (context.trackStaticFields()) {
 						// d.f = e;
-						StaticFieldRef fr = (StaticFieldRef) leftOp;
-						SootField field = fr.getField();
-
-						AccessGraph newAp = source.prependField(new WrappedSootField(field, curr))
-								.makeStatic();
-
+						SootField field = stmt.leftField();
+						AccessGraph newAp = source.prependField(context.wrapField(field, curr)).makeStatic();
 						if (newAp.hasSetBasedFieldGraph()) {
-							newAp = source.dropTail()
-									.prependField(new WrappedSootField(field, curr)).makeStatic();
-							out.add(newAp);
+							newAp = source.dropTail().prependField(context.wrapField(field, curr)).makeStatic();
+							out = add(out, source, newAp);
 						}
-						out.add(newAp);
-						return out;
+						return add(out, source, newAp);
 					}
-				} else if (rightOp instanceof InstanceFieldRef) {
-					InstanceFieldRef fr = (InstanceFieldRef) rightOp;
-					Value base = fr.getBase();
-					SootField field = fr.getField();
-
-					if (source.baseMatches(base) && source.firstFirstFieldMayMatch(field)) {
-						// e = a.f && source == a.f.*
-						// replace in source
-						if (leftOp instanceof Local && !source.baseMatches(leftOp)) {
+					break;
+				default:
+					break;
+				}
+				break;
+			case INSTANCE_FIELD:
+				// e = a.f && source == a.f.*
+				// replace in source
+				if (source.baseMatches(stmt.rightBase()) && source.firstFirstFieldMayMatch(stmt.rightField())
+						&& stmt.left() == Operand.LOCAL && !source.baseMatches(stmt.leftLocal()))
+					out = addAll(out, source, source.deriveWithNewLocal(stmt.leftLocal()).popFirstField());
+				break;
+			case ARRAY:
+				if (source.baseMatches(stmt.rightBase()) && source.firstFirstFieldMayMatch(AliasFinder.ARRAY_FIELD)) {
+					for (AccessGraph a : source.popFirstField())
+						out = add(out, source, a.deriveWithNewLocal(stmt.leftLocal()));
+				}
+				break;
+			case STATIC_FIELD:
+				if (context.trackStaticFields() && source.isStatic() && source.firstFieldMustMatch(stmt.rightField())
+						&& stmt.left() == Operand.LOCAL) {
+					for (AccessGraph a : source.popFirstField())
+						out = add(out, source, a.deriveWithNewLocal(stmt.leftLocal()));
+				}
+				break;
+			default:
+				break;
+			}
+			return (out == null ? Collections.singleton(source) : out);
+		}
+	}
 
-							for (WrappedSootField wrappedField : source.getFirstField()) {
-								AccessGraph deriveWithNewLocal = source.deriveWithNewLocal((Local) leftOp);
+	private void injectBackward(Local local, Unit curr) {
+		AccessGraph a = AccessGraph.create(local);
+		context.getBackwardSolver().inject(new PathEdge<Unit, AccessGraph>(null, a, curr, a), PropagationType.Normal);
+	}
 
-								out.addAll(deriveWithNewLocal.popFirstField());
-							}
-						}
-					}
-				} else if (rightOp instanceof ArrayRef) {
-					ArrayRef arrayRef = (ArrayRef) rightOp;
-					if (source.baseMatches(arrayRef.getBase())
-							&& source.firstFirstFieldMayMatch(AliasFinder.ARRAY_FIELD)) {
-
-						Set<AccessGraph> withoutFirstField = source.popFirstField();
-						for (AccessGraph a : withoutFirstField) {
-							for (WrappedSootField wrappedField : source.getFirstField())
-								out.add(a.deriveWithNewLocal((Local) leftOp));
-						}
-					}
-				} else if (rightOp instanceof StaticFieldRef && context.trackStaticFields()) {
-					StaticFieldRef sfr = (StaticFieldRef) rightOp;
-					if (source.isStatic() && source.firstFieldMustMatch(sfr.getField())) {
-						if (leftOp instanceof Local) {
-							Set<AccessGraph> withoutFirstField = source.popFirstField();
-							for (AccessGraph a : withoutFirstField) {
-								for (WrappedSootField wrappedField : source.getFirstField())
-									out.add(a.deriveWithNewLocal((Local) leftOp));
-							}
-						}
-					}
-				}
+	/**
+	 * Adds the target to the targets, the targets are created with the source
+	 * if they do not exist yet.
+	 */
+	private static Set<AccessGraph> add(Set<AccessGraph> out, AccessGraph source, AccessGraph target) {
+		if (out == null) {
+			out = new HashSet<AccessGraph>();
+			out.add(source);
+		}
+		out.add(target);
+		return out;
+	}
 
-				return out;
-			}
-		};
+	private static Set<AccessGraph> addAll(Set<AccessGraph> out, AccessGraph source, Set<AccessGraph> targets) {
+		for (AccessGraph target : targets)
+			out = add(out, source, target);
+		return out;
 	}
 
 	private void computeAliasesOnInstanceWrite(final Unit curr, final Unit succ, final AccessGraph source, Local lBase,
 			final SootField field, Local rightLocal, final IPathEdge<Unit, AccessGraph> edge) {
 		WrappedSootField[] toAppend;
 		if (source.getFieldGraph() == null)
-			toAppend = new WrappedSootField[] { new WrappedSootField(field, curr) };
+			toAppend = new WrappedSootField[] { context.wrapField(field, curr) };
 		else
-			toAppend = source.getFieldGraph().prependField(new WrappedSootField(field, curr))
+			toAppend = source.getFieldGraph().prependField(context.wrapField(field, curr))
 					.getFields();
 		if (toAppend.length > 0)
-			context.registerPOI(curr, new PointOfIndirection(new AccessGraph(lBase), curr, context),
+			context.registerPOI(curr, new PointOfIndirection(AccessGraph.create(lBase), curr, context),
 					new ForwardAliasCallback(edge.getStart(), edge.factAtSource(), succ, toAppend, context));
 	}
 
@@ -293,7 +281,7 @@ public class ForwardFlowFunctions extends AbstractFlowFunctions
 					}
 				}
 				if (edge.factAtSource() != null) {
-					if (AliasFinder.IGNORED_METHODS.contains(callee)) {
+					if (context.isIgnoredMethod(callee)) {
 						return Collections.emptySet();
 					}
 				}
@@ -454,7 +442,7 @@ public class ForwardFlowFunctions extends AbstractFlowFunctions
 						return context.forwardMockHandler.computeTargetsOverCall(callSite, ie, source, callArgs, edge);
 					}
 
-					if (ie.getMethod().equals(AliasFinder.arrayCopy())) {
+					if (ie.getMethod().equals(context.arrayCopy())) {
 						for (Value callVal : callArgs) {
 							if (callVal == source.getBase()) {
 								// java uses call by value, but fields of
@@ -70,7 +70,7 @@ class ForwardPathEdgeFunctions extends AbstractPathEdgeFunctions {
 					// System.out.println("STRONG UPDATE " + curr);
 					StrongUpdateCallback strongUpdateCallback = new StrongUpdateCallback(succEdge, context);
 					context.getForwardPathEdges().registerPointOfIndirectionAt(curr,
-							new PointOfIndirection(new AccessGraph((Local) base), curr, context),
+							new PointOfIndirection(AccessGraph.create((Local) base), curr, context),
 							strongUpdateCallback);
 					context.getForwardPathEdges().registerPointOfIndirectionAt(curr,
 							new PointOfIndirection(prevEdge.factAtTarget().dropTail(), curr, context),
@@ -1,6 +1,5 @@
 package boomerang.forward;
 
-import boomerang.AliasFinder;
 import boomerang.BoomerangContext;
 import boomerang.BoomerangTimeoutException;
 import boomerang.accessgraph.AccessGraph;
@@ -61,7 +60,7 @@ public class ForwardSolver extends
   public void onRegister(IPathEdge<Unit, AccessGraph> edge) {
     context.sanityCheckEdge(edge);
     if(edge.getTarget() != null)
-    	AliasFinder.VISITED_METHODS.add(icfg.getMethodOf(edge.getTarget()));
+    	context.addVisitedMethod(icfg.getMethodOf(edge.getTarget()));
   }
 
   public String toString() {
@@ -67,6 +67,13 @@ public abstract class DefaultIFDSTabulationProblem<N, D, M, I extends BiDiInterp
 
 	public abstract Scheduler getScheduler();
 
+	/**
+	 * @return The counters the solver records its propagations in.
+	 */
+	public SolverMetrics<M> getMetrics() {
+		return new SolverMetrics<>();
+	}
+
 	public IPropagationController<N, D> propagationController() {
 		return new IPropagationController<N, D>() {
 			@Override
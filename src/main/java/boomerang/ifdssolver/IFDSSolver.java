@@ -14,12 +14,16 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
 
 import boomerang.ifdssolver.DefaultIFDSTabulationProblem.Direction;
+import boomerang.ifdssolver.SolverMetrics.TaskKind;
 import heros.solver.Pair;
 import soot.SootMethod;
 import soot.Unit;
@@ -44,8 +48,9 @@ import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
  */
 public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>> {
 
-	private long propagationCount;
+	private final AtomicLong propagationCount = new AtomicLong();
 	protected Scheduler worklist;
+	protected final SolverMetrics<M> metrics;
 	protected IPathEdges<N, D, M, I> pathEdges;
 	protected PathEdgeFunctions<N, D, M> pathEdgeFunctions;
 	protected IIncomings<N, M, D> incomings;
@@ -53,6 +58,7 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 	protected final IFDSDebugger<N, D, M, I> debugger;
 	protected ISummaries<N, M, D> summaries;
 	private Multimap<M, IPathEdge<N, D>> methodToPausedEdge = HashMultimap.create();
+	private Set<M> visitableMethods = new HashSet<>();
 
 	public enum PropagationType {
 		Normal, Call2Return, CallEnter, BalancedReturn, UnbalancedReturn
@@ -62,7 +68,7 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 
 	private Direction direction;
 	private IPropagationController<N, D> propagationController;
-	private Multimap<Pair<N,D>,IncomingListener<N, D, M>> incomingListeners = HashMultimap.create();
+	private Multimap<Pair<N,D>,IncomingListener<N, D, M>> incomingListeners = Multimaps.synchronizedMultimap(HashMultimap.<Pair<N,D>,IncomingListener<N, D, M>>create());
 
 	/**
 	 * Creates a solver for the given problem, which caches flow functions and
@@ -75,8 +81,8 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 		this.direction = tabulationProblem.getDirection();
 		this.icfg = tabulationProblem.interproceduralCFG();
 		this.worklist = tabulationProblem.getScheduler();
+		this.metrics = tabulationProblem.getMetrics();
 		this.debugger = debug;
-		propagationCount = 0;
 		this.propagationController = tabulationProblem.propagationController();
 	}
 
@@ -117,6 +123,7 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 					}
 					// line 15.2
 					Collection<IPathEdge<N, D>> endSumm = endSummary(sCalledProcN, nextCallEdge.getStartNode());
+					metrics.summaryLookup(!endSumm.isEmpty());
 					Collection<? extends IPathEdge<N, D>> edgesOnHold = pathEdgeFunctions.getEdgesOnHold(nextCallEdge,
 							incEdge);
 					for (IPathEdge<N, D> edgeOnHold : edgesOnHold) {
@@ -268,15 +275,15 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 	public boolean propagate(IPathEdge<N, D> edge, PropagationType t) {
 		if(!propagationController.continuePropagate(edge))
 			return false;
-		boolean hasAlreadyProcessed = pathEdges.hasAlreadyProcessed(edge);
-		registerEdge(edge);
-		assert pathEdges.hasAlreadyProcessed(edge);
-		if (!hasAlreadyProcessed) {
-			propagationCount++;
-			scheduleEdgeProcessing(edge);
+		onRegister(edge);
+		if (!pathEdges.registerIfAbsent(edge)) {
+			metrics.propagatedRedundantly();
+			return true;
 		}
-
-		return hasAlreadyProcessed;
+		propagationCount.incrementAndGet();
+		metrics.propagated(t);
+		scheduleEdgeProcessing(edge);
+		return false;
 	}
 
 	public void registerEdge(IPathEdge<N, D> edge) {
@@ -307,24 +314,35 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 		}
 
 		public void run() {
+			long start = metrics.taskStarted();
 			if (icfg.isCallStmt(edge.getTarget())) {
 				debugger.onProcessCall(edge);
 				processCall(edge);
+				metrics.processed(TaskKind.Call, start);
 			} else {
 				// note that some statements, such as "throw" may be
 				// both an exit statement and a "normal" statement
 				if (icfg.isExitStmt(edge.getTarget())) {
 					debugger.onProcessExit(edge);
 					processExit(edge);
+					start = metrics.processed(TaskKind.Exit, start);
 				}
 				if (!icfg.getSuccsOf(edge.getTarget()).isEmpty()) {
 					debugger.onProcessNormal(edge);
 					processNormalFlow(edge);
+					metrics.processed(TaskKind.Normal, start);
 				}
 			}
 
 		}
 
+		/**
+		 * @return The direction of the solver which scheduled the task.
+		 */
+		public Direction getDirection() {
+			return direction;
+		}
+
 		public String toString() {
 			return edge.toString();
 		}
@@ -361,10 +379,18 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 		debugger.addIncoming(direction, callee, nextCallEdge.getTargetNode(), incEdge);
 		onRegister(incEdge);
 		tabulationProblem.onSolverAddIncoming(callee, nextCallEdge.getStartNode(), incEdge);
-		
-		for(IncomingListener<N, D, M> l : Lists.newLinkedList(incomingListeners.get(nextCallEdge.getStartNode())))
+		// The incoming is stored before the listeners are notified, a listener
+		// attached concurrently either sees the incoming or is notified here.
+		boolean added = incomings.addIncoming(callee, nextCallEdge.getStartNode(), incEdge);
+		for(IncomingListener<N, D, M> l : listenersOf(nextCallEdge.getStartNode()))
 			l.hasIncomingEdge(incEdge);
-		return incomings.addIncoming(callee, nextCallEdge.getStartNode(), incEdge);
+		return added;
+	}
+
+	private List<IncomingListener<N, D, M>> listenersOf(Pair<N, D> startNode) {
+		synchronized (incomingListeners) {
+			return Lists.newLinkedList(incomingListeners.get(startNode));
+		}
 	}
 
 	public void cleanup() {
@@ -384,6 +410,14 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 		return worklist.isEmpty();
 	}
 
+	/**
+	 * @return The number of path edges scheduled for processing since the
+	 *         solver was created.
+	 */
+	public long getPropagationCount() {
+		return propagationCount.get();
+	}
+
 	public IPathEdges<N, D, M, I> getPathEdges() {
 		return this.pathEdges;
 	}
@@ -394,22 +428,78 @@ public abstract class IFDSSolver<N, D, M, I extends BiDiInterproceduralCFG<N, M>
 		}
 	}
 	
+	/**
+	 * Notifies the listener of all incomings of its source pair, the existing
+	 * and the ones added later. Each incoming is reported once, attaching a
+	 * listener which is already attached has no effect.
+	 */
 	public void attachIncomingListener(IncomingListener<N, D, M> listener){
 		Pair<N,D> sourcePair = listener.getSourcePair();
+		// The listener is registered before the existing incomings are replayed,
+		// such that an incoming added concurrently is not missed. Such an
+		// incoming may be reported by the replay and by addIncoming, the
+		// wrapper drops the second report.
+		DeduplicatingListener<N, D, M> deduplicating = new DeduplicatingListener<>(listener);
+		if (!incomingListeners.put(sourcePair, deduplicating))
+			return;
 		Set<? extends IPathEdge<N, D>> incs = incoming(sourcePair, icfg.getMethodOf(sourcePair.getO1()));
 		for(IPathEdge<N, D> edge : incs)
-			listener.hasIncomingEdge(edge);
-		incomingListeners.put(sourcePair, listener);
+			deduplicating.hasIncomingEdge(edge);
+	}
+
+	/**
+	 * Reports each incoming edge at most once to the wrapped listener. Equal to
+	 * any other wrapper of the same listener.
+	 */
+	private static class DeduplicatingListener<N, D, M> implements IncomingListener<N, D, M> {
+		private final IncomingListener<N, D, M> delegate;
+		private final Set<IPathEdge<N, D>> reported = Sets.newConcurrentHashSet();
+
+		DeduplicatingListener(IncomingListener<N, D, M> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void hasIncomingEdge(IPathEdge<N, D> edge) {
+			if (reported.add(edge))
+				delegate.hasIncomingEdge(edge);
+		}
+
+		@Override
+		public Pair<N, D> getSourcePair() {
+			return delegate.getSourcePair();
+		}
+
+		@Override
+		public int hashCode() {
+			return delegate.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof DeduplicatingListener && ((DeduplicatingListener<?, ?, ?>) obj).delegate.equals(delegate);
+		}
 	}
 
 	public void addMethodToPausedEdge(M m, IPathEdge<N, D> pathEdge) {
 		if(!icfg.getMethodOf(pathEdge.getTarget()).equals(m))
 			throw new RuntimeException("Wrong method associated");
-		methodToPausedEdge.put(m, pathEdge);
+		synchronized (methodToPausedEdge) {
+			if (!visitableMethods.contains(m)) {
+				methodToPausedEdge.put(m, pathEdge);
+				return;
+			}
+		}
+		// The method became visitable concurrently, the edge must not be paused.
+		propagate(pathEdge, PropagationType.CallEnter);
 	}
 
 	public void setVisitable(M m) {
-		Collection<IPathEdge<N, D>> collection = methodToPausedEdge.removeAll(m);
+		Collection<IPathEdge<N, D>> collection;
+		synchronized (methodToPausedEdge) {
+			visitableMethods.add(m);
+			collection = methodToPausedEdge.removeAll(m);
+		}
 		for(IPathEdge<N, D> edge : collection)
 			propagate(edge, PropagationType.CallEnter);
 	}
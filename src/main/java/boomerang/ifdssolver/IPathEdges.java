@@ -5,6 +5,17 @@ import soot.jimple.toolkits.ide.icfg.BiDiInterproceduralCFG;
 public interface IPathEdges<N, D, M, I extends BiDiInterproceduralCFG<N, M>> {
 	public boolean hasAlreadyProcessed(IPathEdge<N,D> edge);
 	public void register(IPathEdge<N,D> edge);
+
+	/**
+	 * Registers the path edge unless it has been registered before. The check
+	 * and the registration happen atomically, such that of multiple concurrent
+	 * calls for the same edge exactly one returns <code>true</code>.
+	 * 
+	 * @param edge
+	 *            The path edge to register.
+	 * @return <code>true</code> if the edge has not been registered before.
+	 */
+	public boolean registerIfAbsent(IPathEdge<N,D> edge);
 	public int size();
 	public void clear();
 	public void printStats();
@@ -1,11 +1,12 @@
 package boomerang.ifdssolver;
 
 import java.util.LinkedList;
+import java.util.Queue;
 
 import boomerang.BoomerangTimeoutException;
 
 public class Scheduler {
-	protected LinkedList<Runnable> worklist = new LinkedList<>();
+	protected Queue<Runnable> worklist = new LinkedList<>();
 
 	public void add(Runnable runnable) {
 		worklist.add(runnable);
@@ -19,6 +20,21 @@ public class Scheduler {
 		return worklist.poll();
 	}
 
+	/**
+	 * Removes all tasks which have not been executed yet.
+	 */
+	public void clear() {
+		worklist.clear();
+	}
+
+	/**
+	 * @return <code>true</code> if the scheduled tasks may run concurrently,
+	 *         the data structures of the solvers must then be thread-safe.
+	 */
+	public boolean isConcurrent() {
+		return false;
+	}
+
 	public void awaitExecution() {
 		while (worklist != null && !worklist.isEmpty()) {
 			Runnable task = worklist.poll();
@@ -0,0 +1,249 @@
+package boomerang.ifdssolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import boomerang.ifdssolver.IFDSSolver.PropagationType;
+
+/**
+ * Counters of one {@link IFDSSolver}. The counters are {@link LongAdder}s,
+ * such that updates from concurrent tasks do not contend. The propagations per
+ * method are counted in an array indexed by the number of the method, updating
+ * a counter does not allocate except when the array grows. The processing time
+ * of the tasks is only measured if enabled, as it requires reading the clock
+ * around each task.
+ * 
+ * @param <M>
+ *            The type of objects used to represent methods.
+ */
+public class SolverMetrics<M> {
+
+	/**
+	 * The kinds of processing a path edge processing task performs.
+	 */
+	public enum TaskKind {
+		Call, Exit, Normal
+	}
+
+	private final LongAdder[] propagations = adders(PropagationType.values().length);
+	private final LongAdder redundantPropagations = new LongAdder();
+	private final IntFunction<M> methodOfNumber;
+	private final boolean timeTasks;
+	/**
+	 * Replaced by a larger copy under the monitor of this object when a method
+	 * number exceeds its length.
+	 */
+	private volatile AtomicLongArray propagationsPerMethod = new AtomicLongArray(64);
+	private final LongAdder summaryHits = new LongAdder();
+	private final LongAdder summaryMisses = new LongAdder();
+	private final LongAdder[] tasks = adders(TaskKind.values().length);
+	private final LongAdder[] taskNanos = adders(TaskKind.values().length);
+
+	/**
+	 * Creates metrics which neither count the propagations per method nor
+	 * measure the processing time.
+	 */
+	public SolverMetrics() {
+		this(null, false);
+	}
+
+	/**
+	 * @param methodOfNumber
+	 *            Maps the numbers passed to {@link #propagatedInto(int)} back
+	 *            to the methods, <code>null</code> if the propagations per
+	 *            method are not counted.
+	 * @param timeTasks
+	 *            Whether the processing time of the tasks is measured.
+	 */
+	public SolverMetrics(IntFunction<M> methodOfNumber, boolean timeTasks) {
+		this.methodOfNumber = methodOfNumber;
+		this.timeTasks = timeTasks;
+	}
+
+	private static LongAdder[] adders(int size) {
+		LongAdder[] adders = new LongAdder[size];
+		for (int i = 0; i < size; i++)
+			adders[i] = new LongAdder();
+		return adders;
+	}
+
+	/**
+	 * Records a path edge which is new and scheduled for processing.
+	 */
+	void propagated(PropagationType type) {
+		propagations[type.ordinal()].increment();
+	}
+
+	/**
+	 * Records a new path edge whose target is in the method of the given
+	 * number. Called by the store of the path edges, which knows the number
+	 * of the method anyway.
+	 */
+	public void propagatedInto(int methodNumber) {
+		if (methodOfNumber == null)
+			return;
+		AtomicLongArray counts = propagationsPerMethod;
+		if (methodNumber >= counts.length())
+			counts = grow(methodNumber + 1);
+		counts.incrementAndGet(methodNumber);
+	}
+
+	private synchronized AtomicLongArray grow(int size) {
+		AtomicLongArray counts = propagationsPerMethod;
+		if (size <= counts.length())
+			return counts;
+		AtomicLongArray grown = new AtomicLongArray(Math.max(size, counts.length() * 2));
+		// Increments racing with the copy may be lost, which is acceptable for
+		// statistics.
+		for (int i = 0; i < counts.length(); i++)
+			grown.set(i, counts.get(i));
+		propagationsPerMethod = grown;
+		return grown;
+	}
+
+	/**
+	 * Records a path edge which has already been propagated before.
+	 */
+	void propagatedRedundantly() {
+		redundantPropagations.increment();
+	}
+
+	/**
+	 * Records whether an end summary of the callee was available when
+	 * processing a call.
+	 */
+	void summaryLookup(boolean hit) {
+		if (hit)
+			summaryHits.increment();
+		else
+			summaryMisses.increment();
+	}
+
+	/**
+	 * @return The start time to pass to {@link #processed(TaskKind, long)},
+	 *         <code>0</code> if the processing time is not measured.
+	 */
+	long taskStarted() {
+		return (timeTasks ? System.nanoTime() : 0);
+	}
+
+	/**
+	 * Records a processed path edge.
+	 * 
+	 * @param start
+	 *            The start time of the processing.
+	 * @return The end time, which is the start time of a subsequent
+	 *         processing of the same task.
+	 */
+	long processed(TaskKind kind, long start) {
+		tasks[kind.ordinal()].increment();
+		if (!timeTasks)
+			return 0;
+		long now = System.nanoTime();
+		taskNanos[kind.ordinal()].add(now - start);
+		return now;
+	}
+
+	public long getPropagations(PropagationType type) {
+		return propagations[type.ordinal()].sum();
+	}
+
+	public long getRedundantPropagations() {
+		return redundantPropagations.sum();
+	}
+
+	public long getSummaryHits() {
+		return summaryHits.sum();
+	}
+
+	public long getSummaryMisses() {
+		return summaryMisses.sum();
+	}
+
+	/**
+	 * @return The number of processed path edges of the kind.
+	 */
+	public long getProcessedTasks(TaskKind kind) {
+		return tasks[kind.ordinal()].sum();
+	}
+
+	/**
+	 * @return The time spent processing path edges of the kind in
+	 *         nanoseconds, summed over all threads. Always <code>0</code>
+	 *         unless the processing time is measured.
+	 */
+	public long getProcessingNanos(TaskKind kind) {
+		return taskNanos[kind.ordinal()].sum();
+	}
+
+	/**
+	 * @return The number of new path edges per method of their target, empty
+	 *         if the propagations per method are not counted.
+	 */
+	public Map<M, Long> getPropagationsPerMethod() {
+		Map<M, Long> out = new LinkedHashMap<>();
+		AtomicLongArray counts = propagationsPerMethod;
+		for (int i = 0; i < counts.length(); i++) {
+			long count = counts.get(i);
+			if (count > 0)
+				out.put(methodOfNumber.apply(i), count);
+		}
+		return out;
+	}
+
+	/**
+	 * @return The methods with the most new path edges, in descending order.
+	 */
+	public Map<M, Long> getTopMethods(int n) {
+		List<Entry<M, Long>> entries = new ArrayList<>(getPropagationsPerMethod().entrySet());
+		Collections.sort(entries, new Comparator<Entry<M, Long>>() {
+			@Override
+			public int compare(Entry<M, Long> o1, Entry<M, Long> o2) {
+				return Long.compare(o2.getValue(), o1.getValue());
+			}
+		});
+		Map<M, Long> out = new LinkedHashMap<>();
+		for (Entry<M, Long> e : entries.subList(0, Math.min(n, entries.size())))
+			out.put(e.getKey(), e.getValue());
+		return out;
+	}
+
+	public void reset() {
+		for (LongAdder a : propagations)
+			a.reset();
+		redundantPropagations.reset();
+		propagationsPerMethod = new AtomicLongArray(64);
+		summaryHits.reset();
+		summaryMisses.reset();
+		for (LongAdder a : tasks)
+			a.reset();
+		for (LongAdder a : taskNanos)
+			a.reset();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("propagations:");
+		for (PropagationType type : PropagationType.values())
+			sb.append(' ').append(type).append('=').append(getPropagations(type));
+		sb.append(" redundant=").append(getRedundantPropagations());
+		sb.append("\nsummaries: hits=").append(getSummaryHits()).append(" misses=").append(getSummaryMisses());
+		sb.append("\ntasks:");
+		for (TaskKind kind : TaskKind.values())
+			sb.append(' ').append(kind).append('=').append(getProcessedTasks(kind)).append(" (")
+					.append(getProcessingNanos(kind) / 1000000).append("ms)");
+		sb.append("\ntop methods:");
+		for (Entry<M, Long> e : getTopMethods(10).entrySet())
+			sb.append("\n\t").append(e.getValue()).append('\t').append(e.getKey());
+		return sb.toString();
+	}
+}
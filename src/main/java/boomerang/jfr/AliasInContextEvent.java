@@ -0,0 +1,29 @@
+package boomerang.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("boomerang.AliasInContext")
+@Label("Boomerang Alias In Context")
+@Category("Boomerang")
+@Description("A check whether two facts alias in the calling contexts of a method, only recorded above the threshold")
+@Threshold("1 ms")
+class AliasInContextEvent extends jdk.jfr.Event {
+	@Label("Start Point")
+	String startPoint;
+
+	@Label("Fact 1")
+	String fact1;
+
+	@Label("Fact 2")
+	String fact2;
+
+	@Label("Visited Start Points")
+	int visited;
+
+	@Label("Result")
+	boolean result;
+}
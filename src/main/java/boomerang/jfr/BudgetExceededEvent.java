@@ -0,0 +1,21 @@
+package boomerang.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("boomerang.BudgetExceeded")
+@Label("Boomerang Budget Exceeded")
+@Category("Boomerang")
+@Description("A query was stopped because it exhausted a budget")
+class BudgetExceededEvent extends jdk.jfr.Event {
+	@Label("Reason")
+	String reason;
+
+	@Label("Propagations")
+	long propagations;
+
+	@Label("Path Edges")
+	long pathEdges;
+}
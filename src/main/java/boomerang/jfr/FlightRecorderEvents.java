@@ -0,0 +1,185 @@
+package boomerang.jfr;
+
+import java.util.Collection;
+
+import boomerang.AliasResults;
+import boomerang.Query;
+import boomerang.accessgraph.AccessGraph;
+import jdk.jfr.EventType;
+import soot.Unit;
+
+/**
+ * Emits the Java Flight Recorder events of Boomerang (category "Boomerang").
+ * The events are recorded whenever a recording with the events enabled is
+ * running, they are enabled by default. On a
+ * JVM without JFR, all methods do nothing.
+ * 
+ * An event is started by a <code>begin</code> method, which returns an opaque
+ * token (<code>null</code> if JFR is unavailable), and is committed by the
+ * corresponding <code>end</code> method. The descriptions of the event are
+ * only computed if the event is recorded. The frequent events of the solver
+ * phases and of alias in context checks are not even allocated unless a
+ * running recording enables them.
+ * 
+ * @author spaeth
+ *
+ */
+public final class FlightRecorderEvents {
+	private static final boolean AVAILABLE = isJfrAvailable();
+
+	private FlightRecorderEvents() {
+	}
+
+	/**
+	 * The types of the frequent events. Only loaded if JFR is available.
+	 */
+	private static final class FrequentEventTypes {
+		static final EventType SOLVER_PHASE = EventType.getEventType(SolverPhaseEvent.class);
+		static final EventType ALIAS_IN_CONTEXT = EventType.getEventType(AliasInContextEvent.class);
+	}
+
+	private static boolean isJfrAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	public static Object beginQuery() {
+		if (!AVAILABLE)
+			return null;
+		QueryEvent event = new QueryEvent();
+		event.begin();
+		return event;
+	}
+
+	public static void endQuery(Object token, Query q, AliasResults res, long propagations, long pathEdges) {
+		if (token == null)
+			return;
+		QueryEvent event = (QueryEvent) token;
+		event.end();
+		if (!event.shouldCommit())
+			return;
+		event.query = q.getAp() + " @ " + q.getStmt();
+		event.method = String.valueOf(q.getMethod());
+		if (res != null) {
+			event.allocationSites = res.keySet().size();
+			event.aliases = res.size();
+			event.timedout = res.queryTimedout();
+		} else {
+			event.timedout = true;
+		}
+		event.propagations = propagations;
+		event.pathEdges = pathEdges;
+		event.commit();
+	}
+
+	public static Object beginQueryBatch() {
+		if (!AVAILABLE)
+			return null;
+		QueryBatchEvent event = new QueryBatchEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the event of a batch of queries solved together. The queries share
+	 * the propagations, hence a batch is recorded as a single event rather than
+	 * one event per query.
+	 */
+	public static void endQueryBatch(Object token, Collection<AliasResults> results, boolean timedout,
+			long propagations, long pathEdges) {
+		if (token == null)
+			return;
+		QueryBatchEvent event = (QueryBatchEvent) token;
+		event.end();
+		if (!event.shouldCommit())
+			return;
+		event.queries = results.size();
+		for (AliasResults res : results) {
+			event.allocationSites += res.keySet().size();
+			event.aliases += res.size();
+		}
+		event.timedout = timedout;
+		event.propagations = propagations;
+		event.pathEdges = pathEdges;
+		event.commit();
+	}
+
+	public static Object beginSolverPhase() {
+		if (!AVAILABLE || !FrequentEventTypes.SOLVER_PHASE.isEnabled())
+			return null;
+		SolverPhaseEvent event = new SolverPhaseEvent();
+		event.begin();
+		return event;
+	}
+
+	public static void endSolverPhase(Object token, Object direction, long propagations) {
+		if (token == null)
+			return;
+		SolverPhaseEvent event = (SolverPhaseEvent) token;
+		event.end();
+		if (!event.shouldCommit())
+			return;
+		event.direction = String.valueOf(direction);
+		event.propagations = propagations;
+		event.commit();
+	}
+
+	/**
+	 * Records that a query is stopped because a budget is exhausted.
+	 */
+	public static void budgetExceeded(String reason, long propagations, long pathEdges) {
+		if (!AVAILABLE)
+			return;
+		BudgetExceededEvent event = new BudgetExceededEvent();
+		if (!event.shouldCommit())
+			return;
+		event.reason = reason;
+		event.propagations = propagations;
+		event.pathEdges = pathEdges;
+		event.commit();
+	}
+
+	/**
+	 * Records that a query is stopped because it has been cancelled, stopped
+	 * by its listener or interrupted.
+	 */
+	public static void queryCancelled(String reason, long propagations, long pathEdges) {
+		if (!AVAILABLE)
+			return;
+		QueryCancelledEvent event = new QueryCancelledEvent();
+		if (!event.shouldCommit())
+			return;
+		event.reason = reason;
+		event.propagations = propagations;
+		event.pathEdges = pathEdges;
+		event.commit();
+	}
+
+	public static Object beginAliasInContext() {
+		if (!AVAILABLE || !FrequentEventTypes.ALIAS_IN_CONTEXT.isEnabled())
+			return null;
+		AliasInContextEvent event = new AliasInContextEvent();
+		event.begin();
+		return event;
+	}
+
+	public static void endAliasInContext(Object token, Unit startPoint, AccessGraph fact1, AccessGraph fact2,
+			int visited, boolean result) {
+		if (token == null)
+			return;
+		AliasInContextEvent event = (AliasInContextEvent) token;
+		event.end();
+		if (!event.shouldCommit())
+			return;
+		event.startPoint = String.valueOf(startPoint);
+		event.fact1 = String.valueOf(fact1);
+		event.fact2 = String.valueOf(fact2);
+		event.visited = visited;
+		event.result = result;
+		event.commit();
+	}
+}
@@ -0,0 +1,32 @@
+package boomerang.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("boomerang.QueryBatch")
+@Label("Boomerang Query Batch")
+@Category("Boomerang")
+@Description("A batch of alias queries solved together by AliasFinder.findAliases, the counts are totals of the batch")
+class QueryBatchEvent extends jdk.jfr.Event {
+	@Label("Queries")
+	int queries;
+
+	@Label("Allocation Sites")
+	@Description("The allocation sites summed over the results of all queries")
+	int allocationSites;
+
+	@Label("Aliases")
+	@Description("The aliases summed over the results of all queries")
+	int aliases;
+
+	@Label("Timed Out")
+	boolean timedout;
+
+	@Label("Propagations")
+	long propagations;
+
+	@Label("Path Edges")
+	long pathEdges;
+}
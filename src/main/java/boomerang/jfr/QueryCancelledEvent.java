@@ -0,0 +1,21 @@
+package boomerang.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("boomerang.QueryCancelled")
+@Label("Boomerang Query Cancelled")
+@Category("Boomerang")
+@Description("A query was cancelled by its caller, stopped by its listener or interrupted")
+class QueryCancelledEvent extends jdk.jfr.Event {
+	@Label("Reason")
+	String reason;
+
+	@Label("Propagations")
+	long propagations;
+
+	@Label("Path Edges")
+	long pathEdges;
+}
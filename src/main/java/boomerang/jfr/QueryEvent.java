@@ -0,0 +1,33 @@
+package boomerang.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("boomerang.Query")
+@Label("Boomerang Query")
+@Category("Boomerang")
+@Description("An alias query answered by an AliasFinder")
+class QueryEvent extends jdk.jfr.Event {
+	@Label("Query")
+	String query;
+
+	@Label("Method")
+	String method;
+
+	@Label("Allocation Sites")
+	int allocationSites;
+
+	@Label("Aliases")
+	int aliases;
+
+	@Label("Timed Out")
+	boolean timedout;
+
+	@Label("Propagations")
+	long propagations;
+
+	@Label("Path Edges")
+	long pathEdges;
+}
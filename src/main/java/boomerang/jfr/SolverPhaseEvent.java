@@ -0,0 +1,19 @@
+package boomerang.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("boomerang.SolverPhase")
+@Label("Boomerang Solver Phase")
+@Category("Boomerang")
+@Description("One call to awaitExecution of the forward or backward solver")
+class SolverPhaseEvent extends jdk.jfr.Event {
+	@Label("Direction")
+	String direction;
+
+	@Label("Propagations")
+	@Description("The path edges propagated by the solver during the phase")
+	long propagations;
+}
@@ -1,13 +1,23 @@
 package boomerang.preanalysis;
 
 import heros.InterproceduralCFG;
-import heros.solver.IDESolver;
-import heros.solver.Pair;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import soot.MethodOrMethodContext;
 import soot.Scene;
@@ -22,22 +32,40 @@ import soot.jimple.NewExpr;
 import soot.jimple.toolkits.callgraph.Edge;
 import soot.jimple.toolkits.callgraph.EdgePredicate;
 import soot.jimple.toolkits.callgraph.Filter;
-import soot.jimple.toolkits.callgraph.ReachableMethods;
 import soot.util.queue.QueueReader;
 
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-
-import boomerang.AliasFinder;
-
+/**
+ * Computes for each reachable method the instance fields read and written and
+ * the types allocated by the method or its transitive callees. The fields and
+ * types are numbered and the facts of a method are stored in bitsets, such
+ * that each query is a single bit test.
+ *
+ * The facts are computed bottom-up over the strongly connected components of
+ * the call graph: the methods of a component share their bitsets, which are
+ * the union of the facts of the members and of the callee components.
+ * Components whose callee components are done are computed in parallel.
+ * Methods which are not reachable when the preanalysis runs neither read,
+ * write nor allocate anything.
+ */
 public class FieldPreanalysis {
-  private Multimap<SootMethod, SootField> methodsToFieldsReads = HashMultimap.create();
-  private Multimap<SootMethod, SootField> methodsToFieldsWrites = HashMultimap.create();
-  private Multimap<SootMethod, SootField> methodsToFieldsWritesAndReads = HashMultimap.create();
-  private Multimap<SootMethod, Type> methodsToAllocs = HashMultimap.create();
-  private Map<SootMethod, ReachableMethods> reachables = new HashMap<>();
+  private final Map<SootMethod, Integer> methodIds = new HashMap<>();
+  private final List<SootMethod> methods = new ArrayList<>();
+  private final Map<SootField, Integer> fieldIds = new HashMap<>();
+  private final Map<Type, Integer> typeIds = new HashMap<>();
+  private final List<Type> types = new ArrayList<>();
+  private final Set<SootMethod> ignoredMethods = new HashSet<>();
+  /**
+   * The facts per method number. Before the propagation the bitsets hold the facts of the method
+   * itself, afterwards the facts of the component of the method.
+   */
+  private BitSet[] reads;
+  private BitSet[] writes;
+  private BitSet[] allocs;
+  /**
+   * The numbers of the allocated types which can be stored in a variable of the key type.
+   */
+  private final ConcurrentMap<Type, BitSet> assignableAllocs = new ConcurrentHashMap<>();
+  private final ExecutorService executor;
 
   // retains only callers that are explicit call sites or Thread.start()
   private static class EdgeFilter extends Filter {
@@ -53,6 +81,14 @@ public class FieldPreanalysis {
   }
 
   public FieldPreanalysis(InterproceduralCFG<Unit, SootMethod> icfg) {
+    this(icfg, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param executor The executor computing independent components in parallel.
+   */
+  public FieldPreanalysis(InterproceduralCFG<Unit, SootMethod> icfg, ExecutorService executor) {
+    this.executor = executor;
     compute();
   }
 
@@ -61,18 +97,33 @@ public class FieldPreanalysis {
         Scene.v().getReachableMethods().listener();
     while (reachableMethods.hasNext()) {
       MethodOrMethodContext next = reachableMethods.next();
-      if (next.method() != null) {
-        compute(next.method());
+      if (next.method() != null && !methodIds.containsKey(next.method())) {
+        methodIds.put(next.method(), methods.size());
+        methods.add(next.method());
       }
     }
-
+    int n = methods.size();
+    reads = new BitSet[n];
+    writes = new BitSet[n];
+    allocs = new BitSet[n];
+    for (int m = 0; m < n; m++)
+      compute(m);
+
+    int[][] callees = callees();
+    int[] component = new int[n];
+    List<int[]> components = stronglyConnectedComponents(callees, component);
+    propagate(components, component, callees);
   }
 
-  private void compute(SootMethod method) {
+  private void compute(int methodId) {
+    SootMethod method = methods.get(methodId);
+    reads[methodId] = new BitSet();
+    writes[methodId] = new BitSet();
+    allocs[methodId] = new BitSet();
     if (!method.hasActiveBody())
       return;
     if (isIgnoredMethod(method)) {
-      AliasFinder.IGNORED_METHODS.add(method);
+      ignoredMethods.add(method);
       return;
     }
     for (Unit stmt : method.getActiveBody().getUnits()) {
@@ -80,174 +131,233 @@ public class FieldPreanalysis {
         continue;
       AssignStmt assignStmt = (AssignStmt) stmt;
       Value leftOp = assignStmt.getLeftOp();
-      if (leftOp instanceof InstanceFieldRef) {
-        SootField field = ((InstanceFieldRef) leftOp).getField();
-        methodsToFieldsWrites.put(method, field);
-        methodsToFieldsWritesAndReads.put(method, field);
-      }
+      if (leftOp instanceof InstanceFieldRef)
+        writes[methodId].set(idOf(((InstanceFieldRef) leftOp).getField()));
       Value rightOp = assignStmt.getRightOp();
-      if (rightOp instanceof InstanceFieldRef) {
-        SootField field = ((InstanceFieldRef) rightOp).getField();
-        methodsToFieldsReads.put(method, field);
-        methodsToFieldsWritesAndReads.put(method, field);
-      }
+      if (rightOp instanceof InstanceFieldRef)
+        reads[methodId].set(idOf(((InstanceFieldRef) rightOp).getField()));
       if (rightOp instanceof NewExpr)
-        methodsToAllocs.put(method, ((NewExpr) rightOp).getType());
+        allocs[methodId].set(idOf(((NewExpr) rightOp).getType()));
     }
   }
 
-  private boolean isIgnoredMethod(SootMethod method) {
-    return method.toString().contains("int hashCode()")
-        || method.toString().contains("java.lang.Object equals(java.lang.Object)")
-        || method.toString().contains("toString()");
+  private int idOf(SootField field) {
+    Integer id = fieldIds.get(field);
+    if (id == null) {
+      id = fieldIds.size();
+      fieldIds.put(field, id);
+    }
+    return id;
   }
 
-  private boolean readsToFieldInternal(final SootMethod method, final SootField field) {
-    return interactWithField(method, field, new GrepFieldRead());
+  private int idOf(Type type) {
+    Integer id = typeIds.get(type);
+    if (id == null) {
+      id = types.size();
+      typeIds.put(type, id);
+      types.add(type);
+    }
+    return id;
   }
 
-  private final LoadingCache<Pair<SootMethod, SootField>, Boolean> writeCache =
-      IDESolver.DEFAULT_CACHE_BUILDER
-          .build(new CacheLoader<Pair<SootMethod, SootField>, Boolean>() {
-
-
-            @Override
-            public Boolean load(Pair<SootMethod, SootField> arg0) throws Exception {
-              // TODO Auto-generated method stub
-              return writesToFieldInternal(arg0.getO1(), arg0.getO2());
-            }
-          });
-  private final LoadingCache<Pair<SootMethod, SootField>, Boolean> readCache =
-      IDESolver.DEFAULT_CACHE_BUILDER
-          .build(new CacheLoader<Pair<SootMethod, SootField>, Boolean>() {
-
-
-            @Override
-            public Boolean load(Pair<SootMethod, SootField> arg0) throws Exception {
-              return readsToFieldInternal(arg0.getO1(), arg0.getO2());
-            }
-          });
-  private final LoadingCache<Pair<SootMethod, Type>, Boolean> allocCache =
-      IDESolver.DEFAULT_CACHE_BUILDER.build(new CacheLoader<Pair<SootMethod, Type>, Boolean>() {
-
-
-        @Override
-        public Boolean load(Pair<SootMethod, Type> arg0) throws Exception {
-          return containsAllocSiteOfTypeInternal(arg0.getO1(), arg0.getO2());
-        }
-      });
-  private final LoadingCache<Pair<SootMethod, SootField>, Boolean> readOrWriteCache =
-      IDESolver.DEFAULT_CACHE_BUILDER
-          .build(new CacheLoader<Pair<SootMethod, SootField>, Boolean>() {
-
-
-            @Override
-            public Boolean load(Pair<SootMethod, SootField> arg0) throws Exception {
-              return readOrWriteToFieldInternal(arg0.getO1(), arg0.getO2());
-            }
-          });
-
-  public boolean writesToField(final SootMethod method, final SootField field) {
-    return writeCache.getUnchecked(new Pair<SootMethod, SootField>(method, field));
+  /**
+   * @return The numbers of the reachable callees of each method along the edges retained by the
+   *         {@link EdgeFilter}.
+   */
+  private int[][] callees() {
+    int[][] callees = new int[methods.size()][];
+    EdgeFilter filter = new EdgeFilter();
+    for (int m = 0; m < callees.length; m++) {
+      Set<Integer> targets = new HashSet<>();
+      Iterator<Edge> edges = filter.wrap(Scene.v().getCallGraph().edgesOutOf(methods.get(m)));
+      while (edges.hasNext()) {
+        Integer target = methodIds.get(edges.next().getTgt().method());
+        if (target != null)
+          targets.add(target);
+      }
+      callees[m] = new int[targets.size()];
+      int i = 0;
+      for (int target : targets)
+        callees[m][i++] = target;
+    }
+    return callees;
   }
 
-  public boolean readsFromField(final SootMethod method, final SootField field) {
-    return readCache.getUnchecked(new Pair<SootMethod, SootField>(method, field));
+  /**
+   * Tarjan's algorithm without recursion, such that deep call chains do not overflow the stack.
+   *
+   * @param component Receives the number of the component of each method.
+   * @return The members of the components, a component is listed after all components it
+   *         calls into.
+   */
+  private static List<int[]> stronglyConnectedComponents(int[][] succs, int[] component) {
+    int n = succs.length;
+    int[] index = new int[n];
+    Arrays.fill(index, -1);
+    int[] lowLink = new int[n];
+    boolean[] onStack = new boolean[n];
+    int[] stack = new int[n];
+    int[] callStack = new int[n];
+    int[] nextSucc = new int[n];
+    int sp = 0;
+    int counter = 0;
+    List<int[]> components = new ArrayList<>();
+    for (int root = 0; root < n; root++) {
+      if (index[root] >= 0)
+        continue;
+      int csp = 0;
+      index[root] = lowLink[root] = counter++;
+      stack[sp++] = root;
+      onStack[root] = true;
+      callStack[csp++] = root;
+      while (csp > 0) {
+        int v = callStack[csp - 1];
+        if (nextSucc[v] < succs[v].length) {
+          int w = succs[v][nextSucc[v]++];
+          if (index[w] < 0) {
+            index[w] = lowLink[w] = counter++;
+            stack[sp++] = w;
+            onStack[w] = true;
+            callStack[csp++] = w;
+          } else if (onStack[w]) {
+            lowLink[v] = Math.min(lowLink[v], index[w]);
+          }
+          continue;
+        }
+        csp--;
+        if (csp > 0) {
+          int parent = callStack[csp - 1];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+        }
+        if (lowLink[v] == index[v]) {
+          int start = sp - 1;
+          while (stack[start] != v)
+            start--;
+          int[] members = Arrays.copyOfRange(stack, start, sp);
+          for (int m : members) {
+            onStack[m] = false;
+            component[m] = components.size();
+          }
+          sp = start;
+          components.add(members);
+        }
+      }
+    }
+    return components;
   }
 
-  private boolean writesToFieldInternal(final SootMethod method, final SootField field) {
-    return interactWithField(method, field, new GrepFieldWrite());
+  /**
+   * Unions the facts bottom-up. The components are grouped by their height in the condensed call
+   * graph, the components of one height only call into lower components and are computed in
+   * parallel.
+   */
+  private void propagate(final List<int[]> components, final int[] component, final int[][] callees) {
+    int[] height = new int[components.size()];
+    List<List<Integer>> byHeight = new ArrayList<>();
+    for (int c = 0; c < components.size(); c++) {
+      for (int m : components.get(c))
+        for (int callee : callees[m])
+          if (component[callee] != c)
+            height[c] = Math.max(height[c], height[component[callee]] + 1);
+      while (byHeight.size() <= height[c])
+        byHeight.add(new ArrayList<Integer>());
+      byHeight.get(height[c]).add(c);
+    }
+    for (List<Integer> level : byHeight) {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (final int c : level) {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            propagate(c, components.get(c), component, callees);
+            return null;
+          }
+        });
+      }
+      try {
+        for (Future<Void> f : executor.invokeAll(tasks))
+          f.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
   }
 
-  private boolean readOrWriteToFieldInternal(final SootMethod method, final SootField field) {
-    return interactWithField(method, field, new GrepFieldWriteOrRead());
+  private void propagate(int c, int[] members, int[] component, int[][] callees) {
+    BitSet r = new BitSet();
+    BitSet w = new BitSet();
+    BitSet a = new BitSet();
+    Set<Integer> calleeComponents = new HashSet<>();
+    for (int m : members) {
+      r.or(reads[m]);
+      w.or(writes[m]);
+      a.or(allocs[m]);
+      for (int callee : callees[m]) {
+        // Computed on a lower height, its bitsets are shared by the component.
+        if (component[callee] != c && calleeComponents.add(component[callee])) {
+          r.or(reads[callee]);
+          w.or(writes[callee]);
+          a.or(allocs[callee]);
+        }
+      }
+    }
+    for (int m : members) {
+      reads[m] = r;
+      writes[m] = w;
+      allocs[m] = a;
+    }
   }
 
-
-  public boolean containsAllocSiteOfType(final SootMethod method, final Type type) {
-    return allocCache.getUnchecked(new Pair<SootMethod, Type>(method, type));
+  /**
+   * @return The methods the analysis may ignore at call sites, see
+   *         {@link boomerang.BoomerangContext#addIgnoredMethod(SootMethod)}.
+   */
+  public Set<SootMethod> getIgnoredMethods() {
+    return ignoredMethods;
   }
 
-  private boolean containsAllocSiteOfTypeInternal(final SootMethod method, final Type type) {
-    return interactWithField(method, type, new GrepAllocSite());
+  private boolean isIgnoredMethod(SootMethod method) {
+    return method.toString().contains("int hashCode()")
+        || method.toString().contains("java.lang.Object equals(java.lang.Object)")
+        || method.toString().contains("toString()");
   }
 
-  public boolean accessesField(final SootMethod method, final SootField field) {
-    return readOrWriteCache.getUnchecked(new Pair<SootMethod, SootField>(method, field));
+  public boolean writesToField(final SootMethod method, final SootField field) {
+    return test(writes, method, fieldIds.get(field));
   }
 
-  private <T> boolean interactWithField(final SootMethod method, final T field, final Grep<T> grep) {
-    QueueReader<MethodOrMethodContext> reachable = getReachable(method).listener();
-    while (reachable.hasNext()) {
-      MethodOrMethodContext next = reachable.next();
-      if (next.method() == null)
-        continue;
-      if (isIgnoredMethod(next.method()))
-        continue;
-
-      if (grep.grep(next.method(), field))
-        return true;
-    }
-    return false;
+  public boolean readsFromField(final SootMethod method, final SootField field) {
+    return test(reads, method, fieldIds.get(field));
   }
 
-  private ReachableMethods getReachable(SootMethod m) {
-    ReachableMethods mtds = reachables.get(m);
-
-    if (mtds == null) {
-      ArrayList<MethodOrMethodContext> entryPoints = new ArrayList<MethodOrMethodContext>();
-      entryPoints.add(m);
-      mtds =
-          new ReachableMethods(Scene.v().getCallGraph(), entryPoints.iterator(), new EdgeFilter());
-      mtds.update();
-      reachables.put(m, mtds);
-    }
-
-    return mtds;
+  public boolean accessesField(final SootMethod method, final SootField field) {
+    return readsFromField(method, field) || writesToField(method, field);
   }
 
-  private class GrepAllocSite implements Grep<Type> {
-
-    @Override
-    public boolean grep(SootMethod method, Type t) {
-      Collection<Type> collection = methodsToAllocs.get(method);
-      for (Type child : collection) {
-        if (Scene.v().getFastHierarchy().canStoreType(child, t)) {
-          return true;
-        }
-      }
+  public boolean containsAllocSiteOfType(final SootMethod method, final Type type) {
+    Integer methodId = methodIds.get(method);
+    if (methodId == null)
       return false;
-    }
-  }
-  private interface Grep<T> {
-    boolean grep(SootMethod method, T t);
+    return allocs[methodId].intersects(assignableAllocs(type));
   }
 
-  private class GrepFieldRead implements Grep<SootField> {
-
-    @Override
-    public boolean grep(SootMethod method, SootField t) {
-      return methodsToFieldsReads.get(method).contains(t);
-    }
-
+  private boolean test(BitSet[] facts, SootMethod method, Integer bit) {
+    Integer methodId = methodIds.get(method);
+    return methodId != null && bit != null && facts[methodId].get(bit);
   }
-  private class GrepFieldWriteOrRead implements Grep<SootField> {
 
-    @Override
-    public boolean grep(SootMethod method, SootField t) {
-      return methodsToFieldsWritesAndReads.get(method).contains(t);
+  private BitSet assignableAllocs(Type type) {
+    BitSet assignable = assignableAllocs.get(type);
+    if (assignable == null) {
+      assignable = new BitSet(types.size());
+      for (int t = 0; t < types.size(); t++)
+        if (Scene.v().getFastHierarchy().canStoreType(types.get(t), type))
+          assignable.set(t);
+      assignableAllocs.putIfAbsent(type, assignable);
     }
-
+    return assignable;
   }
-  private class GrepFieldWrite implements Grep<SootField> {
-
-    @Override
-    public boolean grep(SootMethod method, SootField t) {
-      return methodsToFieldsWrites.get(method).contains(t);
-    }
-
-  }
-
-
-
 }
@@ -0,0 +1,316 @@
+package boomerang.server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import boomerang.BoomerangOptions;
+import boomerang.accessgraph.FieldIds;
+import boomerang.cfg.ExtendedICFG;
+import boomerang.cfg.ICFGSnapshot;
+import boomerang.cfg.IExtendedICFG;
+import boomerang.preanalysis.PreparationTransformer;
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Transform;
+import soot.options.Options;
+
+/**
+ * A long-running analysis process. The Soot scene, the call graph and the
+ * {@link ExtendedICFG} are built once on startup, afterwards the server answers
+ * queries until it receives a shutdown request, see {@link QueryHandler} for
+ * the protocol. Usage:
+ * 
+ * <pre>
+ * java boomerang.server.BoomerangServer --cp &lt;soot classpath&gt; --main &lt;main class&gt; [--include-jdk] [--port &lt;port&gt;] [--time-budget &lt;ms&gt;] [--snapshot &lt;file&gt;] [--query-cache &lt;size&gt;]
+ * </pre>
+ * 
+ * With a snapshot file, the control-flow graph is loaded from the file if it
+ * exists and was taken of the same class path, hence the call graph is not
+ * built. Otherwise the graph is built and written to the file, see
+ * {@link ICFGSnapshot}.
+ * 
+ * Without a port, requests are read from stdin and responses are written to
+ * stdout, one per line. All other output is redirected to stderr. With a port,
+ * the server listens on the loopback interface and answers each connection
+ * line by line.
+ * 
+ * @author spaeth
+ *
+ */
+public class BoomerangServer {
+	private final QueryHandler handler;
+
+	public BoomerangServer(QueryHandler handler) {
+		this.handler = handler;
+	}
+
+	public static void main(String[] args) throws IOException {
+		String classPath = null;
+		String mainClass = null;
+		boolean includeJDK = false;
+		int port = -1;
+		long timeBudget = -1;
+		File snapshot = null;
+		int queryCacheSize = 0;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--cp":
+				classPath = args[++i];
+				break;
+			case "--main":
+				mainClass = args[++i];
+				break;
+			case "--include-jdk":
+				includeJDK = true;
+				break;
+			case "--port":
+				port = Integer.parseInt(args[++i]);
+				break;
+			case "--time-budget":
+				timeBudget = Long.parseLong(args[++i]);
+				break;
+			case "--snapshot":
+				snapshot = new File(args[++i]);
+				break;
+			case "--query-cache":
+				queryCacheSize = Integer.parseInt(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument " + args[i]);
+			}
+		}
+		if (classPath == null || mainClass == null)
+			throw new IllegalArgumentException("Usage: BoomerangServer --cp <soot classpath> --main <main class> "
+					+ "[--include-jdk] [--port <port>] [--time-budget <ms>] [--snapshot <file>] [--query-cache <size>]");
+		PrintStream stdout = System.out;
+		if (port < 0)
+			// Responses own stdout.
+			System.setOut(System.err);
+		IExtendedICFG icfg = initializeSoot(classPath, mainClass, includeJDK, snapshot);
+		BoomerangServer server = new BoomerangServer(new QueryHandler(options(icfg, timeBudget, queryCacheSize)));
+		System.err.println("Boomerang server ready");
+		if (port < 0)
+			server.serve(System.in, stdout);
+		else
+			server.listen(port);
+	}
+
+	/**
+	 * Loads the classes, sets the main method of the main class as entry point
+	 * and builds the call graph with Spark.
+	 */
+	static void initializeSoot(String classPath, String mainClass, boolean includeJDK) {
+		setUpScene(classPath, mainClass, includeJDK);
+		PackManager.v().getPack("wjtp").add(new Transform("wjtp.prepare", new PreparationTransformer()));
+		PackManager.v().getPack("cg").apply();
+		PackManager.v().getPack("wjtp").apply();
+	}
+
+	/**
+	 * Loads the control-flow graph from the snapshot file if it exists,
+	 * otherwise initializes Soot as {@link #initializeSoot(String, String, boolean)}
+	 * and writes the graph to the snapshot file.
+	 * 
+	 * @param snapshot
+	 *            The snapshot file, <code>null</code> to always build the graph.
+	 */
+	static IExtendedICFG initializeSoot(String classPath, String mainClass, boolean includeJDK, File snapshot)
+			throws IOException {
+		if (snapshot == null) {
+			initializeSoot(classPath, mainClass, includeJDK);
+			return new ExtendedICFG();
+		}
+		String fingerprint = fingerprint(classPath, mainClass, includeJDK);
+		if (snapshot.exists()) {
+			try {
+				setUpScene(classPath, mainClass, includeJDK);
+				ICFGSnapshot loaded = ICFGSnapshot.open(snapshot, fingerprint);
+				new PreparationTransformer().transform();
+				System.err.println("Loaded control-flow graph from " + snapshot);
+				return loaded.icfg();
+			} catch (IOException | IllegalStateException e) {
+				System.err.println("Ignoring snapshot " + snapshot + ": " + e.getMessage());
+			}
+		}
+		initializeSoot(classPath, mainClass, includeJDK);
+		ExtendedICFG icfg = new ExtendedICFG();
+		ICFGSnapshot.write(icfg, snapshot, fingerprint);
+		System.err.println("Wrote control-flow graph to " + snapshot);
+		return icfg;
+	}
+
+	/**
+	 * Identifies the analyzed program by the class path entries and a hash of
+	 * their contents. The contents of archives are hashed, directories are
+	 * walked and the paths, sizes and modification times of their files are
+	 * hashed.
+	 */
+	private static String fingerprint(String classPath, String mainClass, boolean includeJDK) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		StringBuilder fingerprint = new StringBuilder(mainClass);
+		if (includeJDK)
+			fingerprint.append(" (with JDK ").append(System.getProperty("java.version")).append(")");
+		for (String entry : classPath.split(File.pathSeparator)) {
+			File f = new File(entry);
+			fingerprint.append(File.pathSeparator).append(f.getAbsolutePath());
+			if (f.isDirectory())
+				hashDirectory(f, "", digest);
+			else if (f.isFile())
+				hashFile(f, digest);
+			// Separates the entries, such that moving files between entries
+			// changes the hash.
+			digest.update((byte) 0);
+		}
+		fingerprint.append('#');
+		for (byte b : digest.digest())
+			fingerprint.append(String.format("%02x", b));
+		return fingerprint.toString();
+	}
+
+	private static void hashDirectory(File directory, String path, MessageDigest digest) throws IOException {
+		File[] files = directory.listFiles();
+		if (files == null)
+			throw new IOException("Cannot list " + directory);
+		Arrays.sort(files);
+		for (File f : files) {
+			String name = path + "/" + f.getName();
+			if (f.isDirectory()) {
+				hashDirectory(f, name, digest);
+			} else {
+				digest.update((name + "@" + f.length() + "/" + f.lastModified() + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	private static void hashFile(File file, MessageDigest digest) throws IOException {
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = new FileInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) > 0)
+				digest.update(buffer, 0, read);
+		}
+	}
+
+	private static void setUpScene(String classPath, String mainClass, boolean includeJDK) {
+		G.reset();
+		FieldIds.reset();
+		Options.v().set_whole_program(true);
+		Options.v().setPhaseOption("cg.spark", "on");
+		Options.v().set_output_format(Options.output_format_none);
+		Options.v().set_no_bodies_for_excluded(true);
+		Options.v().set_allow_phantom_refs(true);
+		String sootCp = classPath;
+		if (includeJDK) {
+			sootCp += File.pathSeparator + System.getProperty("java.home") + "/lib/rt.jar";
+			Options.v().setPhaseOption("cg", "trim-clinit:false");
+		}
+		List<String> excluded = new LinkedList<>();
+		for (String p : new String[] { "sun.*", "javax.*", "com.sun.*", "com.ibm.*", "org.xml.*", "org.w3c.*",
+				"apple.awt.*", "com.apple.*" })
+			excluded.add(p);
+		Options.v().set_exclude(excluded);
+		Options.v().set_soot_classpath(sootCp);
+		Scene.v().addBasicClass(mainClass, SootClass.BODIES);
+		Scene.v().loadNecessaryClasses();
+		SootClass c = Scene.v().forceResolve(mainClass, SootClass.BODIES);
+		c.setApplicationClass();
+		SootMethod main = c.getMethodByName("main");
+		Scene.v().setEntryPoints(Collections.singletonList(main));
+	}
+
+	static BoomerangOptions options(final IExtendedICFG icfg, final long timeBudget, final int queryCacheSize) {
+		return new BoomerangOptions() {
+			@Override
+			public IExtendedICFG icfg() {
+				return icfg;
+			}
+
+			@Override
+			public long getTimeBudget() {
+				return (timeBudget < 0 ? super.getTimeBudget() : timeBudget);
+			}
+
+			@Override
+			public int getQueryCacheSize() {
+				return queryCacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Answers the requests read from the input line by line until the input
+	 * ends or a shutdown is requested.
+	 */
+	public void serve(InputStream in, OutputStream out) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		String line;
+		while (!handler.isShutdown() && (line = reader.readLine()) != null) {
+			if (line.trim().isEmpty())
+				continue;
+			writer.println(handler.handle(line));
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Accepts connections on the loopback interface until a shutdown is
+	 * requested. Each connection is served by its own thread, the requests of
+	 * all connections are answered one after the other.
+	 */
+	public void listen(int port) throws IOException {
+		try (final ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			System.err.println("Listening on " + serverSocket.getLocalSocketAddress());
+			while (!handler.isShutdown()) {
+				final Socket client;
+				try {
+					client = serverSocket.accept();
+				} catch (IOException e) {
+					if (handler.isShutdown())
+						break;
+					throw e;
+				}
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try (Socket s = client) {
+							serve(s.getInputStream(), s.getOutputStream());
+							if (handler.isShutdown())
+								serverSocket.close();
+						} catch (IOException e) {
+							System.err.println("Connection failed: " + e.getMessage());
+						}
+					}
+				}, "boomerang-server-client");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+	}
+}
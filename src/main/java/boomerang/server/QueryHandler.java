@@ -0,0 +1,197 @@
+package boomerang.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import boomerang.AliasFinder;
+import boomerang.AliasResults;
+import boomerang.BoomerangOptions;
+import boomerang.accessgraph.AccessGraph;
+import boomerang.accessgraph.WrappedSootField;
+import boomerang.context.AllCallersRequester;
+import boomerang.context.IContextRequester;
+import boomerang.context.NoContextRequester;
+import heros.solver.Pair;
+import soot.Body;
+import soot.Local;
+import soot.Scene;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Unit;
+
+/**
+ * Answers the requests of a {@link BoomerangServer}. A request is a JSON
+ * object on a single line, the response as well. A query request
+ * 
+ * <pre>
+ * {"id": 1, "method": "&lt;A: void foo()&gt;", "stmt": 3, "base": "r1", "fields": ["&lt;A: B f&gt;"], "context": "all"}
+ * </pre>
+ * 
+ * asks for the aliases of the access graph <code>r1.f</code> at the statement
+ * with index 3 in the units of the body of the method. Fields are given by
+ * their signature, the array field as <code>ARRAY</code>. The optional
+ * context is either <code>none</code> (default) or <code>all</code> for the
+ * {@link NoContextRequester} or {@link AllCallersRequester}. The response
+ * 
+ * <pre>
+ * {"id": 1, "timedout": false, "results": [{"method": "...", "stmt": 0, "allocationSite": "...", "aliases": ["..."]}]}
+ * </pre>
+ * 
+ * holds one entry per allocation site with the index of the allocation
+ * statement within its method. The command requests
+ * <code>{"command": "reset"}</code> and <code>{"command": "shutdown"}</code>
+ * discard the solver state (and the cached results, if the
+ * {@link boomerang.QueryCache} is enabled) and stop the server. Failed
+ * requests are answered with an <code>error</code> member. A query which
+ * overflows the stack or exhausts the heap additionally resets the solver
+ * state, the server keeps answering requests.
+ * 
+ * The queries share the solver state of one {@link AliasFinder} session.
+ * Requests are handled one after the other.
+ * 
+ * @author spaeth
+ *
+ */
+public class QueryHandler {
+	private static final String ARRAY_FIELD = "ARRAY";
+
+	private final AliasFinder finder;
+	private volatile boolean shutdown;
+
+	public QueryHandler(BoomerangOptions options) {
+		this.finder = new AliasFinder(options);
+		this.finder.startSession();
+	}
+
+	/**
+	 * @return <code>true</code> once a shutdown request has been handled.
+	 */
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	/**
+	 * Handles the request and returns the response line.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized String handle(String line) {
+		JSONObject response = new JSONObject();
+		try {
+			Object parsed = new JSONParser().parse(line);
+			if (!(parsed instanceof JSONObject))
+				throw new IllegalArgumentException("Request is not a JSON object");
+			JSONObject request = (JSONObject) parsed;
+			if (request.containsKey("id"))
+				response.put("id", request.get("id"));
+			Object command = request.get("command");
+			if ("shutdown".equals(command)) {
+				shutdown = true;
+				finder.endSession();
+				finder.close();
+			} else if ("reset".equals(command)) {
+				finder.startSession();
+				if (finder.getQueryCache() != null)
+					finder.getQueryCache().invalidateAll();
+			} else if (command != null) {
+				throw new IllegalArgumentException("Unknown command " + command);
+			} else {
+				query(request, response);
+			}
+		} catch (ParseException e) {
+			response.put("error", "Malformed request: " + line);
+		} catch (RuntimeException e) {
+			response.put("error", String.valueOf(e.getMessage()));
+		} catch (StackOverflowError | OutOfMemoryError e) {
+			// The query was aborted in the middle of the propagation, the solver
+			// state is inconsistent and is discarded. This also frees the path
+			// edges of the session.
+			finder.startSession();
+			response.put("error", "Query aborted by " + e.getClass().getSimpleName() + ", the session has been reset");
+		}
+		return response.toJSONString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void query(JSONObject request, JSONObject response) {
+		SootMethod method = Scene.v().getMethod(string(request, "method"));
+		if (!method.hasActiveBody())
+			throw new IllegalArgumentException("Method " + method + " has no body");
+		Body body = method.getActiveBody();
+		List<Unit> units = new ArrayList<>(body.getUnits());
+		int index = ((Number) required(request, "stmt")).intValue();
+		if (index < 0 || index >= units.size())
+			throw new IllegalArgumentException("Statement index " + index + " out of range");
+		AccessGraph ap = accessGraph(body, string(request, "base"), (Collection<Object>) request.get("fields"));
+		AliasResults res = finder.findAliasAtStmt(ap, units.get(index), contextRequester(request.get("context")));
+		response.put("timedout", res.queryTimedout());
+		response.put("results", serialize(res));
+	}
+
+	private static AccessGraph accessGraph(Body body, String base, Collection<Object> fields) {
+		Local local = null;
+		for (Local l : body.getLocals()) {
+			if (l.getName().equals(base))
+				local = l;
+		}
+		if (local == null)
+			throw new IllegalArgumentException("Unknown local " + base);
+		if (fields == null || fields.isEmpty())
+			return AccessGraph.create(local);
+		WrappedSootField[] wrapped = new WrappedSootField[fields.size()];
+		int i = 0;
+		for (Object sig : fields) {
+			SootField field = ARRAY_FIELD.equals(sig) ? AliasFinder.ARRAY_FIELD : Scene.v().getField(sig.toString());
+			wrapped[i++] = new WrappedSootField(field, null);
+		}
+		return AccessGraph.create(local, wrapped);
+	}
+
+	private static IContextRequester contextRequester(Object context) {
+		if (context == null || "none".equals(context))
+			return new NoContextRequester();
+		if ("all".equals(context))
+			return new AllCallersRequester();
+		throw new IllegalArgumentException("Unknown context " + context);
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONArray serialize(AliasResults res) {
+		JSONArray results = new JSONArray();
+		for (Entry<Pair<Unit, AccessGraph>, Collection<AccessGraph>> e : res.asMap().entrySet()) {
+			JSONObject entry = new JSONObject();
+			Unit allocationSite = e.getKey().getO1();
+			AccessGraph fact = e.getKey().getO2();
+			Unit allocationStmt = (fact.hasAllocationSite() ? fact.getSourceStmt() : allocationSite);
+			SootMethod m = (allocationStmt == null ? null : finder.context.icfg.getMethodOf(allocationStmt));
+			if (m != null && m.hasActiveBody()) {
+				entry.put("method", m.getSignature());
+				entry.put("stmt", new ArrayList<>(m.getActiveBody().getUnits()).indexOf(allocationStmt));
+			}
+			entry.put("allocationSite", String.valueOf(allocationStmt));
+			JSONArray aliases = new JSONArray();
+			for (AccessGraph alias : e.getValue())
+				aliases.add(alias.toString());
+			entry.put("aliases", aliases);
+			results.add(entry);
+		}
+		return results;
+	}
+
+	private static Object required(JSONObject request, String key) {
+		Object value = request.get(key);
+		if (value == null)
+			throw new IllegalArgumentException("Missing " + key);
+		return value;
+	}
+
+	private static String string(JSONObject request, String key) {
+		return required(request, key).toString();
+	}
+}
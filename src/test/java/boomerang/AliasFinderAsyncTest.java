@@ -0,0 +1,269 @@
+package boomerang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import boomerang.accessgraph.AccessGraph;
+import boomerang.cfg.ExtendedICFG;
+import boomerang.cfg.IExtendedICFG;
+import boomerang.context.NoContextRequester;
+import boomerang.ifdssolver.IPathEdge;
+import boomerang.ifdssolver.IPropagationController;
+import soot.Local;
+import soot.SceneTransformer;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import test.core.selfrunning.AbstractTestingFramework;
+import test.core.selfrunning.AllocatedObject;
+
+/**
+ * Runs asynchronous queries for the argument of <code>queryFor</code> in the
+ * test method and compares their results with a synchronous query of another
+ * finder. Each test method is run by the analysis transformer.
+ */
+public class AliasFinderAsyncTest extends AbstractTestingFramework {
+
+	public class Allocation implements AllocatedObject {
+
+	}
+
+	@Test
+	public void cancelBeforeStart() {
+		analyzedProgram();
+	}
+
+	@Test
+	public void cancelDuringFixpoint() {
+		analyzedProgram();
+	}
+
+	@Test
+	public void synchronousQueryFailsWhileAsynchronousQueryRuns() {
+		analyzedProgram();
+	}
+
+	@Test
+	public void queuedQueriesComplete() {
+		analyzedProgram();
+	}
+
+	private void analyzedProgram() {
+		Object alloc = new Allocation();
+		Object alias = (staticallyUnknown() ? alloc : new Allocation());
+		queryFor(alias);
+	}
+
+	/**
+	 * Called by the propagation controller of the finders on every
+	 * propagation, <code>null</code> if nothing is to be done.
+	 */
+	private final AtomicReference<Runnable> onPropagation = new AtomicReference<>();
+	private AccessGraph queried;
+	private Unit queryStmt;
+	private AliasResults expected;
+
+	@Override
+	protected SceneTransformer createAnalysisTransformer() {
+		return new SceneTransformer() {
+			protected void internalTransform(String phaseName, @SuppressWarnings("rawtypes") Map options) {
+				IExtendedICFG icfg = new ExtendedICFG(new JimpleBasedInterproceduralCFG(true));
+				Stmt queryFor = queryForStmt();
+				queryStmt = queryFor;
+				queried = AccessGraph.create((Local) queryFor.getInvokeExpr().getArg(0));
+				try (AliasFinder reference = new AliasFinder(options(icfg))) {
+					reference.startQuery();
+					expected = reference.findAliasAtStmt(queried, queryStmt, new NoContextRequester());
+				}
+				Assert.assertFalse(expected.queryTimedout());
+				Assert.assertFalse(expected.keySet().isEmpty());
+
+				try (AliasFinder finder = new AliasFinder(options(icfg))) {
+					String test = testMethodName.getMethodName();
+					if (test.equals("cancelBeforeStart"))
+						cancelBeforeStart(finder);
+					else if (test.equals("cancelDuringFixpoint"))
+						cancelDuringFixpoint(finder);
+					else if (test.equals("synchronousQueryFailsWhileAsynchronousQueryRuns"))
+						synchronousQueryFailsWhileAsynchronousQueryRuns(finder);
+					else
+						queuedQueriesComplete(finder);
+				} catch (InterruptedException | ExecutionException | TimeoutException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
+	private void cancelBeforeStart(AliasFinder finder) throws InterruptedException, ExecutionException {
+		QueuingExecutor executor = new QueuingExecutor();
+		CompletableFuture<AliasResults> cancelled = finder.findAliasAtStmtAsync(queried, queryStmt,
+				new NoContextRequester(), executor);
+		// The second query waits for the first one to finish.
+		CompletableFuture<AliasResults> next = finder.findAliasAtStmtAsync(queried, queryStmt,
+				new NoContextRequester(), executor);
+		Assert.assertEquals(1, executor.tasks.size());
+		Assert.assertTrue(cancelled.cancel(true));
+		executor.runAll();
+		Assert.assertTrue(cancelled.isCancelled());
+		assertExpected(next.get());
+		assertReusable(finder);
+	}
+
+	private void cancelDuringFixpoint(AliasFinder finder) throws InterruptedException, ExecutionException {
+		QueuingExecutor executor = new QueuingExecutor();
+		final CompletableFuture<AliasResults> cancelled = finder.findAliasAtStmtAsync(queried, queryStmt,
+				new NoContextRequester(), executor);
+		onPropagation.set(new Runnable() {
+			@Override
+			public void run() {
+				onPropagation.set(null);
+				cancelled.cancel(true);
+			}
+		});
+		executor.runAll();
+		Assert.assertTrue(cancelled.isCancelled());
+		Assert.assertNull(onPropagation.get());
+		assertReusable(finder);
+	}
+
+	private void synchronousQueryFailsWhileAsynchronousQueryRuns(final AliasFinder finder)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		final AtomicReference<Throwable> synchronousFailure = new AtomicReference<>();
+		onPropagation.set(new Runnable() {
+			@Override
+			public void run() {
+				onPropagation.set(null);
+				Thread synchronous = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							finder.findAliasAtStmt(queried, queryStmt);
+						} catch (Throwable e) {
+							synchronousFailure.set(e);
+						}
+					}
+				});
+				synchronous.start();
+				try {
+					synchronous.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CompletableFuture<AliasResults> running = finder.findAliasAtStmtAsync(queried, queryStmt,
+					new NoContextRequester(), executor);
+			assertExpected(running.get(1, TimeUnit.MINUTES));
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertTrue(synchronousFailure.get() instanceof IllegalStateException);
+		assertReusable(finder);
+	}
+
+	private void queuedQueriesComplete(AliasFinder finder)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<AliasResults>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				futures.add(finder.findAliasAtStmtAsync(queried, queryStmt, new NoContextRequester(), executor));
+			for (Future<AliasResults> future : futures)
+				assertExpected(future.get(1, TimeUnit.MINUTES));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * A synchronous and an asynchronous query of the finder yield the results
+	 * of the reference query.
+	 */
+	private void assertReusable(AliasFinder finder) throws InterruptedException, ExecutionException {
+		finder.startQuery();
+		assertExpected(finder.findAliasAtStmt(queried, queryStmt));
+		assertExpected(finder.findAliasAtStmtAsync(queried, queryStmt, new NoContextRequester(), new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		}).get());
+	}
+
+	private void assertExpected(AliasResults res) {
+		Assert.assertFalse(res.queryTimedout());
+		Assert.assertEquals(expected.keySet(), res.keySet());
+		Assert.assertEquals(expected.size(), res.size());
+	}
+
+	private Stmt queryForStmt() {
+		for (Unit u : sootTestMethod.getActiveBody().getUnits()) {
+			Stmt stmt = (Stmt) u;
+			if (stmt.containsInvokeExpr() && stmt.getInvokeExpr().getMethod().getName().equals("queryFor"))
+				return stmt;
+		}
+		throw new RuntimeException("No call to queryFor in " + sootTestMethod);
+	}
+
+	private BoomerangOptions options(final IExtendedICFG icfg) {
+		return new BoomerangOptions() {
+			@Override
+			public IExtendedICFG icfg() {
+				return icfg;
+			}
+
+			@Override
+			public IPropagationController<Unit, AccessGraph> propagationController() {
+				return new IPropagationController<Unit, AccessGraph>() {
+					@Override
+					public boolean continuePropagate(IPathEdge<Unit, AccessGraph> edge) {
+						Runnable action = onPropagation.get();
+						if (action != null)
+							action.run();
+						return true;
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Keeps the submitted tasks until {@link #runAll()} is called.
+	 */
+	private static class QueuingExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		/**
+		 * Runs the submitted tasks, including the ones submitted while running.
+		 */
+		void runAll() {
+			while (!tasks.isEmpty())
+				tasks.remove(0).run();
+		}
+	}
+
+	protected void queryFor(Object variable) {
+
+	}
+}
@@ -0,0 +1,114 @@
+package boomerang;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import boomerang.accessgraph.AccessGraph;
+import boomerang.cfg.ExtendedICFG;
+import boomerang.cfg.IExtendedICFG;
+import boomerang.context.NoContextRequester;
+import heros.solver.Pair;
+import soot.Local;
+import soot.SceneTransformer;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import test.core.selfrunning.AbstractTestingFramework;
+import test.core.selfrunning.AllocatedObject;
+
+/**
+ * Stops a query from its {@link AliasResultListener} and checks that the next
+ * query of the same finder is answered completely, outside of a session and
+ * within one.
+ */
+public class AliasResultListenerTest extends AbstractTestingFramework {
+
+	public class Allocation implements AllocatedObject {
+
+	}
+
+	@Test
+	public void stoppedQueryDoesNotAffectNextQuery() {
+		Object alloc = new Allocation();
+		Object alias = (staticallyUnknown() ? alloc : new Allocation());
+		queryFor(alias);
+	}
+
+	@Override
+	protected SceneTransformer createAnalysisTransformer() {
+		return new SceneTransformer() {
+			protected void internalTransform(String phaseName, @SuppressWarnings("rawtypes") Map options) {
+				IExtendedICFG icfg = new ExtendedICFG(new JimpleBasedInterproceduralCFG(true));
+				Stmt stmt = queryForStmt();
+				AccessGraph queried = AccessGraph.create((Local) stmt.getInvokeExpr().getArg(0));
+				AliasResults expected;
+				try (AliasFinder reference = new AliasFinder(options(icfg))) {
+					reference.startQuery();
+					expected = reference.findAliasAtStmt(queried, stmt);
+				}
+				Assert.assertFalse(expected.queryTimedout());
+				Assert.assertFalse(expected.keySet().isEmpty());
+
+				try (AliasFinder finder = new AliasFinder(options(icfg))) {
+					finder.startQuery();
+					assertStoppedThenComplete(finder, queried, stmt, expected);
+					finder.startSession();
+					assertStoppedThenComplete(finder, queried, stmt, expected);
+					finder.endSession();
+				}
+			}
+		};
+	}
+
+	private void assertStoppedThenComplete(AliasFinder finder, AccessGraph queried, Unit stmt,
+			AliasResults expected) {
+		final AtomicInteger allocationSites = new AtomicInteger();
+		AliasResults stopped = finder.findAliasAtStmt(queried, stmt, new NoContextRequester(),
+				new AliasResultListener() {
+					@Override
+					public boolean onAllocationSite(Pair<Unit, AccessGraph> allocationSite) {
+						allocationSites.incrementAndGet();
+						return false;
+					}
+
+					@Override
+					public boolean onAlias(Pair<Unit, AccessGraph> allocationSite, AccessGraph alias) {
+						return true;
+					}
+				});
+		// The query is stopped, unless the listener was notified by the last
+		// propagation. The stop must not carry over in either case, there is no
+		// startQuery() in between.
+		Assert.assertTrue(allocationSites.get() > 0);
+		Assert.assertTrue(stopped.queryTimedout() || stopped.keySet().equals(expected.keySet()));
+		AliasResults res = finder.findAliasAtStmt(queried, stmt);
+		Assert.assertFalse(res.queryTimedout());
+		Assert.assertEquals(expected.keySet(), res.keySet());
+		Assert.assertEquals(expected.size(), res.size());
+	}
+
+	private Stmt queryForStmt() {
+		for (Unit u : sootTestMethod.getActiveBody().getUnits()) {
+			Stmt stmt = (Stmt) u;
+			if (stmt.containsInvokeExpr() && stmt.getInvokeExpr().getMethod().getName().equals("queryFor"))
+				return stmt;
+		}
+		throw new RuntimeException("No call to queryFor in " + sootTestMethod);
+	}
+
+	private static BoomerangOptions options(final IExtendedICFG icfg) {
+		return new BoomerangOptions() {
+			@Override
+			public IExtendedICFG icfg() {
+				return icfg;
+			}
+		};
+	}
+
+	protected void queryFor(Object variable) {
+
+	}
+}
@@ -0,0 +1,114 @@
+package boomerang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import boomerang.accessgraph.AccessGraph;
+import boomerang.context.AllCallersRequester;
+import boomerang.context.NoContextRequester;
+import heros.solver.Pair;
+import soot.Unit;
+import soot.jimple.internal.JNopStmt;
+import soot.jimple.internal.JimpleLocal;
+
+public class QueryCacheTest {
+	private final Query q1 = new Query(AccessGraph.create(new JimpleLocal("a", null)), new JNopStmt());
+	private final Query q2 = new Query(AccessGraph.create(new JimpleLocal("b", null)), new JNopStmt());
+	private final Query q3 = new Query(AccessGraph.create(new JimpleLocal("c", null)), new JNopStmt());
+
+	private static AliasResults results(String alias) {
+		AliasResults res = new AliasResults();
+		Unit allocationSite = new JNopStmt();
+		res.put(new Pair<Unit, AccessGraph>(allocationSite, AccessGraph.create(new JimpleLocal(alias, null))),
+				AccessGraph.create(new JimpleLocal(alias, null)));
+		return res;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNonPositiveSize() {
+		new QueryCache(0);
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		QueryCache cache = new QueryCache(2);
+		NoContextRequester req = new NoContextRequester();
+		cache.put(q1, req, results("x"));
+		cache.put(q2, req, results("y"));
+		// Makes q2 the least recently used result.
+		assertNotNull(cache.get(q1, req));
+		cache.put(q3, req, results("z"));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get(q2, req));
+		assertNotNull(cache.get(q1, req));
+		assertNotNull(cache.get(q3, req));
+	}
+
+	@Test
+	public void countsHitsAndMisses() {
+		QueryCache cache = new QueryCache(4);
+		NoContextRequester req = new NoContextRequester();
+		assertEquals(0, cache.getHitRate(), 0);
+		assertNull(cache.get(q1, req));
+		cache.put(q1, req, results("x"));
+		assertNotNull(cache.get(q1, req));
+		assertNotNull(cache.get(q1, new NoContextRequester()));
+		assertNull(cache.get(q1, new AllCallersRequester()));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(0, cache.getEvictionCount());
+		assertEquals(0.5, cache.getHitRate(), 0);
+		cache.resetStatistics();
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void isolatesCopies() {
+		QueryCache cache = new QueryCache(4);
+		NoContextRequester req = new NoContextRequester();
+		AliasResults res = results("x");
+		cache.put(q1, req, res);
+		res.clear();
+		AliasResults cached = cache.get(q1, req);
+		assertEquals(1, cached.size());
+		cached.clear();
+		AliasResults again = cache.get(q1, req);
+		assertEquals(1, again.size());
+		assertNotSame(cached, again);
+	}
+
+	@Test
+	public void doesNotCacheTimedOutResults() {
+		QueryCache cache = new QueryCache(4);
+		NoContextRequester req = new NoContextRequester();
+		AliasResults res = results("x");
+		res.setTimedout();
+		cache.put(q1, req, res);
+		cache.put(q2, req, null);
+		assertEquals(0, cache.size());
+		assertNull(cache.get(q1, req));
+		assertNull(cache.get(q2, req));
+	}
+
+	@Test
+	public void invalidates() {
+		QueryCache cache = new QueryCache(4);
+		cache.put(q1, new NoContextRequester(), results("x"));
+		cache.put(q1, new AllCallersRequester(), results("x"));
+		cache.put(q2, new NoContextRequester(), results("y"));
+		cache.invalidate(q1);
+		assertEquals(1, cache.size());
+		assertNull(cache.get(q1, new AllCallersRequester()));
+		assertTrue(cache.get(q2, new NoContextRequester()) != null);
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,240 @@
+package boomerang;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import boomerang.cfg.ExtendedICFG;
+import boomerang.cfg.IExtendedICFG;
+import soot.SceneTransformer;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import test.core.selfrunning.AbstractTestingFramework;
+
+/**
+ * Schedules plain tasks on a {@link WorkStealingScheduler}. The scene only
+ * provides the control-flow graph the {@link BoomerangContext} of the
+ * scheduler is created with, each test method is run by the analysis
+ * transformer.
+ */
+public class WorkStealingSchedulerTest extends AbstractTestingFramework {
+
+	@Test
+	public void awaitsTasksScheduledByTasks() {
+		new Object();
+	}
+
+	@Test
+	public void rethrowsFailureOfTask() {
+		new Object();
+	}
+
+	@Test
+	public void stopsCancelledQuery() {
+		new Object();
+	}
+
+	@Test
+	public void stopsWhenBudgetIsExceeded() {
+		new Object();
+	}
+
+	@Test
+	public void awaitsRunningTasksWhenInterrupted() {
+		new Object();
+	}
+
+	@Override
+	protected SceneTransformer createAnalysisTransformer() {
+		return new SceneTransformer() {
+			protected void internalTransform(String phaseName, @SuppressWarnings("rawtypes") Map options) {
+				IExtendedICFG icfg = new ExtendedICFG(new JimpleBasedInterproceduralCFG(true));
+				String test = testMethodName.getMethodName();
+				BoomerangContext context = new BoomerangContext(options(icfg, test.equals("stopsWhenBudgetIsExceeded")));
+				WorkStealingScheduler scheduler = (WorkStealingScheduler) context.scheduler;
+				context.startBudget();
+				try {
+					if (test.equals("awaitsTasksScheduledByTasks"))
+						awaitsTasksScheduledByTasks(scheduler);
+					else if (test.equals("rethrowsFailureOfTask"))
+						rethrowsFailureOfTask(scheduler);
+					else if (test.equals("stopsCancelledQuery"))
+						stopsCancelledQuery(context, scheduler);
+					else if (test.equals("stopsWhenBudgetIsExceeded"))
+						stopsWhenBudgetIsExceeded(scheduler);
+					else
+						awaitsRunningTasksWhenInterrupted(scheduler);
+				} finally {
+					scheduler.shutdown();
+				}
+			}
+		};
+	}
+
+	private static BoomerangOptions options(final IExtendedICFG icfg, final boolean exhaustedMemory) {
+		return new BoomerangOptions() {
+			@Override
+			public IExtendedICFG icfg() {
+				return icfg;
+			}
+
+			@Override
+			public ContextScheduler getScheduler() {
+				return new WorkStealingScheduler(4);
+			}
+
+			@Override
+			public long getMemoryBudget() {
+				return (exhaustedMemory ? 1 : super.getMemoryBudget());
+			}
+		};
+	}
+
+	private void awaitsTasksScheduledByTasks(final WorkStealingScheduler scheduler) {
+		final AtomicInteger executed = new AtomicInteger();
+		for (int i = 0; i < 10; i++)
+			scheduler.add(fanOut(scheduler, executed, 5));
+		scheduler.awaitExecution();
+		// Each task of depth d schedules two tasks of depth d - 1.
+		Assert.assertEquals(10 * 63, executed.get());
+		Assert.assertTrue(scheduler.isEmpty());
+	}
+
+	private Runnable fanOut(final WorkStealingScheduler scheduler, final AtomicInteger executed, final int depth) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				executed.incrementAndGet();
+				if (depth == 0)
+					return;
+				scheduler.add(fanOut(scheduler, executed, depth - 1));
+				scheduler.add(fanOut(scheduler, executed, depth - 1));
+			}
+		};
+	}
+
+	private void rethrowsFailureOfTask(final WorkStealingScheduler scheduler) {
+		final IllegalStateException failure = new IllegalStateException("failing task");
+		scheduler.add(new Runnable() {
+			@Override
+			public void run() {
+				scheduler.add(new Runnable() {
+					@Override
+					public void run() {
+						throw failure;
+					}
+				});
+			}
+		});
+		try {
+			scheduler.awaitExecution();
+			Assert.fail("The failure of the task must be rethrown");
+		} catch (IllegalStateException e) {
+			Assert.assertSame(failure, e);
+		}
+		Assert.assertTrue(scheduler.isEmpty());
+
+		// The failure is reported once, the scheduler can be used again.
+		final AtomicBoolean executed = new AtomicBoolean();
+		scheduler.add(new Runnable() {
+			@Override
+			public void run() {
+				executed.set(true);
+			}
+		});
+		scheduler.awaitExecution();
+		Assert.assertTrue(executed.get());
+	}
+
+	private void stopsCancelledQuery(BoomerangContext context, WorkStealingScheduler scheduler) {
+		final AtomicInteger executed = new AtomicInteger();
+		context.stopQuery();
+		for (int i = 0; i < 100; i++)
+			scheduler.add(counting(executed));
+		try {
+			scheduler.awaitExecution();
+			Assert.fail("The cancellation must be reported");
+		} catch (BoomerangCancellationException e) {
+			// expected
+		}
+		Assert.assertEquals(0, executed.get());
+		Assert.assertTrue(scheduler.isEmpty());
+	}
+
+	private void stopsWhenBudgetIsExceeded(WorkStealingScheduler scheduler) {
+		final AtomicInteger executed = new AtomicInteger();
+		for (int i = 0; i < 5000; i++)
+			scheduler.add(counting(executed));
+		try {
+			scheduler.awaitExecution();
+			Assert.fail("The exhausted memory budget must be reported");
+		} catch (BoomerangCancellationException e) {
+			Assert.fail("An exhausted budget is not a cancellation");
+		} catch (BoomerangTimeoutException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Memory budget"));
+		}
+		// The budget is checked every 1000 tasks, the tasks after the check
+		// are skipped.
+		Assert.assertTrue(executed.get() < 5000);
+		Assert.assertTrue(scheduler.isEmpty());
+	}
+
+	private void awaitsRunningTasksWhenInterrupted(WorkStealingScheduler scheduler) {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicBoolean finished = new AtomicBoolean();
+		scheduler.add(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				finished.set(true);
+			}
+		});
+		try {
+			Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		Thread releaser = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					// release right away
+				}
+				release.countDown();
+			}
+		});
+		releaser.start();
+		Thread.currentThread().interrupt();
+		try {
+			scheduler.awaitExecution();
+			Assert.fail("The interruption must be reported");
+		} catch (BoomerangTimeoutException e) {
+			// expected
+		}
+		// The interrupt is kept for the caller, clearing it for the next test.
+		Assert.assertTrue(Thread.interrupted());
+		Assert.assertTrue(finished.get());
+		Assert.assertTrue(scheduler.isEmpty());
+	}
+
+	private static Runnable counting(final AtomicInteger executed) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				executed.incrementAndGet();
+			}
+		};
+	}
+}
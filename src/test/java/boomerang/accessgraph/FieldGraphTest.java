@@ -0,0 +1,63 @@
+package boomerang.accessgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import soot.RefType;
+import soot.SootField;
+import soot.jimple.internal.JNopStmt;
+
+public class FieldGraphTest {
+
+	private static WrappedSootField[] fields(int count) {
+		WrappedSootField[] fields = new WrappedSootField[count];
+		for (int i = 0; i < count; i++)
+			fields[i] = new WrappedSootField(new SootField("f" + i, RefType.v("java.lang.Object")), null);
+		return fields;
+	}
+
+	@Test
+	public void distinctFieldsHaveNoLoops() {
+		// More fields than bits in the mask of a cell, such that bits collide.
+		WrappedSootField[] fields = fields(200);
+		FieldGraph graph = new FieldGraph(fields[0]);
+		for (int i = 1; i < fields.length; i++) {
+			graph = (FieldGraph) graph.prependField(fields[i]);
+			assertFalse(graph.hasLoops());
+		}
+		assertEquals(200, graph.getFieldCount());
+		assertFalse(new FieldGraph(fields).hasLoops());
+	}
+
+	@Test
+	public void repeatedFieldIsALoop() {
+		WrappedSootField[] fields = fields(100);
+		for (int repeated : new int[] { 0, 50, 99 }) {
+			FieldGraph graph = new FieldGraph(fields);
+			FieldGraph looping = (FieldGraph) graph.prependField(fields[repeated]);
+			assertTrue(looping.hasLoops());
+			assertTrue(looping.shouldOverApproximate());
+			// Cells in front of a loop keep it.
+			assertTrue(((FieldGraph) looping.prependField(fields(1)[0])).hasLoops());
+			assertFalse(graph.hasLoops());
+		}
+	}
+
+	@Test
+	public void fieldsAreComparedWithoutStatements() {
+		SootField field = new SootField("f", RefType.v("java.lang.Object"));
+		FieldGraph graph = new FieldGraph(new WrappedSootField(field, new JNopStmt()));
+		assertTrue(((FieldGraph) graph.prependField(new WrappedSootField(field, new JNopStmt()))).hasLoops());
+	}
+
+	@Test
+	public void appendKeepsLoops() {
+		WrappedSootField[] fields = fields(3);
+		FieldGraph front = new FieldGraph(new WrappedSootField[] { fields[0], fields[1] });
+		assertFalse(((FieldGraph) front.append(new FieldGraph(fields[2]))).hasLoops());
+		assertTrue(((FieldGraph) front.append(new FieldGraph(fields[0]))).hasLoops());
+	}
+}
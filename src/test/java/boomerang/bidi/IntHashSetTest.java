@@ -0,0 +1,95 @@
+package boomerang.bidi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IntHashSetTest {
+
+	@Test
+	public void addAndContains() {
+		IntHashSet set = new IntHashSet();
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+		assertTrue(set.contains(42));
+		assertFalse(set.contains(43));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	public void zeroIsStored() {
+		IntHashSet set = new IntHashSet();
+		assertFalse(set.contains(0));
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		assertTrue(set.contains(0));
+		assertTrue(set.add(1));
+		assertEquals(2, set.size());
+		int[] values = set.toArray();
+		Arrays.sort(values);
+		assertArrayEquals(new int[] { 0, 1 }, values);
+	}
+
+	@Test
+	public void extremeValues() {
+		IntHashSet set = new IntHashSet();
+		int[] values = { Integer.MIN_VALUE, -1, 1, Integer.MAX_VALUE };
+		for (int v : values)
+			assertTrue(set.add(v));
+		for (int v : values)
+			assertTrue(set.contains(v));
+		int[] stored = set.toArray();
+		Arrays.sort(stored);
+		assertArrayEquals(values, stored);
+	}
+
+	@Test
+	public void growsBeyondInitialCapacity() {
+		IntHashSet set = new IntHashSet();
+		for (int i = 1; i <= 1000; i++)
+			assertTrue(set.add(i));
+		assertEquals(1000, set.size());
+		for (int i = 1; i <= 1000; i++)
+			assertTrue(set.contains(i));
+		assertFalse(set.contains(1001));
+		assertEquals(1000, set.toArray().length);
+	}
+
+	@Test
+	public void collidingValues() {
+		// Multiples of a large power of two only differ in the high bits.
+		IntHashSet set = new IntHashSet();
+		for (int i = 1; i <= 64; i++)
+			assertTrue(set.add(i << 24));
+		for (int i = 1; i <= 64; i++)
+			assertTrue(set.contains(i << 24));
+		assertFalse(set.contains(65 << 24));
+		assertEquals(64, set.size());
+	}
+
+	@Test
+	public void behavesLikeHashSet() {
+		Random random = new Random(1);
+		IntHashSet set = new IntHashSet();
+		Set<Integer> expected = new HashSet<>();
+		for (int i = 0; i < 10000; i++) {
+			int v = random.nextInt(5000) - 2500;
+			assertEquals(expected.add(v), set.add(v));
+		}
+		assertEquals(expected.size(), set.size());
+		for (int v = -2500; v < 2500; v++)
+			assertEquals(expected.contains(v), set.contains(v));
+		Set<Integer> stored = new HashSet<>();
+		for (int v : set.toArray())
+			stored.add(v);
+		assertEquals(expected, stored);
+	}
+}
@@ -0,0 +1,50 @@
+package boomerang.bidi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class IntObjectHashMapTest {
+
+	@Test
+	public void putAndGet() {
+		IntObjectHashMap<String> map = new IntObjectHashMap<>();
+		assertNull(map.put(7, "a"));
+		assertEquals("a", map.put(7, "b"));
+		assertEquals("b", map.get(7));
+		assertNull(map.get(8));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void growsAndKeepsCollidingKeys() {
+		IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+		for (int i = 1; i <= 1000; i++)
+			map.put(i << 20, i);
+		assertEquals(1000, map.size());
+		for (int i = 1; i <= 1000; i++)
+			assertEquals(Integer.valueOf(i), map.get(i << 20));
+		assertNull(map.get(1001 << 20));
+		assertEquals(1000, map.keys().length);
+	}
+
+	@Test
+	public void keys() {
+		IntObjectHashMap<String> map = new IntObjectHashMap<>();
+		map.put(Integer.MIN_VALUE, "min");
+		map.put(-1, "minus one");
+		map.put(Integer.MAX_VALUE, "max");
+		int[] keys = map.keys();
+		Arrays.sort(keys);
+		assertArrayEquals(new int[] { Integer.MIN_VALUE, -1, Integer.MAX_VALUE }, keys);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroKeyIsRejected() {
+		new IntObjectHashMap<String>().put(0, "zero");
+	}
+}
@@ -0,0 +1,101 @@
+package boomerang.bidi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+	@Test
+	public void addAndContains() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.add(42L));
+		assertFalse(set.add(42L));
+		assertTrue(set.contains(42L));
+		assertFalse(set.contains(43L));
+		assertEquals(1, set.size());
+	}
+
+	@Test
+	public void zeroIsStored() {
+		LongHashSet set = new LongHashSet();
+		assertFalse(set.contains(0L));
+		assertTrue(set.add(0L));
+		assertFalse(set.add(0L));
+		assertTrue(set.contains(0L));
+		assertTrue(set.add(1L));
+		assertEquals(2, set.size());
+		long[] values = set.toArray();
+		Arrays.sort(values);
+		assertArrayEquals(new long[] { 0L, 1L }, values);
+	}
+
+	@Test
+	public void extremeValues() {
+		LongHashSet set = new LongHashSet();
+		long[] values = { Long.MIN_VALUE, -1L, 1L, Long.MAX_VALUE };
+		for (long v : values)
+			assertTrue(set.add(v));
+		for (long v : values)
+			assertTrue(set.contains(v));
+		long[] stored = set.toArray();
+		Arrays.sort(stored);
+		assertArrayEquals(values, stored);
+	}
+
+	@Test
+	public void growsBeyondInitialCapacity() {
+		LongHashSet set = new LongHashSet();
+		for (long i = 1; i <= 1000; i++)
+			assertTrue(set.add(i << 32 | i));
+		assertEquals(1000, set.size());
+		for (long i = 1; i <= 1000; i++)
+			assertTrue(set.contains(i << 32 | i));
+		assertFalse(set.contains(1001L << 32 | 1001));
+		assertEquals(1000, set.toArray().length);
+	}
+
+	@Test
+	public void collidingValues() {
+		// The halves of a value are folded before hashing, (x << 32 | y) and
+		// (y << 32 | x) share the hash code.
+		LongHashSet set = new LongHashSet();
+		for (long i = 1; i <= 64; i++) {
+			assertTrue(set.add(i << 32 | (i + 1)));
+			assertTrue(set.add((i + 1) << 32 | i));
+		}
+		for (long i = 1; i <= 64; i++) {
+			assertTrue(set.contains(i << 32 | (i + 1)));
+			assertTrue(set.contains((i + 1) << 32 | i));
+		}
+		assertFalse(set.contains(1L));
+		assertEquals(128, set.size());
+	}
+
+	@Test
+	public void behavesLikeHashSet() {
+		Random random = new Random(1);
+		LongHashSet set = new LongHashSet();
+		Set<Long> expected = new HashSet<>();
+		for (int i = 0; i < 10000; i++) {
+			long v = ((long) random.nextInt(100) << 32) | random.nextInt(100);
+			assertEquals(expected.add(v), set.add(v));
+		}
+		assertEquals(expected.size(), set.size());
+		for (long v : expected)
+			assertTrue(set.contains(v));
+		assertFalse(set.contains(100L << 32));
+		Set<Long> stored = new HashSet<>();
+		for (long v : set.toArray())
+			stored.add(v);
+		assertEquals(expected, stored);
+	}
+}
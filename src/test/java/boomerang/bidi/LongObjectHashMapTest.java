@@ -0,0 +1,53 @@
+package boomerang.bidi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class LongObjectHashMapTest {
+
+	@Test
+	public void putAndGet() {
+		LongObjectHashMap<String> map = new LongObjectHashMap<>();
+		assertNull(map.put(1L << 32 | 7, "a"));
+		assertEquals("a", map.put(1L << 32 | 7, "b"));
+		assertEquals("b", map.get(1L << 32 | 7));
+		assertNull(map.get(7L << 32 | 1));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void growsAndKeepsCollidingKeys() {
+		LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+		for (long i = 1; i <= 500; i++) {
+			map.put(i << 32 | (i + 1), i);
+			map.put((i + 1) << 32 | i, -i);
+		}
+		assertEquals(1000, map.size());
+		for (long i = 1; i <= 500; i++) {
+			assertEquals(Long.valueOf(i), map.get(i << 32 | (i + 1)));
+			assertEquals(Long.valueOf(-i), map.get((i + 1) << 32 | i));
+		}
+		assertEquals(1000, map.keys().length);
+	}
+
+	@Test
+	public void keys() {
+		LongObjectHashMap<String> map = new LongObjectHashMap<>();
+		map.put(Long.MIN_VALUE, "min");
+		map.put(-1L, "minus one");
+		map.put(Long.MAX_VALUE, "max");
+		long[] keys = map.keys();
+		Arrays.sort(keys);
+		assertArrayEquals(new long[] { Long.MIN_VALUE, -1L, Long.MAX_VALUE }, keys);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroKeyIsRejected() {
+		new LongObjectHashMap<String>().put(0L, "zero");
+	}
+}
@@ -0,0 +1,98 @@
+package boomerang.cfg;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.SceneTransformer;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import test.core.selfrunning.AbstractTestingFramework;
+
+/**
+ * Writes a snapshot of the control-flow graph of a test scene, reopens it and
+ * compares the graph served from the snapshot with the
+ * {@link JimpleBasedInterproceduralCFG} it was written from.
+ */
+public class ICFGSnapshotTest extends AbstractTestingFramework {
+
+	@Test
+	public void roundTrip() {
+		Object a = new Object();
+		if (staticallyUnknown())
+			a = identity(a);
+		else
+			a = create();
+		identity(a);
+	}
+
+	private Object identity(Object o) {
+		return o;
+	}
+
+	private Object create() {
+		Object o = new Object();
+		if (staticallyUnknown())
+			throw new IllegalStateException();
+		return o;
+	}
+
+	@Override
+	protected SceneTransformer createAnalysisTransformer() {
+		return new SceneTransformer() {
+			protected void internalTransform(String phaseName, @SuppressWarnings("rawtypes") Map options) {
+				JimpleBasedInterproceduralCFG expected = new JimpleBasedInterproceduralCFG(true);
+				ExtendedICFG icfg = new ExtendedICFG(expected);
+				try {
+					File file = File.createTempFile("icfg", ".snapshot");
+					file.deleteOnExit();
+					ICFGSnapshot.write(icfg, file, "fingerprint");
+					try {
+						ICFGSnapshot.open(file, "other fingerprint");
+						Assert.fail("A snapshot of another program must be rejected");
+					} catch (IOException e) {
+						// expected
+					}
+					assertSameGraph(expected, ICFGSnapshot.open(file, "fingerprint").icfg());
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
+	private void assertSameGraph(JimpleBasedInterproceduralCFG expected, IExtendedICFG actual) {
+		UnitNumbering numbering = actual.getNumbering();
+		Assert.assertTrue(numbering.methodCount() > 0);
+		boolean testMethodCompared = false;
+		for (int m = 0; m < numbering.methodCount(); m++) {
+			SootMethod method = numbering.methodOf(m);
+			if (!method.hasActiveBody())
+				continue;
+			testMethodCompared |= method.equals(sootTestMethod);
+			Assert.assertEquals(new HashSet<>(expected.getStartPointsOf(method)),
+					new HashSet<>(actual.getStartPointsOf(method)));
+			Assert.assertEquals(new HashSet<>(expected.getCallersOf(method)),
+					new HashSet<>(actual.getCallersOf(method)));
+			for (Unit u : method.getActiveBody().getUnits()) {
+				Assert.assertEquals(method, actual.getMethodOf(u));
+				Assert.assertEquals(expected.getSuccsOf(u), actual.getSuccsOf(u));
+				Assert.assertEquals(expected.getPredsOf(u), actual.getPredsOf(u));
+				Assert.assertEquals(expected.isCallStmt(u), actual.isCallStmt(u));
+				Assert.assertEquals(expected.isExitStmt(u), actual.isExitStmt(u));
+				if (!expected.isCallStmt(u))
+					continue;
+				Assert.assertEquals(new HashSet<>(expected.getCalleesOfCallAt(u)),
+						new HashSet<>(actual.getCalleesOfCallAt(u)));
+				Assert.assertEquals(new HashSet<>(expected.getReturnSitesOfCallAt(u)),
+						new HashSet<>(actual.getReturnSitesOfCallAt(u)));
+			}
+		}
+		Assert.assertTrue(testMethodCompared);
+	}
+}
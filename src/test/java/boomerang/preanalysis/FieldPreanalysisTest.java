@@ -0,0 +1,210 @@
+package boomerang.preanalysis;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import soot.MethodOrMethodContext;
+import soot.RefType;
+import soot.Scene;
+import soot.SceneTransformer;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.AssignStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.NewExpr;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.jimple.toolkits.callgraph.EdgePredicate;
+import soot.jimple.toolkits.callgraph.Filter;
+import soot.jimple.toolkits.callgraph.ReachableMethods;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import soot.util.queue.QueueReader;
+import test.core.selfrunning.AbstractTestingFramework;
+
+/**
+ * Compares the bottom-up {@link FieldPreanalysis} with the facts of the
+ * methods reachable from each method in the call graph, which is how the
+ * preanalysis computed them before. The call graph of the test method contains
+ * a cycle, a diamond and a call to an ignored method.
+ */
+public class FieldPreanalysisTest extends AbstractTestingFramework {
+
+	public static class Node {
+		Object value;
+		Node next;
+
+		@Override
+		public int hashCode() {
+			return (value == null ? 0 : 1);
+		}
+	}
+
+	public static class Leaf {
+
+	}
+
+	@Test
+	public void cycleDiamondAndIgnoredMethod() {
+		Node n = new Node();
+		cycleA(n, 3);
+		diamondTop(n);
+		hashOnly(n);
+	}
+
+	private Object cycleA(Node n, int depth) {
+		Object v = n.value;
+		if (depth > 0)
+			cycleB(n, depth - 1);
+		return v;
+	}
+
+	private void cycleB(Node n, int depth) {
+		n.next = new Node();
+		cycleA(n.next, depth);
+	}
+
+	private void diamondTop(Node n) {
+		diamondLeft(n);
+		diamondRight(n);
+	}
+
+	private Object diamondLeft(Node n) {
+		Object v = n.value;
+		diamondBottom(n);
+		return v;
+	}
+
+	private void diamondRight(Node n) {
+		n.next = n;
+		diamondBottom(n);
+	}
+
+	private void diamondBottom(Node n) {
+		n.value = new Leaf();
+	}
+
+	private int hashOnly(Node n) {
+		return n.hashCode();
+	}
+
+	@Override
+	protected SceneTransformer createAnalysisTransformer() {
+		return new SceneTransformer() {
+			protected void internalTransform(String phaseName, @SuppressWarnings("rawtypes") Map options) {
+				FieldPreanalysis preanalysis = new FieldPreanalysis(new JimpleBasedInterproceduralCFG(true));
+				SootClass testClass = Scene.v().getSootClass(FieldPreanalysisTest.class.getName());
+				SootClass node = Scene.v().getSootClass(Node.class.getName());
+				SootField value = node.getFieldByName("value");
+				SootField next = node.getFieldByName("next");
+				RefType nodeType = RefType.v(Node.class.getName());
+				RefType leaf = RefType.v(Leaf.class.getName());
+				RefType object = RefType.v("java.lang.Object");
+
+				SootMethod cycleA = testClass.getMethodByName("cycleA");
+				SootMethod cycleB = testClass.getMethodByName("cycleB");
+				Assert.assertTrue(preanalysis.readsFromField(cycleB, value));
+				Assert.assertTrue(preanalysis.writesToField(cycleA, next));
+				Assert.assertTrue(preanalysis.containsAllocSiteOfType(cycleA, nodeType));
+				Assert.assertFalse(preanalysis.containsAllocSiteOfType(cycleA, leaf));
+
+				SootMethod diamondTop = testClass.getMethodByName("diamondTop");
+				SootMethod diamondLeft = testClass.getMethodByName("diamondLeft");
+				SootMethod diamondRight = testClass.getMethodByName("diamondRight");
+				Assert.assertTrue(preanalysis.readsFromField(diamondTop, value));
+				Assert.assertTrue(preanalysis.writesToField(diamondTop, next));
+				Assert.assertTrue(preanalysis.writesToField(diamondLeft, value));
+				Assert.assertFalse(preanalysis.writesToField(diamondLeft, next));
+				Assert.assertFalse(preanalysis.readsFromField(diamondRight, value));
+				Assert.assertTrue(preanalysis.containsAllocSiteOfType(diamondRight, leaf));
+				Assert.assertTrue(preanalysis.containsAllocSiteOfType(diamondRight, object));
+				Assert.assertFalse(preanalysis.containsAllocSiteOfType(diamondRight, nodeType));
+
+				SootMethod hashCode = node.getMethodByName("hashCode");
+				SootMethod hashOnly = testClass.getMethodByName("hashOnly");
+				Assert.assertTrue(preanalysis.getIgnoredMethods().contains(hashCode));
+				Assert.assertFalse(preanalysis.readsFromField(hashOnly, value));
+				Assert.assertFalse(preanalysis.accessesField(hashCode, value));
+
+				List<SootMethod> methods = new ArrayList<>(testClass.getMethods());
+				methods.addAll(node.getMethods());
+				for (SootMethod m : methods) {
+					// Methods which are not reachable have no facts.
+					if (!m.hasActiveBody() || !Scene.v().getReachableMethods().contains(m))
+						continue;
+					Facts expected = reachableFacts(m);
+					for (SootField f : node.getFields()) {
+						Assert.assertEquals("reads " + f + " in " + m, expected.reads.contains(f),
+								preanalysis.readsFromField(m, f));
+						Assert.assertEquals("writes " + f + " in " + m, expected.writes.contains(f),
+								preanalysis.writesToField(m, f));
+					}
+					for (Type t : new Type[] { leaf, nodeType, object })
+						Assert.assertEquals("allocates " + t + " in " + m, expected.allocates(t),
+								preanalysis.containsAllocSiteOfType(m, t));
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return The facts of the methods reachable from the method along the
+	 *         edges the preanalysis follows, ignored methods are skipped.
+	 */
+	private static Facts reachableFacts(SootMethod method) {
+		List<MethodOrMethodContext> entryPoints = new ArrayList<>();
+		entryPoints.add(method);
+		ReachableMethods reachable = new ReachableMethods(Scene.v().getCallGraph(), entryPoints.iterator(),
+				new Filter(new EdgePredicate() {
+					@Override
+					public boolean want(Edge e) {
+						return e.kind().isExplicit() || e.kind().isThread() || e.kind().isExecutor()
+								|| e.kind().isAsyncTask() || e.kind().isPrivileged();
+					}
+				}));
+		reachable.update();
+		Facts facts = new Facts();
+		QueueReader<MethodOrMethodContext> listener = reachable.listener();
+		while (listener.hasNext()) {
+			SootMethod m = listener.next().method();
+			if (m == null || !m.hasActiveBody() || m.toString().contains("int hashCode()")
+					|| m.toString().contains("java.lang.Object equals(java.lang.Object)")
+					|| m.toString().contains("toString()"))
+				continue;
+			for (Unit u : m.getActiveBody().getUnits()) {
+				if (!(u instanceof AssignStmt))
+					continue;
+				Value leftOp = ((AssignStmt) u).getLeftOp();
+				Value rightOp = ((AssignStmt) u).getRightOp();
+				if (leftOp instanceof InstanceFieldRef)
+					facts.writes.add(((InstanceFieldRef) leftOp).getField());
+				if (rightOp instanceof InstanceFieldRef)
+					facts.reads.add(((InstanceFieldRef) rightOp).getField());
+				if (rightOp instanceof NewExpr)
+					facts.allocs.add(((NewExpr) rightOp).getType());
+			}
+		}
+		return facts;
+	}
+
+	private static class Facts {
+		final Set<SootField> reads = new HashSet<>();
+		final Set<SootField> writes = new HashSet<>();
+		final Set<Type> allocs = new HashSet<>();
+
+		boolean allocates(Type type) {
+			for (Type alloc : allocs)
+				if (Scene.v().getFastHierarchy().canStoreType(alloc, type))
+					return true;
+			return false;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package boomerang.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import boomerang.cfg.ExtendedICFG;
+import soot.Local;
+import soot.SceneTransformer;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.AssignStmt;
+import soot.jimple.NewExpr;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
+import test.core.selfrunning.AbstractTestingFramework;
+import test.core.selfrunning.AllocatedObject;
+
+/**
+ * Drives {@link BoomerangServer#serve} with in-memory streams. The body of the
+ * test method is the analyzed program, the requests are answered and checked
+ * by the analysis transformer.
+ */
+public class BoomerangServerTest extends AbstractTestingFramework {
+
+	public class Allocation implements AllocatedObject {
+
+	}
+
+	@Test
+	public void queryResetUnknownLocalAndShutdown() {
+		Object alloc = new Allocation();
+		Object alias = alloc;
+		queryFor(alias);
+	}
+
+	@Override
+	protected SceneTransformer createAnalysisTransformer() {
+		return new SceneTransformer() {
+			protected void internalTransform(String phaseName, @SuppressWarnings("rawtypes") Map options) {
+				QueryHandler handler = new QueryHandler(
+						BoomerangServer.options(new ExtendedICFG(new JimpleBasedInterproceduralCFG(true)), -1, 0));
+				List<Unit> units = new ArrayList<>(sootTestMethod.getActiveBody().getUnits());
+				int queryIndex = -1;
+				int allocationIndex = -1;
+				Local queryLocal = null;
+				for (int i = 0; i < units.size(); i++) {
+					Stmt stmt = (Stmt) units.get(i);
+					if (stmt.containsInvokeExpr() && stmt.getInvokeExpr().getMethod().getName().equals("queryFor")) {
+						queryIndex = i;
+						queryLocal = (Local) stmt.getInvokeExpr().getArg(0);
+					}
+					if (stmt instanceof AssignStmt) {
+						Value rightOp = ((AssignStmt) stmt).getRightOp();
+						if (rightOp instanceof NewExpr && ((NewExpr) rightOp).getBaseType().getClassName()
+								.equals(Allocation.class.getName()))
+							allocationIndex = i;
+					}
+				}
+				Assert.assertNotNull(queryLocal);
+
+				List<JSONObject> responses = serve(new BoomerangServer(handler),
+						query(1, queryIndex, queryLocal.getName()), "{\"id\": 2, \"command\": \"reset\"}",
+						query(3, queryIndex, "unknown"), query(4, queryIndex, queryLocal.getName()),
+						"{\"id\": 5, \"command\": \"shutdown\"}", query(6, queryIndex, queryLocal.getName()));
+
+				// The query after the shutdown is not answered.
+				Assert.assertEquals(5, responses.size());
+				assertAllocationSiteFound(responses.get(0), 1, allocationIndex);
+				Assert.assertEquals(2L, responses.get(1).get("id"));
+				Assert.assertNull(responses.get(1).get("error"));
+				Assert.assertEquals(3L, responses.get(2).get("id"));
+				Assert.assertEquals("Unknown local unknown", responses.get(2).get("error"));
+				assertAllocationSiteFound(responses.get(3), 4, allocationIndex);
+				Assert.assertEquals(5L, responses.get(4).get("id"));
+				Assert.assertNull(responses.get(4).get("error"));
+				Assert.assertTrue(handler.isShutdown());
+			}
+		};
+	}
+
+	private String query(int id, int stmt, String base) {
+		return "{\"id\": " + id + ", \"method\": \"" + sootTestMethod.getSignature() + "\", \"stmt\": " + stmt
+				+ ", \"base\": \"" + base + "\"}";
+	}
+
+	private void assertAllocationSiteFound(JSONObject response, long id, int allocationIndex) {
+		Assert.assertEquals(id, response.get("id"));
+		Assert.assertNull(response.get("error"));
+		Assert.assertEquals(false, response.get("timedout"));
+		boolean found = false;
+		for (Object result : (JSONArray) response.get("results")) {
+			JSONObject entry = (JSONObject) result;
+			if (sootTestMethod.getSignature().equals(entry.get("method"))
+					&& Long.valueOf(allocationIndex).equals(entry.get("stmt")))
+				found = true;
+		}
+		Assert.assertTrue("Allocation site not found in " + response, found);
+	}
+
+	private static List<JSONObject> serve(BoomerangServer server, String... requests) {
+		StringBuilder in = new StringBuilder();
+		for (String request : requests)
+			in.append(request).append('\n');
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		List<JSONObject> responses = new ArrayList<>();
+		try {
+			server.serve(new ByteArrayInputStream(in.toString().getBytes(StandardCharsets.UTF_8)), out);
+			BufferedReader reader = new BufferedReader(
+					new StringReader(new String(out.toByteArray(), StandardCharsets.UTF_8)));
+			String line;
+			while ((line = reader.readLine()) != null)
+				responses.add((JSONObject) new JSONParser().parse(line));
+		} catch (IOException | ParseException e) {
+			throw new RuntimeException(e);
+		}
+		return responses;
+	}
+
+	protected void queryFor(Object variable) {
+
+	}
+}
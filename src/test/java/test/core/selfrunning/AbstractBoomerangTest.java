@@ -11,7 +11,10 @@ import com.google.common.collect.Lists;
 import boomerang.AliasFinder;
 import boomerang.AliasResults;
 import boomerang.BoomerangOptions;
+import boomerang.ContextScheduler;
+import boomerang.PriorityScheduler;
 import boomerang.Query;
+import boomerang.WorkStealingScheduler;
 import boomerang.accessgraph.AccessGraph;
 import boomerang.cfg.ExtendedICFG;
 import boomerang.cfg.IExtendedICFG;
@@ -40,12 +43,26 @@ import soot.jimple.Stmt;
 import soot.jimple.toolkits.ide.icfg.JimpleBasedInterproceduralCFG;
 
 public class AbstractBoomerangTest extends AbstractTestingFramework{
+	/**
+	 * Selects the scheduler the test cases are run with, e.g.
+	 * 
+	 * <pre>
+	 * mvn test -Dboomerang.scheduler=work-stealing
+	 * </pre>
+	 * 
+	 * The values <code>work-stealing</code> and <code>priority</code> (a
+	 * {@link PriorityScheduler} with its default orderings) are supported.
+	 * Without the property, the default scheduler of the options is used.
+	 */
+	public static final String SCHEDULER_PROPERTY = "boomerang.scheduler";
 	private IExtendedICFG icfg;
 	private IContextRequester contextReuqester;
 	private BoomerangOptions options;
 
 	private boolean useIDEViz() {
-		return !getTestCaseClassName().contains("LongTest");
+		// The visualization is not recorded thread-safe.
+		return !getTestCaseClassName().contains("LongTest") && !QueryBenchmark.isEnabled()
+				&& !"work-stealing".equals(System.getProperty(SCHEDULER_PROPERTY));
 	}
 
 	protected SceneTransformer createAnalysisTransformer() {
@@ -62,6 +79,12 @@ public class AbstractBoomerangTest extends AbstractTestingFramework{
 							public IExtendedICFG icfg() {
 								return icfg;
 							}
+
+							@Override
+							public ContextScheduler getScheduler() {
+								ContextScheduler scheduler = createScheduler();
+								return (scheduler == null ? super.getScheduler() : scheduler);
+							}
 							
 							@Override
 							public IPropagationController<Unit, AccessGraph> propagationController() {
@@ -89,11 +112,29 @@ public class AbstractBoomerangTest extends AbstractTestingFramework{
 
 				AliasResults expectedResults = parseExpectedQueryResults(q);
 				AliasResults results = runQuery(q);
+				if (QueryBenchmark.isEnabled())
+					new QueryBenchmark(getTestCaseClassName(), testMethodName.getMethodName()).run(q,
+							contextReuqester, AbstractBoomerangTest.this.options);
 				compareQuery(q, expectedResults, results);
 			}
 		};
 	}
 
+	/**
+	 * @return The scheduler selected by {@value #SCHEDULER_PROPERTY},
+	 *         <code>null</code> for the default scheduler.
+	 */
+	private static ContextScheduler createScheduler() {
+		String scheduler = System.getProperty(SCHEDULER_PROPERTY);
+		if (scheduler == null || scheduler.isEmpty() || scheduler.equals("default"))
+			return null;
+		if (scheduler.equals("work-stealing"))
+			return new WorkStealingScheduler();
+		if (scheduler.equals("priority"))
+			return new PriorityScheduler();
+		throw new RuntimeException("Unknown scheduler " + scheduler + ", expected default, work-stealing or priority");
+	}
+
 	private void compareQuery(Query q, AliasResults expectedResults, AliasResults results) {
 		System.out.println("Boomerang Allocations Sites: " + results.keySet());
 		System.out.println("Boomerang Results: " + results);
@@ -127,9 +168,10 @@ public class AbstractBoomerangTest extends AbstractTestingFramework{
 	}
 
 	private AliasResults runQuery(Query q) {
-		AliasFinder boomerang = new AliasFinder(options);
-		boomerang.startQuery();
-		return boomerang.findAliasAtStmt(q.getAp(), q.getStmt(), contextReuqester).withoutNullAllocationSites();
+		try (AliasFinder boomerang = new AliasFinder(options)) {
+			boomerang.startQuery();
+			return boomerang.findAliasAtStmt(q.getAp(), q.getStmt(), contextReuqester).withoutNullAllocationSites();
+		}
 	}
 
 	private AliasResults parseExpectedQueryResults(Query q) {
@@ -147,7 +189,7 @@ public class AbstractBoomerangTest extends AbstractTestingFramework{
 		AliasResults res = new AliasResults();
 		for (Pair<Unit, AccessGraph> allocatedVariableWithStack : allocationSiteWithCallStack) {
 			for (Local l : aliasedVariables) {
-				res.put(allocatedVariableWithStack, new AccessGraph(l));
+				res.put(allocatedVariableWithStack, AccessGraph.create(l));
 			}
 		}
 		return res;
@@ -188,7 +230,7 @@ public class AbstractBoomerangTest extends AbstractTestingFramework{
 			if (as.getLeftOp() instanceof Local && as.getRightOp() instanceof NewExpr) {
 				if (allocatesObjectOfInterest((NewExpr) as.getRightOp())) {
 					Local local = (Local) as.getLeftOp();
-					AccessGraph accessGraph = new AccessGraph(local);
+					AccessGraph accessGraph = AccessGraph.create(local);
 					out.add(new Pair<Unit, AccessGraph>(as, accessGraph.deriveWithAllocationSite(as, true)));
 				}
 			}
@@ -221,7 +263,7 @@ public class AbstractBoomerangTest extends AbstractTestingFramework{
 				if (as.getLeftOp() instanceof Local && as.getRightOp() instanceof NewExpr) {
 					if (allocatesObjectOfInterest((NewExpr) as.getRightOp())) {
 						Local local = (Local) as.getLeftOp();
-						AccessGraph accessGraph = new AccessGraph(local);
+						AccessGraph accessGraph = AccessGraph.create(local);
 						out.add(accessGraph.deriveWithAllocationSite(as, true));
 					}
 				}
@@ -267,7 +309,7 @@ public class AbstractBoomerangTest extends AbstractTestingFramework{
 			if (!(param instanceof Local))
 				continue;
 			Local queryVar = (Local) param;
-			queries.add(new Query(new AccessGraph(queryVar), stmt, m));
+			queries.add(new Query(AccessGraph.create(queryVar), stmt, m));
 		}
 	}
 
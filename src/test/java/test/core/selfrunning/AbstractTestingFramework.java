@@ -14,6 +14,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.rules.TestName;
 
+import boomerang.accessgraph.FieldIds;
 import boomerang.preanalysis.PreparationTransformer;
 import soot.ArrayType;
 import soot.G;
@@ -77,6 +78,7 @@ public abstract class AbstractTestingFramework {
 	@SuppressWarnings("static-access")
 	private void initializeSootWithEntryPoint() {
 		G.v().reset();
+		FieldIds.reset();
 		Options.v().set_whole_program(true);
 		Options.v().setPhaseOption("cg.spark", "on");
 		Options.v().setPhaseOption("cg.spark", "verbose:true");
@@ -0,0 +1,168 @@
+package test.core.selfrunning;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.json.simple.JSONObject;
+
+import boomerang.AliasFinder;
+import boomerang.AliasResults;
+import boomerang.BoomerangOptions;
+import boomerang.Query;
+import boomerang.context.IContextRequester;
+
+/**
+ * Repeatedly runs the query of a self-running test case to measure the
+ * performance of the solver. The benchmark is enabled by the system property
+ * {@value #REPORT_PROPERTY}, which names the report file, e.g.
+ *
+ * <pre>
+ * mvn test -Dtest=*LongTest -Dboomerang.benchmark.report=target/benchmark.json
+ * </pre>
+ *
+ * Each query is run {@value #DEFAULT_WARMUP} times for warm-up and is then
+ * measured {@value #DEFAULT_ITERATIONS} times, both can be changed by the
+ * properties {@value #WARMUP_PROPERTY} and {@value #ITERATIONS_PROPERTY}. Per
+ * query, one JSON object is appended as a line to the report. It contains the
+ * wall time, the number of propagations, the number of path edges stored when
+ * the query finished and the bytes allocated by all threads during a query.
+ *
+ * @author spaeth
+ *
+ */
+public class QueryBenchmark {
+	public static final String REPORT_PROPERTY = "boomerang.benchmark.report";
+	public static final String WARMUP_PROPERTY = "boomerang.benchmark.warmup";
+	public static final String ITERATIONS_PROPERTY = "boomerang.benchmark.iterations";
+	private static final int DEFAULT_WARMUP = 5;
+	private static final int DEFAULT_ITERATIONS = 20;
+
+	private final String testCase;
+	private final String testMethod;
+
+	public QueryBenchmark(String testCase, String testMethod) {
+		this.testCase = testCase;
+		this.testMethod = testMethod;
+	}
+
+	public static boolean isEnabled() {
+		return System.getProperty(REPORT_PROPERTY) != null;
+	}
+
+	/**
+	 * Measures the query and appends the result to the report.
+	 */
+	public void run(Query q, IContextRequester req, BoomerangOptions options) {
+		int warmup = Integer.getInteger(WARMUP_PROPERTY, DEFAULT_WARMUP);
+		int iterations = Integer.getInteger(ITERATIONS_PROPERTY, DEFAULT_ITERATIONS);
+		for (int i = 0; i < warmup; i++)
+			measure(q, req, options);
+		long[] wallTimes = new long[iterations];
+		long[] propagations = new long[iterations];
+		long[] pathEdges = new long[iterations];
+		long[] allocatedBytes = new long[iterations];
+		int timeouts = 0;
+		for (int i = 0; i < iterations; i++) {
+			Measurement m = measure(q, req, options);
+			wallTimes[i] = m.wallTime;
+			propagations[i] = m.propagations;
+			pathEdges[i] = m.pathEdges;
+			allocatedBytes[i] = m.allocatedBytes;
+			if (m.timedout)
+				timeouts++;
+		}
+		report(q, warmup, iterations, timeouts, wallTimes, propagations, pathEdges, allocatedBytes);
+	}
+
+	private Measurement measure(Query q, IContextRequester req, BoomerangOptions options) {
+		Measurement m = new Measurement();
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		try (AliasFinder boomerang = new AliasFinder(options)) {
+			boomerang.startQuery();
+			AliasResults res = boomerang.findAliasAtStmt(q.getAp(), q.getStmt(), req);
+			m.wallTime = System.nanoTime() - start;
+			m.allocatedBytes = allocatedBytes() - allocatedBefore;
+			m.propagations = boomerang.context.getPropagationCount();
+			m.pathEdges = boomerang.context.getPathEdgeCount();
+			m.timedout = res.queryTimedout();
+		}
+		return m;
+	}
+
+	/**
+	 * @return The bytes allocated by all live threads, <code>-1</code> if the
+	 *         JVM does not support the measurement.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+			return -1;
+		long sum = 0;
+		for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (bytes > 0)
+				sum += bytes;
+		}
+		return sum;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void report(Query q, int warmup, int iterations, int timeouts, long[] wallTimes, long[] propagations,
+			long[] pathEdges, long[] allocatedBytes) {
+		JSONObject entry = new JSONObject();
+		entry.put("testCase", testCase);
+		entry.put("testMethod", testMethod);
+		entry.put("query", q.toString());
+		entry.put("warmup", warmup);
+		entry.put("iterations", iterations);
+		entry.put("timeouts", timeouts);
+		entry.put("wallTimeNanos", statistics(wallTimes));
+		entry.put("propagations", statistics(propagations));
+		entry.put("pathEdges", statistics(pathEdges));
+		entry.put("allocatedBytes", statistics(allocatedBytes));
+		File report = new File(System.getProperty(REPORT_PROPERTY));
+		try {
+			if (report.getAbsoluteFile().getParentFile() != null)
+				Files.createDirectories(report.getAbsoluteFile().getParentFile().toPath());
+			Files.write(report.toPath(), Collections.singletonList(entry.toJSONString()), StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new RuntimeException("Was not able to write benchmark report " + report, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject statistics(long[] values) {
+		JSONObject stats = new JSONObject();
+		if (values.length == 0)
+			return stats;
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		long sum = 0;
+		for (long v : sorted)
+			sum += v;
+		stats.put("min", sorted[0]);
+		stats.put("median", sorted[sorted.length / 2]);
+		stats.put("mean", sum / sorted.length);
+		stats.put("max", sorted[sorted.length - 1]);
+		return stats;
+	}
+
+	private static class Measurement {
+		long wallTime;
+		long propagations;
+		long pathEdges;
+		long allocatedBytes;
+		boolean timedout;
+	}
+}